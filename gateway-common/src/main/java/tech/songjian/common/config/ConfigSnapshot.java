@@ -0,0 +1,168 @@
+package tech.songjian.common.config;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 动态配置快照：某一时刻规则、路由索引、服务定义与服务实例的不可变视图
+ *
+ * 每次配置变更都会生成一个版本号递增的新快照，并由 DynamicConfigManager 通过一个 volatile 引用整体发布，
+ * 请求在进入网关时读取一次快照，整个处理过程都基于同一版本的配置
+ *
+ * 快照内的集合在发布后不再修改，只由 DynamicConfigManager 在同包内基于旧快照复制生成
+ */
+public final class ConfigSnapshot {
+
+	public static final ConfigSnapshot EMPTY = new ConfigSnapshot(0,
+			Collections.emptyMap(), Collections.emptyMap(),
+			Collections.emptyMap(), Collections.emptyMap(), Collections.emptyMap(), Collections.emptyMap(),
+			Collections.emptySet(), Collections.emptyMap());
+
+	/**
+	 * 快照版本号，每次发布递增
+	 */
+	private final long version;
+
+	final Map<String /* uniqueId */, ServiceDefinition> serviceDefinitionMap;
+
+	final Map<String /* uniqueId */, ServiceInstanceGroup> serviceInstanceMap;
+
+	final Map<String /* ruleId */, Rule> ruleMap;
+
+	final Map<String /* 服务名.路径 */, Rule> pathRuleMap;
+
+	final Map<String /* 服务名 */, List<Rule>> serviceRuleMap;
+
+	final Map<String /* 服务名 */, RouteIndex> routeIndexMap;
+
+	/**
+	 * 有流式转发规则的服务，规则发布时计算，没有时请求头到达时不需要匹配规则
+	 */
+	final Set<String /* 服务名 */> streamingServiceIds;
+
+	/**
+	 * 规则的编译结果，由 RuleCompiler 在规则发布前生成，没有设置编译器时为空
+	 */
+	final Map<String /* ruleId */, Object> compiledRuleMap;
+
+	ConfigSnapshot(long version,
+				   Map<String, ServiceDefinition> serviceDefinitionMap,
+				   Map<String, ServiceInstanceGroup> serviceInstanceMap,
+				   Map<String, Rule> ruleMap,
+				   Map<String, Rule> pathRuleMap,
+				   Map<String, List<Rule>> serviceRuleMap,
+				   Map<String, RouteIndex> routeIndexMap,
+				   Set<String> streamingServiceIds,
+				   Map<String, Object> compiledRuleMap) {
+		this.version = version;
+		this.serviceDefinitionMap = serviceDefinitionMap;
+		this.serviceInstanceMap = serviceInstanceMap;
+		this.ruleMap = ruleMap;
+		this.pathRuleMap = pathRuleMap;
+		this.serviceRuleMap = serviceRuleMap;
+		this.routeIndexMap = routeIndexMap;
+		this.streamingServiceIds = streamingServiceIds;
+		this.compiledRuleMap = compiledRuleMap;
+	}
+
+	public long getVersion() {
+		return version;
+	}
+
+	/***************** 	服务定义与服务实例 	***************/
+
+	public ServiceDefinition getServiceDefinition(String uniqueId) {
+		return serviceDefinitionMap.get(uniqueId);
+	}
+
+	public Map<String, ServiceDefinition> getServiceDefinitionMap() {
+		return Collections.unmodifiableMap(serviceDefinitionMap);
+	}
+
+	/**
+	 * 获取服务的全部实例，实例不变时返回的是同一个对象，可用于判断实例是否发生变化
+	 * @param uniqueId
+	 * @return
+	 */
+	public ServiceInstanceGroup getServiceInstances(String uniqueId) {
+		ServiceInstanceGroup serviceInstances = serviceInstanceMap.get(uniqueId);
+		return serviceInstances == null ? ServiceInstanceGroup.EMPTY : serviceInstances;
+	}
+
+	/**
+	 * 全部服务的实例
+	 * @return
+	 */
+	public Map<String, ServiceInstanceGroup> getServiceInstanceMap() {
+		return Collections.unmodifiableMap(serviceInstanceMap);
+	}
+
+	public Set<ServiceInstance> getServiceInstanceByUniqueId(String uniqueId, boolean gray) {
+		// 灰度实例在构建时已经划分好，这里不再过滤
+		return getServiceInstances(uniqueId).getInstanceSet(gray);
+	}
+
+	/***************** 	规则与路由 	***************/
+
+	public Rule getRule(String ruleId) {
+		return ruleMap.get(ruleId);
+	}
+
+	public Map<String, Rule> getRuleMap() {
+		return Collections.unmodifiableMap(ruleMap);
+	}
+
+	public Rule getRuleByPath(String path) {
+		return pathRuleMap.get(path);
+	}
+
+	public List<Rule> getRuleByServiceId(String serviceId) {
+		return serviceRuleMap.get(serviceId);
+	}
+
+	/**
+	 * 获取规则的编译结果，只有属于本快照的规则对象才能取到
+	 * @param rule
+	 * @param type 编译结果的类型
+	 * @return 规则不属于本快照或未经编译时返回 null
+	 */
+	public <C> C getCompiledRule(Rule rule, Class<C> type) {
+		if (rule == null || ruleMap.get(rule.getId()) != rule) {
+			return null;
+		}
+		return type.cast(compiledRuleMap.get(rule.getId()));
+	}
+
+	/**
+	 * 是否有任何服务配置了流式转发规则
+	 * @return
+	 */
+	public boolean hasStreamingRule() {
+		return !streamingServiceIds.isEmpty();
+	}
+
+	/**
+	 * 服务是否配置了流式转发规则
+	 * @param serviceId
+	 * @return
+	 */
+	public boolean hasStreamingRule(String serviceId) {
+		return streamingServiceIds.contains(serviceId);
+	}
+
+	/**
+	 * 根据服务id与请求路径，通过路由索引匹配规则
+	 * @param serviceId
+	 * @param path
+	 * @return 没有匹配上返回 null
+	 */
+	public Rule matchRule(String serviceId, String path) {
+		RouteIndex routeIndex = routeIndexMap.get(serviceId);
+		if (routeIndex == null) {
+			return null;
+		}
+		return routeIndex.match(path);
+	}
+}
@@ -2,43 +2,33 @@ package tech.songjian.common.config;
 
 
 
-import org.apache.commons.collections.CollectionUtils;
-
 import java.util.*;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.stream.Collectors;
 
 import static tech.songjian.common.constants.BasicConst.DIT_SEPARATOR;
 
 /**
  * 动态服务缓存配置管理类
+ *
+ * 所有配置保存在一个不可变的 ConfigSnapshot 中，通过 volatile 引用整体发布：
+ * 写操作（注册中心、配置中心回调）串行执行，每次基于当前快照复制出新快照并递增版本号；
+ * 读操作只需一次 volatile 读，不会看到新旧配置混合的中间状态
  */
 public class DynamicConfigManager {
 
 	/**
-	 * 服务的定义集合：uniqueId 代表服务的唯一标识
-	 */
-	private ConcurrentHashMap<String /* uniqueId */ , ServiceDefinition>  serviceDefinitionMap = new ConcurrentHashMap<>();
-
-	/**
-	 * 服务的实例集合：uniqueId 与一对服务实例对应
-	 */
-	private ConcurrentHashMap<String /* uniqueId */ , Set<ServiceInstance>>  serviceInstanceMap = new ConcurrentHashMap<>();
-
-	/**
-	 * 规则集合
+	 * 当前生效的配置快照
 	 */
-	private ConcurrentHashMap<String /* ruleId */ , Rule>  ruleMap = new ConcurrentHashMap<>();
+	private volatile ConfigSnapshot snapshot = ConfigSnapshot.EMPTY;
 
 	/**
-	 * 路径以及规则集合
+	 * 规则编译器，规则发布前对每条规则执行一次，编译结果随规则保存在快照中
 	 */
-	private ConcurrentHashMap<String /* 路径 */, Rule> pathRuleMap = new ConcurrentHashMap<>();
+	private volatile RuleCompiler ruleCompiler;
 
 	/**
-	 * 服务以及规则集合
+	 * 服务实例发布监听，每次发布实例变更后回调
 	 */
-	private ConcurrentHashMap<String /* 服务名 */, List<Rule>> serverRuleMap = new ConcurrentHashMap<>();
+	private volatile ServiceInstancesListener serviceInstancesListener;
 
 	private DynamicConfigManager() {
 	}
@@ -47,129 +37,149 @@ public class DynamicConfigManager {
 		private static final DynamicConfigManager INSTANCE = new DynamicConfigManager();
 	}
 
-
-	/***************** 	对服务定义缓存进行操作的系列方法 	***************/
-
 	public static DynamicConfigManager getInstance() {
 		return SingletonHolder.INSTANCE;
 	}
 
-	public void putServiceDefinition(String uniqueId,
-			ServiceDefinition serviceDefinition) {
+	/**
+	 * 获取当前生效的配置快照，请求处理过程中应只读取一次
+	 * @return
+	 */
+	public ConfigSnapshot getSnapshot() {
+		return snapshot;
+	}
+
+	/**
+	 * 设置规则编译器，并对当前已生效的规则重新编译
+	 * @param ruleCompiler
+	 */
+	public synchronized void setRuleCompiler(RuleCompiler ruleCompiler) {
+		this.ruleCompiler = ruleCompiler;
+		if (!snapshot.ruleMap.isEmpty()) {
+			publishRules(new ArrayList<>(snapshot.ruleMap.values()));
+		}
+	}
+
+	/**
+	 * 设置服务实例发布监听
+	 * @param serviceInstancesListener
+	 */
+	public void setServiceInstancesListener(ServiceInstancesListener serviceInstancesListener) {
+		this.serviceInstancesListener = serviceInstancesListener;
+	}
 
-		serviceDefinitionMap.put(uniqueId, serviceDefinition);;
+	/***************** 	对服务定义缓存进行操作的系列方法 	***************/
+
+	public synchronized void putServiceDefinition(String uniqueId,
+			ServiceDefinition serviceDefinition) {
+		ConfigSnapshot current = snapshot;
+		Map<String, ServiceDefinition> definitions = new HashMap<>(current.serviceDefinitionMap);
+		definitions.put(uniqueId, serviceDefinition);
+		publish(current, definitions, current.serviceInstanceMap);
 	}
 
 	public ServiceDefinition getServiceDefinition(String uniqueId) {
-		return serviceDefinitionMap.get(uniqueId);
+		return snapshot.getServiceDefinition(uniqueId);
 	}
 
-	public void removeServiceDefinition(String uniqueId) {
-		serviceDefinitionMap.remove(uniqueId);
+	public synchronized void removeServiceDefinition(String uniqueId) {
+		ConfigSnapshot current = snapshot;
+		Map<String, ServiceDefinition> definitions = new HashMap<>(current.serviceDefinitionMap);
+		definitions.remove(uniqueId);
+		publish(current, definitions, current.serviceInstanceMap);
 	}
 
-	public ConcurrentHashMap<String, ServiceDefinition> getServiceDefinitionMap() {
-		return serviceDefinitionMap;
+	public Map<String, ServiceDefinition> getServiceDefinitionMap() {
+		return snapshot.getServiceDefinitionMap();
+	}
+
+	/**
+	 * 同时更新服务定义与服务实例，二者在同一个快照中发布
+	 * @param serviceDefinition
+	 * @param serviceInstanceSet
+	 */
+	public synchronized void putService(ServiceDefinition serviceDefinition, Set<ServiceInstance> serviceInstanceSet) {
+		ConfigSnapshot current = snapshot;
+		String uniqueId = serviceDefinition.getUniqueId();
+		Map<String, ServiceDefinition> definitions = new HashMap<>(current.serviceDefinitionMap);
+		definitions.put(uniqueId, serviceDefinition);
+		Map<String, ServiceInstanceGroup> instances = new HashMap<>(current.serviceInstanceMap);
+		instances.put(uniqueId, ServiceInstanceGroup.of(serviceInstanceSet));
+		publish(current, definitions, instances);
 	}
 
 	/***************** 	对服务实例缓存进行操作的系列方法 	***************/
 
 	public Set<ServiceInstance> getServiceInstanceByUniqueId(String uniqueId, boolean gray){
-		Set<ServiceInstance> serviceInstances = serviceInstanceMap.get(uniqueId);
-		if (CollectionUtils.isEmpty(serviceInstances)) {
-			// 如果为空，直接返回
-			return Collections.emptySet();
-		}
-		// 如果是灰度，则要过滤出灰度服务
-		if (gray) {
-			return serviceInstances.stream()
-					.filter(ServiceInstance::isGray)
-					.collect(Collectors.toSet());
-		}
-		// 否则，正常返回
-		return serviceInstances;
+		return snapshot.getServiceInstanceByUniqueId(uniqueId, gray);
 	}
 
-	public void addServiceInstance(String uniqueId, ServiceInstance serviceInstance) {
-		Set<ServiceInstance> set = serviceInstanceMap.get(uniqueId);
-		set.add(serviceInstance);
+	public synchronized void addServiceInstance(String uniqueId, ServiceInstance serviceInstance) {
+		updateServiceInstance(uniqueId, serviceInstance);
 	}
 
-	public void addServiceInstance(String uniqueId, Set<ServiceInstance> serviceInstanceSet) {
-		serviceInstanceMap.put(uniqueId, serviceInstanceSet);
+	public synchronized void addServiceInstance(String uniqueId, Set<ServiceInstance> serviceInstanceSet) {
+		ConfigSnapshot current = snapshot;
+		Map<String, ServiceInstanceGroup> instances = new HashMap<>(current.serviceInstanceMap);
+		instances.put(uniqueId, ServiceInstanceGroup.of(serviceInstanceSet));
+		publish(current, current.serviceDefinitionMap, instances);
 	}
 
-	public void updateServiceInstance(String uniqueId, ServiceInstance serviceInstance) {
-		Set<ServiceInstance> set = serviceInstanceMap.get(uniqueId);
-		Iterator<ServiceInstance> it = set.iterator();
-		while(it.hasNext()) {
-			ServiceInstance is = it.next();
-			if(is.getServiceInstanceId().equals(serviceInstance.getServiceInstanceId())) {
-				it.remove();
-				break;
-			}
-		}
+	public synchronized void updateServiceInstance(String uniqueId, ServiceInstance serviceInstance) {
+		ConfigSnapshot current = snapshot;
+		Set<ServiceInstance> set = new HashSet<>(current.getServiceInstances(uniqueId).getInstanceSet());
+		// ServiceInstance 以 serviceInstanceId 判等，先删后加即为替换
+		set.remove(serviceInstance);
 		set.add(serviceInstance);
+		Map<String, ServiceInstanceGroup> instances = new HashMap<>(current.serviceInstanceMap);
+		instances.put(uniqueId, ServiceInstanceGroup.of(set));
+		publish(current, current.serviceDefinitionMap, instances);
 	}
 
-	public void removeServiceInstance(String uniqueId, String serviceInstanceId) {
-		Set<ServiceInstance> set = serviceInstanceMap.get(uniqueId);
-		Iterator<ServiceInstance> it = set.iterator();
-		while(it.hasNext()) {
-			ServiceInstance is = it.next();
-			if(is.getServiceInstanceId().equals(serviceInstanceId)) {
-				it.remove();
-				break;
-			}
+	public synchronized void removeServiceInstance(String uniqueId, String serviceInstanceId) {
+		ConfigSnapshot current = snapshot;
+		Set<ServiceInstance> set = new HashSet<>(current.getServiceInstances(uniqueId).getInstanceSet());
+		if (!set.removeIf(is -> is.getServiceInstanceId().equals(serviceInstanceId))) {
+			return;
 		}
+		Map<String, ServiceInstanceGroup> instances = new HashMap<>(current.serviceInstanceMap);
+		instances.put(uniqueId, ServiceInstanceGroup.of(set));
+		publish(current, current.serviceDefinitionMap, instances);
 	}
 
-	public void removeServiceInstancesByUniqueId(String uniqueId) {
-		serviceInstanceMap.remove(uniqueId);
+	public synchronized void removeServiceInstancesByUniqueId(String uniqueId) {
+		ConfigSnapshot current = snapshot;
+		Map<String, ServiceInstanceGroup> instances = new HashMap<>(current.serviceInstanceMap);
+		instances.remove(uniqueId);
+		publish(current, current.serviceDefinitionMap, instances);
 	}
 
 
 	/***************** 	对规则缓存进行操作的系列方法 	***************/
 
-	public void putRule(String ruleId, Rule rule) {
-		ruleMap.put(ruleId, rule);
+	public synchronized void putRule(String ruleId, Rule rule) {
+		Map<String, Rule> rules = new LinkedHashMap<>(snapshot.ruleMap);
+		rules.put(ruleId, rule);
+		publishRules(rules.values());
 	}
 
-	public void putAllRule(List<Rule> ruleList) {
-		ConcurrentHashMap<String, Rule> newRuleMap = new ConcurrentHashMap<>();
-		ConcurrentHashMap<String, Rule> newPathMap = new ConcurrentHashMap<>();
-		ConcurrentHashMap<String, List<Rule>> newServiceMap = new ConcurrentHashMap<>();
-
-		for (Rule rule : ruleList) {
-			newRuleMap.put(rule.getId(), rule);
-			List<Rule> rules = newServiceMap.get(rule.getServiceId());
-			if (rules == null) {
-				rules = new ArrayList<>();
-			}
-			rules.add(rule);
-			newServiceMap.put(rule.getServiceId(), rules);
-
-			List<String> paths = rule.getPaths();
-			for (String path : paths) {
-				String key = rule.getServiceId() + DIT_SEPARATOR + path;
-				newPathMap.put(key, rule);
-			}
-		}
-		ruleMap = newRuleMap;
-		pathRuleMap = newPathMap;
-		serverRuleMap = newServiceMap;
+	public synchronized void putAllRule(List<Rule> ruleList) {
+		publishRules(ruleList);
 	}
 
 	public Rule getRule(String ruleId) {
-		return ruleMap.get(ruleId);
+		return snapshot.getRule(ruleId);
 	}
 
-	public void removeRule(String ruleId) {
-		ruleMap.remove(ruleId);
+	public synchronized void removeRule(String ruleId) {
+		Map<String, Rule> rules = new LinkedHashMap<>(snapshot.ruleMap);
+		if (rules.remove(ruleId) != null) {
+			publishRules(rules.values());
+		}
 	}
 
-	public ConcurrentHashMap<String, Rule> getRuleMap() {
-		return ruleMap;
+	public Map<String, Rule> getRuleMap() {
+		return snapshot.getRuleMap();
 	}
 
 	/**
@@ -178,7 +188,7 @@ public class DynamicConfigManager {
 	 * @return
 	 */
 	public Rule getRuleByPath (String path) {
-		return pathRuleMap.get(path);
+		return snapshot.getRuleByPath(path);
 	}
 
 	/**
@@ -187,6 +197,82 @@ public class DynamicConfigManager {
 	 * @return
 	 */
 	public List<Rule> getRuleByServiceId(String serviceId) {
-		return serverRuleMap.get(serviceId);
+		return snapshot.getRuleByServiceId(serviceId);
+	}
+
+	/**
+	 * 根据服务id与请求路径，通过路由索引匹配规则
+	 * @param serviceId
+	 * @param path
+	 * @return 没有匹配上返回 null
+	 */
+	public Rule matchRule(String serviceId, String path) {
+		return snapshot.matchRule(serviceId, path);
+	}
+
+	/***************** 	快照发布 	***************/
+
+	/**
+	 * 编译规则，并根据规则集合重建规则、路径、服务与路由索引，发布新快照
+	 * @param ruleList
+	 */
+	private void publishRules(Collection<Rule> ruleList) {
+		// 编译结果保存在新快照中，不修改规则对象，旧快照上正在处理的请求仍使用旧的编译结果
+		Map<String, Object> newCompiledRuleMap = new HashMap<>();
+		RuleCompiler compiler = ruleCompiler;
+		if (compiler != null) {
+			for (Rule rule : ruleList) {
+				newCompiledRuleMap.put(rule.getId(), compiler.compile(rule));
+			}
+		}
+
+		Map<String, Rule> newRuleMap = new HashMap<>();
+		Map<String, Rule> newPathMap = new HashMap<>();
+		Map<String, List<Rule>> newServiceMap = new HashMap<>();
+		Set<String> newStreamingServiceIds = new HashSet<>();
+
+		for (Rule rule : ruleList) {
+			newRuleMap.put(rule.getId(), rule);
+			newServiceMap.computeIfAbsent(rule.getServiceId(), k -> new ArrayList<>()).add(rule);
+			if (rule.isStreaming()) {
+				newStreamingServiceIds.add(rule.getServiceId());
+			}
+
+			List<String> paths = rule.getPaths();
+			if (paths != null) {
+				for (String path : paths) {
+					String key = rule.getServiceId() + DIT_SEPARATOR + path;
+					newPathMap.put(key, rule);
+				}
+			}
+		}
+
+		Map<String, RouteIndex> newRouteIndexMap = new HashMap<>();
+		newServiceMap.forEach((serviceId, rules) -> newRouteIndexMap.put(serviceId, RouteIndex.build(rules)));
+
+		ConfigSnapshot current = snapshot;
+		snapshot = new ConfigSnapshot(current.getVersion() + 1,
+				current.serviceDefinitionMap,
+				current.serviceInstanceMap,
+				newRuleMap, newPathMap, newServiceMap, newRouteIndexMap, newStreamingServiceIds,
+				newCompiledRuleMap);
+	}
+
+	/**
+	 * 基于当前快照的规则部分，发布新的服务定义与服务实例
+	 */
+	private void publish(ConfigSnapshot current,
+						 Map<String, ServiceDefinition> definitions,
+						 Map<String, ServiceInstanceGroup> instances) {
+		ConfigSnapshot next = new ConfigSnapshot(current.getVersion() + 1,
+				definitions, instances,
+				current.ruleMap, current.pathRuleMap,
+				current.serviceRuleMap, current.routeIndexMap, current.streamingServiceIds,
+				current.compiledRuleMap);
+		snapshot = next;
+		ServiceInstancesListener listener = serviceInstancesListener;
+		if (listener != null && instances != current.serviceInstanceMap) {
+			listener.onInstancesPublished(next);
+		}
 	}
 }
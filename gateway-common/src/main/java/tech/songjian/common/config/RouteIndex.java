@@ -0,0 +1,278 @@
+package tech.songjian.common.config;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import static tech.songjian.common.constants.BasicConst.PATH_SEPARATOR;
+
+/**
+ * 单个服务的路由索引：按路径段构建的前缀树，构建完成后不可变
+ *
+ * 节点类型：
+ * 1、精确节点：rule.paths 中的完整路径
+ * 2、模板节点：rule.paths 中形如 /user/{id} 的路径段
+ * 3、前缀节点：rule.prefix，按路径段边界匹配，取最长前缀
+ *
+ * 匹配优先级：精确 > 模板 > 最长前缀；同一节点上有多条规则时，取 order 最小的规则
+ * 查询过程只在原始 path 上移动下标，不做字符串切分与拼接
+ */
+public final class RouteIndex {
+
+	private static final char SLASH = PATH_SEPARATOR.charAt(0);
+
+	private static final char VAR_START = '{';
+
+	private static final char VAR_END = '}';
+
+	public static final RouteIndex EMPTY = new RouteIndex(new Builder().root.compile());
+
+	private final Node root;
+
+	private RouteIndex(Node root) {
+		this.root = root;
+	}
+
+	/**
+	 * 根据服务下的所有规则构建路由索引
+	 * @param rules
+	 * @return
+	 */
+	public static RouteIndex build(List<Rule> rules) {
+		if (rules == null || rules.isEmpty()) {
+			return EMPTY;
+		}
+		Builder builder = new Builder();
+		for (Rule rule : rules) {
+			if (rule.getPaths() != null) {
+				for (String path : rule.getPaths()) {
+					builder.addExact(path, rule);
+				}
+			}
+			if (rule.getPrefix() != null) {
+				builder.addPrefix(rule.getPrefix(), rule);
+			}
+		}
+		return new RouteIndex(builder.root.compile());
+	}
+
+	/**
+	 * 根据请求路径匹配规则
+	 * @param path
+	 * @return 没有匹配上返回 null
+	 */
+	public Rule match(String path) {
+		if (path == null) {
+			return null;
+		}
+		Rule rule = matchExact(root, path, skipSlash(path, 0));
+		if (rule != null) {
+			return rule;
+		}
+		return matchPrefix(path);
+	}
+
+	/**
+	 * 精确与模板匹配，静态段优先，失败后回溯到模板段
+	 */
+	private static Rule matchExact(Node node, String path, int from) {
+		int length = path.length();
+		if (from >= length) {
+			return node.exactRule;
+		}
+		int end = path.indexOf(SLASH, from);
+		if (end < 0) {
+			end = length;
+		}
+		int next = skipSlash(path, end);
+		Node child = node.findChild(path, from, end);
+		if (child != null) {
+			Rule rule = matchExact(child, path, next);
+			if (rule != null) {
+				return rule;
+			}
+		}
+		if (node.varChild != null) {
+			return matchExact(node.varChild, path, next);
+		}
+		return null;
+	}
+
+	/**
+	 * 沿静态段向下，记录最深的前缀规则
+	 */
+	private Rule matchPrefix(String path) {
+		int length = path.length();
+		Node node = root;
+		Rule best = node.prefixRule;
+		int from = skipSlash(path, 0);
+		while (from < length) {
+			int end = path.indexOf(SLASH, from);
+			if (end < 0) {
+				end = length;
+			}
+			node = node.findChild(path, from, end);
+			if (node == null) {
+				break;
+			}
+			if (node.prefixRule != null) {
+				best = node.prefixRule;
+			}
+			from = skipSlash(path, end);
+		}
+		return best;
+	}
+
+	private static int skipSlash(String path, int index) {
+		int length = path.length();
+		while (index < length && path.charAt(index) == SLASH) {
+			index++;
+		}
+		return index;
+	}
+
+	/**
+	 * 将 key 与 path[from, end) 按字典序比较
+	 */
+	private static int compareSegment(String key, String path, int from, int end) {
+		int keyLength = key.length();
+		int segmentLength = end - from;
+		int min = Math.min(keyLength, segmentLength);
+		for (int i = 0; i < min; i++) {
+			int diff = key.charAt(i) - path.charAt(from + i);
+			if (diff != 0) {
+				return diff;
+			}
+		}
+		return keyLength - segmentLength;
+	}
+
+	/**
+	 * 优先级高的规则排在前面，order 为空时视为最低优先级
+	 */
+	private static Rule prefer(Rule current, Rule candidate) {
+		if (current == null) {
+			return candidate;
+		}
+		int currentOrder = current.getOrder() == null ? Integer.MAX_VALUE : current.getOrder();
+		int candidateOrder = candidate.getOrder() == null ? Integer.MAX_VALUE : candidate.getOrder();
+		if (candidateOrder != currentOrder) {
+			return candidateOrder < currentOrder ? candidate : current;
+		}
+		return candidate.getId().compareTo(current.getId()) < 0 ? candidate : current;
+	}
+
+	/**
+	 * 编译后的只读节点，子节点按 key 排序后二分查找
+	 */
+	private static final class Node {
+
+		private final String[] keys;
+
+		private final Node[] children;
+
+		private final Node varChild;
+
+		private final Rule exactRule;
+
+		private final Rule prefixRule;
+
+		private Node(String[] keys, Node[] children, Node varChild, Rule exactRule, Rule prefixRule) {
+			this.keys = keys;
+			this.children = children;
+			this.varChild = varChild;
+			this.exactRule = exactRule;
+			this.prefixRule = prefixRule;
+		}
+
+		private Node findChild(String path, int from, int end) {
+			int low = 0;
+			int high = keys.length - 1;
+			while (low <= high) {
+				int mid = (low + high) >>> 1;
+				int cmp = compareSegment(keys[mid], path, from, end);
+				if (cmp < 0) {
+					low = mid + 1;
+				} else if (cmp > 0) {
+					high = mid - 1;
+				} else {
+					return children[mid];
+				}
+			}
+			return null;
+		}
+	}
+
+	/**
+	 * 构建期使用的可变节点
+	 */
+	private static final class MutableNode {
+
+		private final Map<String, MutableNode> children = new TreeMap<>();
+
+		private MutableNode varChild;
+
+		private Rule exactRule;
+
+		private Rule prefixRule;
+
+		private Node compile() {
+			String[] keys = new String[children.size()];
+			Node[] compiled = new Node[children.size()];
+			int i = 0;
+			for (Map.Entry<String, MutableNode> entry : children.entrySet()) {
+				keys[i] = entry.getKey();
+				compiled[i] = entry.getValue().compile();
+				i++;
+			}
+			return new Node(keys, compiled,
+					varChild == null ? null : varChild.compile(),
+					exactRule, prefixRule);
+		}
+	}
+
+	private static final class Builder {
+
+		private final MutableNode root = new MutableNode();
+
+		private void addExact(String path, Rule rule) {
+			MutableNode node = root;
+			for (String segment : segments(path)) {
+				if (isVariable(segment)) {
+					if (node.varChild == null) {
+						node.varChild = new MutableNode();
+					}
+					node = node.varChild;
+				} else {
+					node = node.children.computeIfAbsent(segment, k -> new MutableNode());
+				}
+			}
+			node.exactRule = prefer(node.exactRule, rule);
+		}
+
+		private void addPrefix(String prefix, Rule rule) {
+			MutableNode node = root;
+			for (String segment : segments(prefix)) {
+				node = node.children.computeIfAbsent(segment, k -> new MutableNode());
+			}
+			node.prefixRule = prefer(node.prefixRule, rule);
+		}
+
+		private static boolean isVariable(String segment) {
+			return segment.length() > 1
+					&& segment.charAt(0) == VAR_START
+					&& segment.charAt(segment.length() - 1) == VAR_END;
+		}
+
+		private static List<String> segments(String path) {
+			List<String> segments = new ArrayList<>();
+			for (String segment : path.split(PATH_SEPARATOR)) {
+				if (!segment.isEmpty()) {
+					segments.add(segment);
+				}
+			}
+			return segments;
+		}
+	}
+}
@@ -63,6 +63,20 @@ public class Rule implements Comparable<Rule>, Serializable {
      */
     private Set<FlowCtlConfig> flowCtlConfigs =new HashSet<>();
 
+    /**
+     * 是否流式转发：请求体与响应体按块边收边转发，不在网关内聚合，适用于大文件上传、下载
+     * 流式转发的请求体只能发送一次，因此不支持重试与熔断降级
+     */
+    private boolean streaming;
+
+    public boolean isStreaming() {
+        return streaming;
+    }
+
+    public void setStreaming(boolean streaming) {
+        this.streaming = streaming;
+    }
+
     public Set<HystrixConfig> getHystrixConfigs() {
         return hystrixConfigs;
     }
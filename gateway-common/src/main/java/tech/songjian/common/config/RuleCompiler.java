@@ -0,0 +1,17 @@
+package tech.songjian.common.config;
+
+/**
+ * 规则编译器：在规则集合发布为新的配置快照之前，对每条规则做一次性的预处理
+ *
+ * 例如预先构建过滤器链，使请求处理时不再需要按规则查找或解析配置
+ * 编译结果与规则一起保存在同一个快照中，规则对象本身不会被修改，正在处理的请求不受新一次发布的影响
+ */
+public interface RuleCompiler {
+
+	/**
+	 * 编译规则，抛出异常时整批规则都不会被发布
+	 * @param rule
+	 * @return 编译结果，发布后不应再修改，通过 ConfigSnapshot#getCompiledRule 按规则取回
+	 */
+	Object compile(Rule rule);
+}
@@ -0,0 +1,75 @@
+package tech.songjian.common.config;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * 单个服务的全部实例，在注册中心每次推送时构建一次，构建完成后不可变
+ *
+ * 同时预先划分好：
+ * 1、all：全部实例，非灰度请求使用
+ * 2、gray：灰度实例，灰度请求使用
+ *
+ * 负载均衡通过 getInstances 直接按下标访问这些数组，灰度请求不再需要每次过滤、收集成新的集合
+ * 返回的数组与集合由所有请求共享，调用方不能修改
+ */
+public final class ServiceInstanceGroup {
+
+	private static final ServiceInstance[] NO_INSTANCE = new ServiceInstance[0];
+
+	public static final ServiceInstanceGroup EMPTY = new ServiceInstanceGroup(Collections.emptySet());
+
+	private final Set<ServiceInstance> instanceSet;
+
+	private final Set<ServiceInstance> graySet;
+
+	private final ServiceInstance[] all;
+
+	private final ServiceInstance[] gray;
+
+	private ServiceInstanceGroup(Set<ServiceInstance> instanceSet) {
+		this.instanceSet = instanceSet;
+		List<ServiceInstance> grayList = new ArrayList<>();
+		for (ServiceInstance instance : instanceSet) {
+			if (instance.isGray()) {
+				grayList.add(instance);
+			}
+		}
+		this.all = instanceSet.toArray(NO_INSTANCE);
+		this.gray = grayList.toArray(NO_INSTANCE);
+		this.graySet = grayList.isEmpty() ? Collections.emptySet()
+				: Collections.unmodifiableSet(new HashSet<>(grayList));
+	}
+
+	public static ServiceInstanceGroup of(Collection<ServiceInstance> serviceInstances) {
+		if (serviceInstances == null || serviceInstances.isEmpty()) {
+			return EMPTY;
+		}
+		return new ServiceInstanceGroup(Collections.unmodifiableSet(new HashSet<>(serviceInstances)));
+	}
+
+	/**
+	 * 灰度请求只能打到灰度实例上，非灰度请求可以打到全部实例上
+	 * @param gray
+	 * @return
+	 */
+	public ServiceInstance[] getInstances(boolean gray) {
+		return gray ? this.gray : all;
+	}
+
+	public Set<ServiceInstance> getInstanceSet() {
+		return instanceSet;
+	}
+
+	public Set<ServiceInstance> getInstanceSet(boolean gray) {
+		return gray ? graySet : instanceSet;
+	}
+
+	public boolean isEmpty() {
+		return all.length == 0;
+	}
+}
@@ -0,0 +1,15 @@
+package tech.songjian.common.config;
+
+/**
+ * 服务实例发布监听：注册中心推送的实例变更发布为新的配置快照之后回调
+ *
+ * 例如清理已经下线的实例的调用统计
+ */
+public interface ServiceInstancesListener {
+
+	/**
+	 * 新快照已经发布，在发布配置的线程上同步执行，不能阻塞
+	 * @param snapshot
+	 */
+	void onInstancesPublished(ConfigSnapshot snapshot);
+}
@@ -28,6 +28,34 @@ public interface FilterConst {
 
     String LOAD_BALANCE_STRATEGY_ROUND_ROBIN = "RoundRobin";
 
+    String LOAD_BALANCE_STRATEGY_WEIGHTED_ROUND_ROBIN = "WeightedRoundRobin";
+
+    String LOAD_BALANCE_STRATEGY_PEAK_EWMA = "PeakEwma";
+
+    String LOAD_BALANCE_STRATEGY_CONSISTENT_HASH = "ConsistentHash";
+
+    String LOAD_BALANCE_STRATEGY_LEAST_ACTIVE = "LeastActive";
+
+    /**
+     * 一致性哈希的取值来源：header、cookie、query、user、ip
+     */
+    String LOAD_BALANCE_HASH_SOURCE = "hash_source";
+
+    /**
+     * 一致性哈希取值的名称，如 header 名、cookie 名、参数名
+     */
+    String LOAD_BALANCE_HASH_KEY = "hash_key";
+
+    String LOAD_BALANCE_HASH_SOURCE_HEADER = "header";
+
+    String LOAD_BALANCE_HASH_SOURCE_COOKIE = "cookie";
+
+    String LOAD_BALANCE_HASH_SOURCE_QUERY = "query";
+
+    String LOAD_BALANCE_HASH_SOURCE_USER = "user";
+
+    String LOAD_BALANCE_HASH_SOURCE_IP = "ip";
+
     /**
      * ---------------- 路由过滤器 --------------------------
      */
@@ -17,4 +17,24 @@ public interface GatewayConst {
 	 */
 	String BUFFER_TYPE_PARALLEL = "parallel";
 
+	/**
+	 * 不经过缓冲队列，请求在客户端连接所在的 EventLoop 上处理
+	 */
+	String BUFFER_TYPE_EVENT_LOOP = "eventloop";
+
+	/**
+	 * 分片的缓冲队列，每个 Netty worker 一个单生产者的 disruptor
+	 */
+	String BUFFER_TYPE_SHARDED = "sharded";
+
+	/**
+	 * 不经过缓冲队列，每个请求一个虚拟线程，需要 JDK 21
+	 */
+	String BUFFER_TYPE_VIRTUAL = "virtual";
+
+	/**
+	 * 后端 Http 客户端类型：基于 netty Bootstrap 的客户端
+	 */
+	String UPSTREAM_CLIENT_NATIVE = "native";
+
 }
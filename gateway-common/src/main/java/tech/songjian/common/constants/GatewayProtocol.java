@@ -4,12 +4,21 @@ public interface GatewayProtocol {
 
 	String HTTP = "http";
 
+	/**
+	 * 以 HTTP/2（h2c）连接后端的 http 服务
+	 */
+	String HTTP2 = "http2";
+
 	String DUBBO = "dubbo";
 
 	static boolean isHttp(String protocol) {
 		return HTTP.equals(protocol);
 	}
 
+	static boolean isHttp2(String protocol) {
+		return HTTP2.equals(protocol);
+	}
+
 	static boolean isDubbo(String protocol) {
 		return DUBBO.equals(protocol);
 	}
@@ -0,0 +1,48 @@
+package tech.songjian.common.config;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.HashSet;
+
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+/**
+ * Created by IntelliJ IDEA.
+ * tech.songjian.common.config
+ *
+ * @Describe: 规则编译结果随快照发布测试
+ */
+public class ConfigSnapshotTest {
+
+    private static Rule rule(String id, String path) {
+        return new Rule(id, id, "http", 1, "backend-http-server", null,
+                Arrays.asList(path), new HashSet<>());
+    }
+
+    @Test
+    public void republishKeepsOldCompiledRule() {
+        DynamicConfigManager manager = DynamicConfigManager.getInstance();
+        manager.setRuleCompiler(rule -> new Object());
+        Rule ping = rule("ping", "/ping");
+        manager.putAllRule(Arrays.asList(ping));
+        ConfigSnapshot old = manager.getSnapshot();
+        Object compiled = old.getCompiledRule(ping, Object.class);
+        assertNotNull(compiled);
+
+        // 同一个规则对象重新发布，旧快照上的请求仍取到原来的编译结果
+        manager.putRule("echo", rule("echo", "/echo"));
+        ConfigSnapshot next = manager.getSnapshot();
+        assertSame(compiled, old.getCompiledRule(ping, Object.class));
+        assertNotNull(next.getCompiledRule(ping, Object.class));
+        assertNotSame(compiled, next.getCompiledRule(ping, Object.class));
+
+        // 不属于快照的同名规则取不到编译结果
+        assertNull(next.getCompiledRule(rule("ping", "/ping"), Object.class));
+        manager.removeRule("ping");
+        manager.removeRule("echo");
+    }
+}
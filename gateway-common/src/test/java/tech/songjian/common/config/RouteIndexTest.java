@@ -0,0 +1,59 @@
+package tech.songjian.common.config;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertNull;
+
+/**
+ * Created by IntelliJ IDEA.
+ * tech.songjian.common.config
+ *
+ * @Describe: 路由索引匹配测试
+ */
+public class RouteIndexTest {
+
+    private static Rule rule(String id, int order, String prefix, String... paths) {
+        return new Rule(id, id, "http", order, "backend-http-server", prefix,
+                Arrays.asList(paths), new HashSet<>());
+    }
+
+    @Test
+    public void exactBeforePrefix() {
+        Rule ping = rule("ping", 1, "/http-server", "/http-server/ping");
+        Rule server = rule("server", 1, "/http-server/admin");
+        RouteIndex index = RouteIndex.build(Arrays.asList(ping, server));
+
+        assertSame(ping, index.match("/http-server/ping"));
+        assertSame(ping, index.match("/http-server/other"));
+        assertSame(server, index.match("/http-server/admin/list"));
+        assertNull(index.match("/http-serverx"));
+        assertNull(index.match("/user"));
+    }
+
+    @Test
+    public void templateSegment() {
+        Rule detail = rule("detail", 1, null, "/user/{id}/detail");
+        Rule me = rule("me", 1, null, "/user/me/detail");
+        RouteIndex index = RouteIndex.build(Arrays.asList(detail, me));
+
+        assertSame(me, index.match("/user/me/detail"));
+        assertSame(detail, index.match("/user/1001/detail"));
+        assertSame(detail, index.match("//user/1001/detail/"));
+        assertNull(index.match("/user/1001"));
+    }
+
+    @Test
+    public void lowerOrderWins() {
+        Rule low = rule("low", 1, "/user");
+        Rule high = rule("high", 0, "/user");
+        RouteIndex index = RouteIndex.build(Arrays.asList(low, high));
+
+        assertSame(high, index.match("/user/private"));
+        assertNull(RouteIndex.build(Collections.emptyList()).match("/user"));
+    }
+}
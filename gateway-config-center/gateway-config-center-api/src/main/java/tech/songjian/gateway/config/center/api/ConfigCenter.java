@@ -25,4 +25,9 @@ public interface ConfigCenter {
      * 订阅规则变更事件的方法
      */
     void subscribeRulesChange(RulesChangeListener listener);
+
+    /**
+     * 订阅网关运行时配置变更事件的方法，订阅时先回调一次当前配置
+     */
+    void subscribeConfigChange(ConfigChangeListener listener);
 }
@@ -0,0 +1,23 @@
+/**
+ * @projectName JianGateWay
+ * @package tech.songjian.gateway.config.center.api
+ * @className tech.songjian.gateway.config.center.api.ConfigChangeListener
+ */
+package tech.songjian.gateway.config.center.api;
+
+import java.util.Map;
+
+/**
+ * ConfigChangeListener
+ * @description 网关运行时配置变更的监听器
+ * @author SongJian
+ * @version
+ */
+public interface ConfigChangeListener {
+
+    /**
+     * 回调方法：当运行时配置变更时，触发
+     * @param properties 配置项，key 与网关静态配置的属性名相同
+     */
+    void onConfigChange(Map<String, String> properties);
+}
@@ -7,6 +7,7 @@ package tech.songjian.gateway.config.center.nacos;
 
 
 import com.alibaba.fastjson.JSON;
+import com.alibaba.fastjson.JSONObject;
 import com.alibaba.nacos.api.NacosFactory;
 import com.alibaba.nacos.api.config.ConfigService;
 import com.alibaba.nacos.api.config.listener.Listener;
@@ -14,9 +15,12 @@ import com.alibaba.nacos.api.exception.NacosException;
 import lombok.extern.slf4j.Slf4j;
 import tech.songjian.common.config.Rule;
 import tech.songjian.gateway.config.center.api.ConfigCenter;
+import tech.songjian.gateway.config.center.api.ConfigChangeListener;
 import tech.songjian.gateway.config.center.api.RulesChangeListener;
 
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.Executor;
 
 /**
@@ -34,6 +38,11 @@ public class NacosConfigCenter implements ConfigCenter {
      */
     private static final String DATA_ID = "api-gateway";
 
+    /**
+     * 运行时配置在配置内容中的 key，与 rules 并列
+     */
+    private static final String CONFIG_KEY = "config";
+
     /**
      * 服务端地址
      */
@@ -91,5 +100,48 @@ public class NacosConfigCenter implements ConfigCenter {
             throw new RuntimeException(e);
         }
     }
-}
 
+    @Override
+    public void subscribeConfigChange(ConfigChangeListener listener) {
+        try {
+            // 最开始先获取一次配置
+            String config = configService.getConfig(DATA_ID, env, 5000);
+            listener.onConfigChange(parseConfig(config));
+
+            configService.addListener(DATA_ID, env, new Listener() {
+                @Override
+                public Executor getExecutor() {
+                    return null;
+                }
+
+                @Override
+                public void receiveConfigInfo(String configInfo) {
+                    listener.onConfigChange(parseConfig(configInfo));
+                }
+            });
+        } catch (NacosException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * 取出配置内容中的运行时配置，没有配置或配置被删除时返回空，各项恢复为启动时的值
+     * @param configInfo
+     * @return
+     */
+    private static Map<String, String> parseConfig(String configInfo) {
+        Map<String, String> properties = new HashMap<>();
+        if (configInfo == null || configInfo.trim().isEmpty()) {
+            return properties;
+        }
+        JSONObject config = JSON.parseObject(configInfo).getJSONObject(CONFIG_KEY);
+        if (config != null) {
+            for (Map.Entry<String, Object> entry : config.entrySet()) {
+                if (entry.getValue() != null) {
+                    properties.put(entry.getKey(), String.valueOf(entry.getValue()));
+                }
+            }
+        }
+        return properties;
+    }
+}
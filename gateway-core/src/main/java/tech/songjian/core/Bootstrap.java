@@ -13,6 +13,8 @@ import tech.songjian.common.config.ServiceDefinition;
 import tech.songjian.common.config.ServiceInstance;
 import tech.songjian.common.utils.NetUtils;
 import tech.songjian.common.utils.TimeUtil;
+import tech.songjian.core.filter.GatewayFilterChainFactory;
+import tech.songjian.core.filter.loadbalance.InstanceStats;
 import tech.songjian.gateway.config.center.api.ConfigCenter;
 import tech.songjian.gateway.config.center.api.RulesChangeListener;
 import tech.songjian.gateway.register.center.api.RegisterCenter;
@@ -43,13 +45,18 @@ public class Bootstrap {
         // 2、插件初始化
 
         // 3、配置中心管理器初始化：连接配置中心，监听配置中心的新增、修改、删除
-        configCenterInitAndSubscribe(config);
+        ConfigCenter configCenter = configCenterInitAndSubscribe(config);
 
         // 4、启动容器
         Container container = new Container(config);
         container.start();
 
-        // 5、连接注册中心，将注册中心的实例加载到本地
+        // 4.1、订阅运行时配置：消费者线程数、等待策略等，不需要重启即可调整
+        configCenter.subscribeConfigChange(container::refreshConfig);
+        log.info("【配置中心】订阅运行时配置完成：{}", configCenter);
+
+        // 5、连接注册中心，将注册中心的实例加载到本地；实例下线后清理它的调用统计
+        DynamicConfigManager.getInstance().setServiceInstancesListener(InstanceStats::retain);
         final RegisterCenter registerCenter = registerAndSubscribe(config);
 
         // 6、服务优雅关机
@@ -63,7 +70,7 @@ public class Bootstrap {
         });
     }
 
-    private static void configCenterInitAndSubscribe(Config config) {
+    private static ConfigCenter configCenterInitAndSubscribe(Config config) {
 
         // ServiceLoader 它用来实现 SPI(Service Provider Interface)，一种服务发现机制，很多框架用它来做来做服务的扩展发现。
         ServiceLoader<ConfigCenter> serviceLoader = ServiceLoader.load(ConfigCenter.class);
@@ -73,8 +80,18 @@ public class Bootstrap {
         });
         configCenter.init(config.getRegistryAddress(), config.getEnv());
         log.info("【配置中心】初始化完成：{}", configCenter);
-        configCenter.subscribeRulesChange(rules -> DynamicConfigManager.getInstance().putAllRule(rules));
+        // 规则发布前预先编译过滤器链，规则变更后立即生效
+        DynamicConfigManager.getInstance().setRuleCompiler(GatewayFilterChainFactory.getInstance());
+        configCenter.subscribeRulesChange(rules -> {
+            try {
+                DynamicConfigManager.getInstance().putAllRule(rules);
+            } catch (Exception e) {
+                // 规则配置非法时整批拒绝，继续使用原有规则
+                log.error("【配置中心】规则编译失败，本次变更未生效", e);
+            }
+        });
         log.info("【配置中心】订阅规则完成：{}", configCenter);
+        return configCenter;
     }
 
     /**
@@ -108,9 +125,8 @@ public class Bootstrap {
             public void onChange(ServiceDefinition serviceDefinition, Set<ServiceInstance> serviceInstanceSet) {
                 log.info("【注册中心】更新服务与实例: {} {}", serviceDefinition.getUniqueId(), JSON.toJSON(serviceInstanceSet));
                 // 由 DynamicConfigManager 根据传入的 服务定义 和 对应服务的实例集合 进行缓存！
-                DynamicConfigManager manager = DynamicConfigManager.getInstance();
-                manager.addServiceInstance(serviceDefinition.getUniqueId(), serviceInstanceSet);
-                manager.putServiceDefinition(serviceDefinition.getUniqueId(), serviceDefinition);
+                // 服务定义与实例在同一个配置快照中发布
+                DynamicConfigManager.getInstance().putService(serviceDefinition, serviceInstanceSet);
             }
         });
         log.info("【注册中心】订阅服务完成：{}", registerCenter);
@@ -6,8 +6,11 @@
 package tech.songjian.core;
 
 import com.lmax.disruptor.*;
+import tech.songjian.core.disruptor.AdaptiveWaitStrategy;
 import lombok.Data;
 
+import java.util.Set;
+
 /**
  * Config
  * @description 配置
@@ -53,6 +56,59 @@ public class Config {
     private int eventLoopGroupWorkerNum = Runtime.getRuntime().availableProcessors();
     //private int eventLoopGroupWorkerNum = 1;
 
+    /**
+     * netty 的传输实现：auto、io_uring、epoll、nio；不可用时依次回退为 epoll、nio，auto 等同于 epoll
+     */
+    private String transport = "auto";
+
+    /**
+     * 是否开启 SO_REUSEPORT 多路 accept，仅 epoll 支持：
+     * 每个 worker 各绑定一个监听 Channel，由内核在它们之间分配新连接，不再经过 boss 线程
+     */
+    private boolean reusePortEnabled = false;
+
+    /**
+     * TCP_FASTOPEN 的队列长度，0 为关闭，仅 epoll 支持
+     */
+    private int tcpFastOpen = 0;
+
+    /**
+     * TCP_DEFER_ACCEPT 的秒数，客户端发来数据后才完成 accept，0 为关闭，仅 epoll 支持
+     */
+    private int tcpDeferAccept = 0;
+
+    /**
+     * 客户端连接是否开启 TCP_QUICKACK，仅 epoll 支持
+     */
+    private boolean tcpQuickAck = false;
+
+    /**
+     * 是否合并响应的 flush：同一批读事件中产生的 flush 在读完这一批后统一执行，减少 writev 系统调用
+     */
+    private boolean flushConsolidationEnabled = true;
+
+    /**
+     * 合并 flush 时，累计多少次 flush 后强制执行一次，避免一批读事件过大时响应迟迟不发出
+     */
+    private int explicitFlushAfterFlushes = 256;
+
+    /**
+     * 没有读事件进行中时是否也合并 flush：响应通常在后端响应到达时才写出，此时客户端连接上没有读事件，
+     * 开启后这些 flush 合并到当前 EventLoop 任务之后执行
+     */
+    private boolean consolidateWhenNoReadInProgress = true;
+
+    /**
+     * HTTP/1.1 管道化时同一连接上同时处理的最大请求数，达到后暂停读取该连接，响应按请求到达顺序写回
+     */
+    private int httpPipeliningMaxInFlight = 64;
+
+    /**
+     * HTTP/1.1 连接上的请求收完后等待响应的最长时间，单位毫秒，超时返回 504 并继续写后面请求的响应
+     * 正常情况下后端请求超时先到，这里只是兜底，应大于 httpRequestTimeout
+     */
+    private int httpPipeliningResponseTimeout = 60 * 1000;
+
     /**
      * 最大报文长度
      */
@@ -63,6 +119,58 @@ public class Config {
      */
     private boolean whenComplete = true;
 
+    // ----------------------------------------------	HTTP/2 与 TLS 参数选项：
+
+    /**
+     * 是否支持 HTTP/2：明文连接支持 h2c，TLS 连接通过 ALPN 协商 h2
+     */
+    private boolean http2Enabled = true;
+
+    /**
+     * 单个 HTTP/2 连接上允许的最大并发 stream 数
+     */
+    private int http2MaxConcurrentStreams = 1000;
+
+    /**
+     * 是否开启 TLS
+     */
+    private boolean sslEnabled = false;
+
+    /**
+     * PEM 格式的证书链文件
+     */
+    private String sslCertChainFile;
+
+    /**
+     * PEM 格式的 PKCS#8 私钥文件
+     */
+    private String sslPrivateKeyFile;
+
+    /**
+     * TLS 实现：openssl 为 netty-tcnative 提供的 BoringSSL，本机不可用时回退为 jdk
+     */
+    private String sslProvider = "openssl";
+
+    /**
+     * 服务端会话缓存的最大会话数，用于会话 ID 复用
+     */
+    private long sslSessionCacheSize = 20480;
+
+    /**
+     * 会话缓存与会话票据的有效期，单位秒
+     */
+    private long sslSessionTimeout = 300;
+
+    /**
+     * DER 格式的 OCSP 响应文件，配置后在握手时装订给客户端，仅 openssl 支持
+     */
+    private String sslOcspResponseFile;
+
+    /**
+     * 是否监听证书、私钥与 OCSP 响应文件，文件变化后重新加载，只影响新建立的连接
+     */
+    private boolean sslCertWatchEnabled = true;
+
     // ----------------------------------------------	Http Async 参数选项：
 
     /**
@@ -95,17 +203,113 @@ public class Config {
      */
     private int httpPooledConnectionIdleTimeout = 60 * 1000;
 
+    /**
+     * HTTP/1.1 后端的客户端类型：async 为 AsyncHttpClient，native 为按 EventLoop 划分连接池的 netty 客户端
+     * 协议为 http2 的服务始终由 netty 客户端处理
+     */
+    private String upstreamClient = "async";
+
+    /**
+     * 协议为 http2 的服务，每个 EventLoop 到同一个后端实例的最大 HTTP/2 连接数
+     */
+    private int http2ConnectionsPerHost = 1;
+
+    // ----------------------------------------------	流式转发参数选项：
+
+    /**
+     * 流式转发时，尚未发给后端的请求体超过该字节数，暂停读取客户端
+     */
+    private int streamingHighWaterMark = 1024 * 1024;
+
+    /**
+     * 积压的请求体回落到该字节数以下，恢复读取客户端
+     */
+    private int streamingLowWaterMark = 256 * 1024;
+
     /**
      * =============== disruptor 相关
+     * 缓冲队列类型：parallel 为 disruptor 工作线程池，eventloop 为直接在客户端连接所在的 EventLoop 上处理，
+     * sharded 为每个 worker 一个单生产者的 disruptor，各有一个消费者线程，此时 processThread 不生效，
+     * virtual 为每个请求一个虚拟线程，JDK 21 以下回退为 parallel
      */
     private String bufferType = "parallel";
 
     private int bufferSize = 1024 * 16;
 
+    /**
+     * 消费者线程数与等待策略可以通过配置中心在运行时调整
+     */
     private int processThread = Runtime.getRuntime().availableProcessors();
 
+    /**
+     * blocking | busySpin | yielding | sleeping | adaptive
+     */
     private String waitStrategy = "blocking";
 
+    /**
+     * 支持的等待策略
+     */
+    public static final Set<String> WAIT_STRATEGIES = Set.of("blocking", "busySpin", "yielding", "sleeping", "adaptive");
+
+    /**
+     * adaptive 等待策略自旋的最长时间，事件到达间隔超过它时跳过自旋
+     */
+    private long adaptiveSpinMaxMicros = 50;
+
+    /**
+     * adaptive 等待策略 yield 的最长时间，事件到达间隔超过它时直接阻塞
+     */
+    private long adaptiveYieldMaxMicros = 200;
+
+    /**
+     * 缓冲队列过载时的策略：reject 直接返回 503，pause 暂停读取该连接，both 两者都做
+     */
+    private String queueOverloadPolicy = "both";
+
+    /**
+     * 队列占用比例达到该值时按过载策略处理，分片模式下按分片计算
+     */
+    private double queueHighWaterMark = 0.9;
+
+    /**
+     * 队列占用比例回落到该值以下时，恢复读取暂停的连接
+     */
+    private double queueLowWaterMark = 0.5;
+
+    /**
+     * 过载返回 503 时 Retry-After 的秒数
+     */
+    private int queueRetryAfterSeconds = 1;
+
+    /**
+     * virtual 模式下同时执行过滤器链的虚拟线程数上限，超过时直接返回 503
+     */
+    private int virtualMaxConcurrency = 10000;
+
+    /**
+     * 虚拟线程被钉住超过该时长才计入 pinned 指标
+     */
+    private long virtualPinnedThresholdMillis = 20;
+
+    /**
+     * carrier 线程 CPU 利用率的采样间隔
+     */
+    private long virtualCarrierSampleIntervalMillis = 5000;
+
+    /**
+     * 在 EventLoop 上处理请求时，执行阻塞过滤器的线程数
+     */
+    private int blockingFilterThreads = Runtime.getRuntime().availableProcessors() * 2;
+
+    /**
+     * 阻塞过滤器的等待队列长度，队列满时直接返回 503
+     */
+    private int blockingFilterQueueSize = 1024;
+
+    public String getWaitStrategyName() {
+        return waitStrategy;
+    }
+
     /**
      * disruptor 的等待策略
      * @return
@@ -120,6 +324,8 @@ public class Config {
                 return new YieldingWaitStrategy();
             case "sleeping":
                 return new SleepingWaitStrategy();
+            case "adaptive":
+                return new AdaptiveWaitStrategy(adaptiveSpinMaxMicros, adaptiveYieldMaxMicros);
             default:
                 return new BlockingWaitStrategy();
         }
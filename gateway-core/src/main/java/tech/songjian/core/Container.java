@@ -6,13 +6,24 @@
 package tech.songjian.core;
 
 import lombok.extern.slf4j.Slf4j;
+import tech.songjian.core.filter.BlockingFilterExecutor;
 import tech.songjian.core.netty.NettyHttpClient;
 import tech.songjian.core.netty.NettyHttpServer;
+import tech.songjian.core.netty.client.NativeHttpClient;
 import tech.songjian.core.netty.processor.DisruptorNettyCoreProcessor;
 import tech.songjian.core.netty.processor.NettyCoreProcessor;
 import tech.songjian.core.netty.processor.NettyProcessor;
+import tech.songjian.core.netty.processor.VirtualThreadNettyProcessor;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 import static tech.songjian.common.constants.GatewayConst.BUFFER_TYPE_PARALLEL;
+import static tech.songjian.common.constants.GatewayConst.BUFFER_TYPE_SHARDED;
+import static tech.songjian.common.constants.GatewayConst.BUFFER_TYPE_VIRTUAL;
 
 /**
  * Container
@@ -24,6 +35,12 @@ import static tech.songjian.common.constants.GatewayConst.BUFFER_TYPE_PARALLEL;
 @Slf4j
 public class Container implements LifeCycle {
 
+    /**
+     * 运行时可以调整的配置项，其余配置需要重启才能生效
+     */
+    private static final Set<String> RUNTIME_CONFIG_KEYS = Set.of(
+            "processThread", "waitStrategy", "adaptiveSpinMaxMicros", "adaptiveYieldMaxMicros");
+
     /**
      * 配置文件
      */
@@ -31,6 +48,11 @@ public class Container implements LifeCycle {
 
     private NettyHttpClient nettyHttpClient;
 
+    /**
+     * 基于 netty 的后端客户端，负责 HTTP/2 后端，以及 upstreamClient 为 native 时的 HTTP/1.1 后端
+     */
+    private NativeHttpClient nativeHttpClient;
+
     private NettyHttpServer nettyHttpServer;
 
     private NettyProcessor nettyProcessor;
@@ -43,16 +65,28 @@ public class Container implements LifeCycle {
     @Override
     public void init() {
         NettyCoreProcessor nettyCoreProcessor = new NettyCoreProcessor();
+        // 在 EventLoop 上处理请求时，阻塞的过滤器交给它执行
+        BlockingFilterExecutor.getInstance().initialized(config);
         // 判断缓冲队列的类型
-        if (BUFFER_TYPE_PARALLEL.equals(config.getBufferType())) {
-            // 如果缓冲队列采用 parallel ，则使用 disruptor
+        if (BUFFER_TYPE_VIRTUAL.equals(config.getBufferType()) && !VirtualThreadNettyProcessor.isSupported()) {
+            log.warn("【网关核心容器】当前 JDK {} 不支持虚拟线程，缓冲队列回退为 {}", System.getProperty("java.version"), BUFFER_TYPE_PARALLEL);
+            config.setBufferType(BUFFER_TYPE_PARALLEL);
+        }
+        if (BUFFER_TYPE_VIRTUAL.equals(config.getBufferType())) {
+            // 每个请求一个虚拟线程，阻塞的过滤器直接在虚拟线程上执行
+            this.nettyProcessor = new VirtualThreadNettyProcessor(config, nettyCoreProcessor);
+        } else if (BUFFER_TYPE_PARALLEL.equals(config.getBufferType()) || BUFFER_TYPE_SHARDED.equals(config.getBufferType())) {
+            // 如果缓冲队列采用 parallel 或 sharded，则使用 disruptor
             this.nettyProcessor = new DisruptorNettyCoreProcessor(config, nettyCoreProcessor);
         } else {
+            // eventloop：直接在客户端连接所在的 EventLoop 上执行过滤器链
             this.nettyProcessor = nettyCoreProcessor;
         }
 
         this.nettyHttpServer = new NettyHttpServer(config, nettyProcessor);
         this.nettyHttpClient = new NettyHttpClient(config, nettyHttpServer.getWorkerEventLoopGroup());
+        // AsyncHttpClient 仍然保留，处理 native 客户端不支持的请求
+        this.nativeHttpClient = new NativeHttpClient(config, nettyHttpServer.getWorkerEventLoopGroup());
     }
 
     @Override
@@ -60,15 +94,69 @@ public class Container implements LifeCycle {
         nettyProcessor.start();
         nettyHttpServer.start();
         nettyHttpClient.start();
+        nativeHttpClient.start();
         log.info("【网关核心容器】启动完成！");
     }
 
     @Override
     public void shutdown() {
         nettyProcessor.shutdown();
-        nettyHttpServer.shutdown();
+        // 两个客户端的连接都注册在服务端的 worker 线程组上，要在线程组关闭之前关闭
+        nativeHttpClient.shutdown();
         nettyHttpClient.shutdown();
+        nettyHttpServer.shutdown();
+        BlockingFilterExecutor.getInstance().shutdown();
         log.info("【网关核心容器】成功关闭！");
     }
-}
 
+    /**
+     * 配置中心下发运行时配置：在副本上解析、校验，处理器按副本调整成功后才生效
+     * 启动时的 Config 保持不变，配置中心删除某项后恢复为启动时的值
+     * @param properties
+     */
+    public synchronized void refreshConfig(Map<String, String> properties) {
+        Map<String, String> runtime = new HashMap<>();
+        List<String> ignored = new ArrayList<>();
+        for (Map.Entry<String, String> entry : properties.entrySet()) {
+            if (RUNTIME_CONFIG_KEYS.contains(entry.getKey())) {
+                runtime.put(entry.getKey(), entry.getValue().trim());
+            } else {
+                ignored.add(entry.getKey());
+            }
+        }
+        if (!ignored.isEmpty()) {
+            log.warn("【网关核心容器】以下配置不支持运行时调整，重启后生效：{}", ignored);
+        }
+        try {
+            nettyProcessor.reconfigure(runtimeConfig(runtime));
+        } catch (Exception e) {
+            log.error("【网关核心容器】运行时配置调整失败，继续使用原来的配置：{}", runtime, e);
+        }
+    }
+
+    /**
+     * 按下发的运行时配置创建 Config 副本，没有下发的项取启动时的值
+     * @param runtime
+     * @return
+     */
+    private Config runtimeConfig(Map<String, String> runtime) {
+        Config runtimeConfig = new Config();
+        runtimeConfig.setProcessThread(Integer.parseInt(
+                runtime.getOrDefault("processThread", String.valueOf(config.getProcessThread()))));
+        runtimeConfig.setWaitStrategy(runtime.getOrDefault("waitStrategy", config.getWaitStrategyName()));
+        runtimeConfig.setAdaptiveSpinMaxMicros(Long.parseLong(
+                runtime.getOrDefault("adaptiveSpinMaxMicros", String.valueOf(config.getAdaptiveSpinMaxMicros()))));
+        runtimeConfig.setAdaptiveYieldMaxMicros(Long.parseLong(
+                runtime.getOrDefault("adaptiveYieldMaxMicros", String.valueOf(config.getAdaptiveYieldMaxMicros()))));
+        if (runtimeConfig.getProcessThread() <= 0) {
+            throw new IllegalArgumentException("processThread must be positive: " + runtimeConfig.getProcessThread());
+        }
+        if (!Config.WAIT_STRATEGIES.contains(runtimeConfig.getWaitStrategyName())) {
+            throw new IllegalArgumentException("unknown waitStrategy: " + runtimeConfig.getWaitStrategyName());
+        }
+        if (runtimeConfig.getAdaptiveSpinMaxMicros() < 0 || runtimeConfig.getAdaptiveYieldMaxMicros() < 0) {
+            throw new IllegalArgumentException("adaptive wait micros must not be negative");
+        }
+        return runtimeConfig;
+    }
+}
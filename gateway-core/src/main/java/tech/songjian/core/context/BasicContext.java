@@ -39,6 +39,11 @@ public class BasicContext implements IContext{
      */
     protected final ChannelHandlerContext nettyCtx;
 
+    /**
+     * 请求在 HTTP/1.1 连接上的编号，-1 表示不需要排序
+     */
+    protected int responseSequence = -1;
+
     /**
      * 上下文参数
      */
@@ -145,6 +150,16 @@ public class BasicContext implements IContext{
         return this.nettyCtx;
     }
 
+    @Override
+    public int getResponseSequence() {
+        return this.responseSequence;
+    }
+
+    @Override
+    public void setResponseSequence(int responseSequence) {
+        this.responseSequence = responseSequence;
+    }
+
     @Override
     public boolean isKeepAlive() {
         return this.keepAlive;
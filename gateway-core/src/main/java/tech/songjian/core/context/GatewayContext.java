@@ -11,11 +11,16 @@ import io.netty.handler.codec.http.HttpResponse;
 import io.netty.util.ReferenceCountUtil;
 import lombok.Getter;
 import lombok.Setter;
+import tech.songjian.common.config.ConfigSnapshot;
 import tech.songjian.common.config.Rule;
+import tech.songjian.common.config.ServiceInstance;
 import tech.songjian.common.utils.AssertUtil;
+import tech.songjian.core.filter.loadbalance.InstanceStats;
 import tech.songjian.core.request.GatewayRequest;
 import tech.songjian.core.response.GatewayResponse;
 
+import java.util.concurrent.atomic.AtomicReference;
+
 
 /**
  * GatewayContext
@@ -57,6 +62,29 @@ public class GatewayContext extends BasicContext{
     @Getter
     private Timer.Sample timerSample;
 
+    /**
+     * 请求进入网关时读取的配置快照，整个请求处理过程都使用该版本的配置
+     */
+    @Setter
+    @Getter
+    private ConfigSnapshot snapshot;
+
+    /**
+     * 负载均衡选中的服务实例
+     */
+    @Getter
+    private ServiceInstance serviceInstance;
+
+    /**
+     * 选中实例的调用统计，请求结束时置空，保证只结算一次
+     */
+    private final AtomicReference<InstanceStats> instanceStats = new AtomicReference<>();
+
+    /**
+     * 选中实例的开始调用时间
+     */
+    private long instanceBeginNanos;
+
     public GatewayContext(String protocol, ChannelHandlerContext nettyCtx,
                           boolean keepAlive, GatewayRequest request, Rule rule, int currentRetryTimes) {
         super(protocol, nettyCtx, keepAlive);
@@ -151,6 +179,29 @@ public class GatewayContext extends BasicContext{
         return true;
     }
 
+    /**
+     * 记录负载均衡选中的实例，并开始统计该实例的调用
+     * @param serviceInstance
+     */
+    public void beginInstanceCall(ServiceInstance serviceInstance) {
+        // 同一请求重复选择实例时，先结算上一次的统计
+        endInstanceCall();
+        this.serviceInstance = serviceInstance;
+        InstanceStats stats = InstanceStats.of(serviceInstance);
+        this.instanceBeginNanos = stats.begin();
+        instanceStats.set(stats);
+    }
+
+    /**
+     * 结束选中实例的调用统计，多次调用只生效一次
+     */
+    public void endInstanceCall() {
+        InstanceStats stats = instanceStats.getAndSet(null);
+        if (stats != null) {
+            stats.end(instanceBeginNanos);
+        }
+    }
+
     /**
      * 获取原始请求对象
      * @return
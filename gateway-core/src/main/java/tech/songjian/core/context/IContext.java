@@ -131,6 +131,18 @@ public interface IContext {
      */
     ChannelHandlerContext getNettyCtx();
 
+    /**
+     * 请求在 HTTP/1.1 连接上的编号，写响应时通过 HttpPipeliningHandler.sequenced 标上，-1 表示不需要排序
+     * @return
+     */
+    int getResponseSequence();
+
+    /**
+     * 设置请求在连接上的编号
+     * @param responseSequence
+     */
+    void setResponseSequence(int responseSequence);
+
     /**
      * 判断是否长连接
      * @return
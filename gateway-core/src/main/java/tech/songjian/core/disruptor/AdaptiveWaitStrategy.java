@@ -0,0 +1,138 @@
+package tech.songjian.core.disruptor;
+
+import com.lmax.disruptor.AlertException;
+import com.lmax.disruptor.Sequence;
+import com.lmax.disruptor.SequenceBarrier;
+import com.lmax.disruptor.WaitStrategy;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Created by IntelliJ IDEA.
+ * tech.songjian.core.disruptor
+ *
+ * @Author: SongJian
+ * @Create: 2026/10/17 11:30
+ * @Version:
+ * @Describe: 自适应的等待策略：先自旋，再 yield，最后阻塞等待生产者唤醒
+ *            每个消费者线程记录自己等待事件的平均时长（EWMA），即事件到达的间隔：
+ *            间隔短于自旋上限时，自旋约两倍间隔就能等到下一个事件，不用付出唤醒的延迟；
+ *            间隔更长时跳过自旋，请求稀少时不空耗 CPU；yield 阶段同理
+ *            只有消费者真正阻塞时，生产者发布才需要加锁唤醒
+ */
+public class AdaptiveWaitStrategy implements WaitStrategy {
+
+    /**
+     * EWMA 的权重，新的等待时长占 1/8
+     */
+    private static final int EWMA_SHIFT = 3;
+
+    private static final long MIN_SPIN_NANOS = 1000;
+
+    private final long maxSpinNanos;
+
+    private final long maxYieldNanos;
+
+    private final Lock lock = new ReentrantLock();
+
+    private final Condition processorNotifyCondition = lock.newCondition();
+
+    /**
+     * 是否有消费者阻塞，没有时生产者发布不需要加锁
+     */
+    private final AtomicBoolean signalNeeded = new AtomicBoolean(false);
+
+    /**
+     * 每个消费者线程的平均等待时长
+     */
+    private final ThreadLocal<long[]> averageWaitNanos = ThreadLocal.withInitial(() -> new long[1]);
+
+    public AdaptiveWaitStrategy(long maxSpinMicros, long maxYieldMicros) {
+        this.maxSpinNanos = TimeUnit.MICROSECONDS.toNanos(maxSpinMicros);
+        this.maxYieldNanos = TimeUnit.MICROSECONDS.toNanos(maxYieldMicros);
+    }
+
+    @Override
+    public long waitFor(long sequence, Sequence cursor, Sequence dependentSequence, SequenceBarrier barrier)
+            throws AlertException, InterruptedException {
+        long[] average = averageWaitNanos.get();
+        long availableSequence = dependentSequence.get();
+        if (availableSequence >= sequence) {
+            average[0] -= average[0] >> EWMA_SHIFT;
+            return availableSequence;
+        }
+
+        long expected = average[0];
+        // 事件一直是现成的时平均值趋近 0，至少自旋一小段，避免刚开始等待就阻塞
+        long spinNanos = expected <= maxSpinNanos ? Math.min(maxSpinNanos, Math.max(MIN_SPIN_NANOS, expected << 1)) : 0;
+        long yieldNanos = expected <= maxYieldNanos ? Math.min(maxYieldNanos, expected << 1) : 0;
+        long start = System.nanoTime();
+        long elapsed = 0;
+
+        // 自旋
+        while ((availableSequence = dependentSequence.get()) < sequence && elapsed < spinNanos) {
+            barrier.checkAlert();
+            Thread.onSpinWait();
+            elapsed = System.nanoTime() - start;
+        }
+        // 让出 CPU
+        while (availableSequence < sequence && elapsed < spinNanos + yieldNanos) {
+            barrier.checkAlert();
+            Thread.yield();
+            availableSequence = dependentSequence.get();
+            elapsed = System.nanoTime() - start;
+        }
+        // 阻塞，等待生产者发布时唤醒
+        if (availableSequence < sequence) {
+            if (cursor.get() < sequence) {
+                lock.lock();
+                try {
+                    do {
+                        signalNeeded.getAndSet(true);
+                        if (cursor.get() >= sequence) {
+                            break;
+                        }
+                        barrier.checkAlert();
+                        processorNotifyCondition.await();
+                    } while (cursor.get() < sequence);
+                } finally {
+                    lock.unlock();
+                }
+            }
+            // 依赖的消费者还没有处理到
+            while ((availableSequence = dependentSequence.get()) < sequence) {
+                barrier.checkAlert();
+                Thread.onSpinWait();
+            }
+            elapsed = System.nanoTime() - start;
+        }
+
+        average[0] += (elapsed - average[0]) >> EWMA_SHIFT;
+        return availableSequence;
+    }
+
+    @Override
+    public void signalAllWhenBlocking() {
+        // 不能先普通读一次再 CAS：单生产者发布时 cursor 只是有序写，普通读可能读到旧值而漏掉刚开始阻塞的消费者
+        if (signalNeeded.getAndSet(false)) {
+            lock.lock();
+            try {
+                processorNotifyCondition.signalAll();
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "AdaptiveWaitStrategy{" +
+                "maxSpinNanos=" + maxSpinNanos +
+                ", maxYieldNanos=" + maxYieldNanos +
+                '}';
+    }
+}
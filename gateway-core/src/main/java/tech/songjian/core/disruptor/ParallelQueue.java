@@ -31,6 +31,12 @@ public interface ParallelQueue<E> {
     boolean tryAdd(E event);
     boolean tryAdd(E... event);
 
+    /**
+     * 当前线程投递的队列还能放下的元素个数，已经销毁时为 0
+     * @return
+     */
+    long remainingCapacity();
+
     /**
      * 启动
      */
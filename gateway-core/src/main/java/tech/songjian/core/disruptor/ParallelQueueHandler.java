@@ -112,6 +112,12 @@ public class ParallelQueueHandler<E> implements ParallelQueue<E> {
         }
     }
 
+    @Override
+    public long remainingCapacity() {
+        final RingBuffer<Holder> holderRingBuffer = ringBuffer;
+        return holderRingBuffer == null ? 0 : holderRingBuffer.remainingCapacity();
+    }
+
     @Override
     public void start() {
         this.ringBuffer = workerPool.start(executorService);
@@ -240,13 +246,31 @@ public class ParallelQueueHandler<E> implements ParallelQueue<E> {
         }
     }
 
-    public class HolderWorkHandler implements WorkHandler<Holder> {
+    public class HolderWorkHandler implements WorkHandler<Holder>, LifecycleAware {
+
+        // 当前消费者线程的忙闲统计
+        private QueueConsumerMetrics.ConsumerStats stats;
 
         @Override
         public void onEvent(Holder holder) throws Exception {
-            eventListener.onEvent(holder.event);
+            long start = System.nanoTime();
+            try {
+                eventListener.onEvent(holder.event);
+            } finally {
+                stats.record(System.nanoTime() - start);
+            }
             holder.setValue(null);
         }
+
+        @Override
+        public void onStart() {
+            stats = QueueConsumerMetrics.getInstance().register(Thread.currentThread().getName());
+        }
+
+        @Override
+        public void onShutdown() {
+            QueueConsumerMetrics.getInstance().unregister(stats);
+        }
     }
 
     public class HolderExceptionHandler implements ExceptionHandler<Holder> {
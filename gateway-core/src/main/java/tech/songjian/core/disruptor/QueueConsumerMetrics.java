@@ -0,0 +1,106 @@
+package tech.songjian.core.disruptor;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Created by IntelliJ IDEA.
+ * tech.songjian.core.disruptor
+ *
+ * @Author: SongJian
+ * @Create: 2026/10/17 11:45
+ * @Version:
+ * @Describe: 缓冲队列消费者线程的忙闲统计：处理事件的累计时长与等待事件的累计时长，供监控拉取
+ *            消费者线程启动时登记，停止时注销，运行时调整线程数后自动跟着变化
+ */
+public final class QueueConsumerMetrics {
+
+    private static final class SingletonHolder {
+        private static final QueueConsumerMetrics INSTANCE = new QueueConsumerMetrics();
+    }
+
+    private QueueConsumerMetrics() {
+
+    }
+
+    public static QueueConsumerMetrics getInstance() {
+        return SingletonHolder.INSTANCE;
+    }
+
+    private final Set<ConsumerStats> consumers = ConcurrentHashMap.newKeySet();
+
+    ConsumerStats register(String name) {
+        ConsumerStats stats = new ConsumerStats(name);
+        consumers.add(stats);
+        return stats;
+    }
+
+    void unregister(ConsumerStats stats) {
+        consumers.remove(stats);
+    }
+
+    /**
+     * 当前运行中的消费者
+     * @return
+     */
+    public List<ConsumerStats> getConsumers() {
+        return new ArrayList<>(consumers);
+    }
+
+    public static final class ConsumerStats {
+
+        private final String name;
+
+        private final long startNanos = System.nanoTime();
+
+        /**
+         * 只由消费者线程自己写
+         */
+        private volatile long busyNanos;
+
+        private volatile long events;
+
+        private ConsumerStats(String name) {
+            this.name = name;
+        }
+
+        void record(long nanos) {
+            busyNanos += nanos;
+            events++;
+        }
+
+        /**
+         * 消费者线程名
+         * @return
+         */
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * 处理事件的累计时长
+         * @return
+         */
+        public double getBusySeconds() {
+            return busyNanos / 1e9;
+        }
+
+        /**
+         * 等待事件的累计时长，即启动以来除去处理事件的时间
+         * @return
+         */
+        public double getIdleSeconds() {
+            return Math.max(0, System.nanoTime() - startNanos - busyNanos) / 1e9;
+        }
+
+        /**
+         * 处理的事件数
+         * @return
+         */
+        public long getEvents() {
+            return events;
+        }
+    }
+}
@@ -0,0 +1,187 @@
+package tech.songjian.core.disruptor;
+
+import com.google.common.base.Preconditions;
+import com.lmax.disruptor.BlockingWaitStrategy;
+import com.lmax.disruptor.WaitStrategy;
+import com.lmax.disruptor.dsl.ProducerType;
+import io.netty.util.concurrent.FastThreadLocal;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Created by IntelliJ IDEA.
+ * tech.songjian.core.disruptor
+ *
+ * @Author: SongJian
+ * @Create: 2026/10/17 10:20
+ * @Version:
+ * @Describe: 分片的 disruptor 队列，每个生产者线程独占一个单生产者的 RingBuffer，每个 RingBuffer 一个消费者线程
+ *            生产者是 Netty 的 worker，同一连接的请求总是由同一个 EventLoop 投递，进入同一个分片，顺序不变；
+ *            发布时不需要在多生产者的序号上 CAS 竞争
+ *            分片数要等于生产者线程数，分片用完后新的生产者线程投递的事件直接按异常处理
+ */
+public class ShardedParallelQueueHandler<E> implements ParallelQueue<E> {
+
+    private final ParallelQueueHandler<E>[] shards;
+
+    private final EventListener<E> eventListener;
+
+    /**
+     * 下一个可以认领的分片
+     */
+    private final AtomicInteger nextShard = new AtomicInteger();
+
+    /**
+     * 当前线程认领的分片，-1 表示分片已经用完
+     */
+    private final FastThreadLocal<Integer> shardIndex = new FastThreadLocal<Integer>() {
+        @Override
+        protected Integer initialValue() {
+            int index = nextShard.getAndIncrement();
+            return index < shards.length ? index : -1;
+        }
+    };
+
+    @SuppressWarnings("unchecked")
+    public ShardedParallelQueueHandler(Builder<E> builder) {
+        this.eventListener = builder.listener;
+        this.shards = new ParallelQueueHandler[builder.shards];
+        for (int i = 0; i < shards.length; i++) {
+            shards[i] = new ParallelQueueHandler.Builder<E>()
+                    .setProducerType(ProducerType.SINGLE)
+                    .setBufferSize(builder.bufferSize)
+                    .setThreads(1)
+                    .setNamePrefix(builder.namePrefix + i)
+                    .setWaitStrategy(builder.waitStrategyFactory.get())
+                    .setListener(builder.listener)
+                    .build();
+        }
+    }
+
+    @Override
+    public void add(E event) {
+        ParallelQueueHandler<E> shard = currentShard();
+        if (shard == null) {
+            eventListener.onException(noShard(), -1, event);
+            return;
+        }
+        shard.add(event);
+    }
+
+    @Override
+    public void add(E... events) {
+        ParallelQueueHandler<E> shard = currentShard();
+        if (shard == null) {
+            IllegalStateException e = noShard();
+            for (E event : events) {
+                eventListener.onException(e, -1, event);
+            }
+            return;
+        }
+        shard.add(events);
+    }
+
+    @Override
+    public boolean tryAdd(E event) {
+        ParallelQueueHandler<E> shard = currentShard();
+        return shard != null && shard.tryAdd(event);
+    }
+
+    @Override
+    public boolean tryAdd(E... events) {
+        ParallelQueueHandler<E> shard = currentShard();
+        return shard != null && shard.tryAdd(events);
+    }
+
+    @Override
+    public long remainingCapacity() {
+        ParallelQueueHandler<E> shard = currentShard();
+        return shard == null ? 0 : shard.remainingCapacity();
+    }
+
+    @Override
+    public void start() {
+        for (ParallelQueueHandler<E> shard : shards) {
+            shard.start();
+        }
+    }
+
+    @Override
+    public void shutDown() {
+        for (ParallelQueueHandler<E> shard : shards) {
+            shard.shutDown();
+        }
+    }
+
+    @Override
+    public boolean isShutDown() {
+        for (ParallelQueueHandler<E> shard : shards) {
+            if (!shard.isShutDown()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private ParallelQueueHandler<E> currentShard() {
+        int index = shardIndex.get();
+        return index < 0 ? null : shards[index];
+    }
+
+    private IllegalStateException noShard() {
+        return new IllegalStateException("ShardedParallelQueueHandler 分片已用完，生产者线程数超过分片数：" + shards.length
+                + "，线程：" + Thread.currentThread().getName());
+    }
+
+    /**
+     * 建造者模式构建
+     * 通过 setter 返回 builder
+     */
+    public static class Builder<E> {
+        // 分片数，与生产者线程数相同
+        private int shards = 1;
+        // 每个分片的 buffer 大小
+        private int bufferSize = 1024 * 16;
+        // 前缀
+        private String namePrefix = "";
+        // 等待策略，每个分片单独创建，消费者阻塞时只被自己分片的发布唤醒
+        private Supplier<WaitStrategy> waitStrategyFactory = BlockingWaitStrategy::new;
+        private EventListener<E> listener;
+
+        public Builder<E> setShards(int shards) {
+            Preconditions.checkArgument(shards >= 1);
+            this.shards = shards;
+            return this;
+        }
+
+        public Builder<E> setBufferSize(int bufferSize) {
+            Preconditions.checkArgument(Integer.bitCount(bufferSize) == 1);
+            this.bufferSize = bufferSize;
+            return this;
+        }
+
+        public Builder<E> setNamePrefix(String namePrefix) {
+            Preconditions.checkNotNull(namePrefix);
+            this.namePrefix = namePrefix;
+            return this;
+        }
+
+        public Builder<E> setWaitStrategyFactory(Supplier<WaitStrategy> waitStrategyFactory) {
+            Preconditions.checkNotNull(waitStrategyFactory);
+            this.waitStrategyFactory = waitStrategyFactory;
+            return this;
+        }
+
+        public Builder<E> setListener(EventListener<E> listener) {
+            Preconditions.checkNotNull(listener);
+            this.listener = listener;
+            return this;
+        }
+
+        public ShardedParallelQueueHandler<E> build() {
+            Preconditions.checkNotNull(listener);
+            return new ShardedParallelQueueHandler<>(this);
+        }
+    }
+}
@@ -0,0 +1,37 @@
+/**
+ * @projectName JianGateWay
+ * @package tech.songjian.core.filter
+ * @className tech.songjian.core.filter.AsyncFilter
+ */
+package tech.songjian.core.filter;
+
+import tech.songjian.core.context.GatewayContext;
+
+import java.util.concurrent.CompletionStage;
+
+/**
+ * AsyncFilter
+ * @description 异步过滤器接口：需要等待 I/O（如 Redis、远程鉴权）的过滤器实现此接口，
+ *              返回的 CompletionStage 完成后过滤器链才继续执行下一个过滤器，等待期间不占用工作线程
+ * @author SongJian
+ * @version
+ */
+public interface AsyncFilter extends Filter {
+
+    /**
+     * 异步执行过滤器，异常完成时过滤器链终止
+     * @param ctx
+     * @return
+     */
+    CompletionStage<Void> doFilterAsync(GatewayContext ctx);
+
+    /**
+     * 同步调用时阻塞等待异步结果，仅用于兼容，过滤器链不会走这个方法
+     * @param ctx
+     * @throws Exception
+     */
+    @Override
+    default void doFilter(GatewayContext ctx) throws Exception {
+        doFilterAsync(ctx).toCompletableFuture().get();
+    }
+}
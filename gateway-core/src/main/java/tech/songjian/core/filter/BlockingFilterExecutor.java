@@ -0,0 +1,74 @@
+/**
+ * @projectName JianGateWay
+ * @package tech.songjian.core.filter
+ * @className tech.songjian.core.filter.BlockingFilterExecutor
+ */
+package tech.songjian.core.filter;
+
+import io.netty.util.concurrent.DefaultThreadFactory;
+import lombok.extern.slf4j.Slf4j;
+import tech.songjian.core.Config;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * BlockingFilterExecutor
+ * @description 执行阻塞过滤器的有界线程池
+ *              请求在 EventLoop 上处理时，阻塞的过滤器不能占用 EventLoop，交给这里执行，执行完再回到 EventLoop；
+ *              线程数与队列长度都有上限，满了直接拒绝，由过滤器链返回 503
+ * @author SongJian
+ * @version
+ */
+@Slf4j
+public final class BlockingFilterExecutor {
+
+    private static final class SingletonHolder {
+        private static final BlockingFilterExecutor INSTANCE = new BlockingFilterExecutor();
+    }
+
+    private BlockingFilterExecutor() {
+
+    }
+
+    public static BlockingFilterExecutor getInstance() {
+        return SingletonHolder.INSTANCE;
+    }
+
+    private volatile ThreadPoolExecutor executor;
+
+    public synchronized void initialized(Config config) {
+        if (executor != null) {
+            return;
+        }
+        int threads = Math.max(1, config.getBlockingFilterThreads());
+        this.executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(Math.max(1, config.getBlockingFilterQueueSize())),
+                new DefaultThreadFactory("gateway-blocking-filter"),
+                new ThreadPoolExecutor.AbortPolicy());
+        this.executor.allowCoreThreadTimeOut(true);
+        log.info("【阻塞过滤器线程池】线程数：{}，队列长度：{}", threads, config.getBlockingFilterQueueSize());
+    }
+
+    /**
+     * 提交阻塞任务
+     * @param task
+     * @throws RejectedExecutionException 线程池已满或未初始化
+     */
+    public void execute(Runnable task) {
+        ThreadPoolExecutor current = executor;
+        if (current == null) {
+            throw new RejectedExecutionException("blocking filter executor not initialized");
+        }
+        current.execute(task);
+    }
+
+    public synchronized void shutdown() {
+        if (executor != null) {
+            executor.shutdown();
+            executor = null;
+        }
+    }
+}
@@ -0,0 +1,78 @@
+/**
+ * @projectName JianGateWay
+ * @package tech.songjian.core.filter
+ * @className tech.songjian.core.filter.CompiledRule
+ */
+package tech.songjian.core.filter;
+
+import tech.songjian.common.config.ConfigSnapshot;
+import tech.songjian.common.config.Rule;
+import tech.songjian.core.context.GatewayContext;
+import tech.songjian.core.filter.flowCtl.FlowCtlSettings;
+import tech.songjian.core.filter.loadbalance.LoadBalanceSettings;
+
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+/**
+ * CompiledRule
+ * @description 规则的编译结果：规则发布前由 GatewayFilterChainFactory 生成，与规则一起保存在配置快照中
+ *              各过滤器的强类型配置只在编译时由 Filter#compileConfig 设置，发布后不再修改
+ * @author SongJian
+ * @version
+ */
+public final class CompiledRule {
+
+    /**
+     * 预先构建好的过滤器链
+     */
+    private final GatewayFilterChain filterChain;
+
+    /**
+     * 负载均衡配置，规则没有配置负载均衡过滤器时为 null
+     */
+    private LoadBalanceSettings loadBalanceSettings;
+
+    /**
+     * 各限流配置解析好的结果，以规则上的限流配置对象为键
+     */
+    private final Map<Rule.FlowCtlConfig, FlowCtlSettings> flowCtlSettingsMap = new IdentityHashMap<>();
+
+    public CompiledRule(GatewayFilterChain filterChain) {
+        this.filterChain = filterChain;
+    }
+
+    /**
+     * 获取请求所匹配规则的编译结果，规则来自请求进入网关时读取的快照
+     * @param ctx
+     * @return 未经编译的规则返回 null
+     */
+    public static CompiledRule of(GatewayContext ctx) {
+        ConfigSnapshot snapshot = ctx.getSnapshot();
+        Rule rule = ctx.getRule();
+        if (snapshot == null || rule == null) {
+            return null;
+        }
+        return snapshot.getCompiledRule(rule, CompiledRule.class);
+    }
+
+    public GatewayFilterChain getFilterChain() {
+        return filterChain;
+    }
+
+    public LoadBalanceSettings getLoadBalanceSettings() {
+        return loadBalanceSettings;
+    }
+
+    public void setLoadBalanceSettings(LoadBalanceSettings loadBalanceSettings) {
+        this.loadBalanceSettings = loadBalanceSettings;
+    }
+
+    public FlowCtlSettings getFlowCtlSettings(Rule.FlowCtlConfig flowCtlConfig) {
+        return flowCtlSettingsMap.get(flowCtlConfig);
+    }
+
+    public void putFlowCtlSettings(Rule.FlowCtlConfig flowCtlConfig, FlowCtlSettings flowCtlSettings) {
+        flowCtlSettingsMap.put(flowCtlConfig, flowCtlSettings);
+    }
+}
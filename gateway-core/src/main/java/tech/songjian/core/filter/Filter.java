@@ -5,6 +5,7 @@
  */
 package tech.songjian.core.filter;
 
+import tech.songjian.common.config.Rule;
 import tech.songjian.core.context.GatewayContext;
 
 /**
@@ -23,6 +24,25 @@ public interface Filter {
      */
     void doFilter(GatewayContext ctx) throws Exception;
 
+    /**
+     * 规则加载时解析并校验该过滤器在规则上的配置，解析结果保存在规则的编译结果中，请求处理时不再解析
+     * 配置非法时直接抛出异常，整批规则不会被发布
+     * @param rule
+     * @param compiledRule 尚未发布的编译结果
+     */
+    default void compileConfig(Rule rule, CompiledRule compiledRule) {
+    }
+
+    /**
+     * 本次请求执行该过滤器时是否会阻塞线程，只对注解上声明了 blocking 的过滤器调用
+     * 请求在 EventLoop 上处理时，阻塞的过滤器交给 BlockingFilterExecutor 执行
+     * @param ctx
+     * @return
+     */
+    default boolean isBlocking(GatewayContext ctx) {
+        return true;
+    }
+
     /**
      * 通过注解拿到排序
      * @return
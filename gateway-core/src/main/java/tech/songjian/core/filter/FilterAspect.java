@@ -36,4 +36,10 @@ public @interface FilterAspect {
      * @return
      */
     int order() default 0;
+
+    /**
+     * 是否可能阻塞线程，如同步访问 Redis；具体某次请求是否阻塞由 Filter.isBlocking 判断
+     * @return
+     */
+    boolean blocking() default false;
 }
@@ -5,13 +5,19 @@
  */
 package tech.songjian.core.filter;
 
+import io.netty.util.concurrent.EventExecutor;
 import lombok.extern.slf4j.Slf4j;
+import tech.songjian.common.enums.ResponseCode;
+import tech.songjian.common.exception.BaseException;
+import tech.songjian.common.exception.ResponseException;
 import tech.songjian.core.context.GatewayContext;
+import tech.songjian.core.helper.ResponseHelper;
+import tech.songjian.core.response.GatewayResponse;
 
-import java.util.ArrayList;
-import java.util.Collections;
 import java.util.List;
-import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.RejectedExecutionException;
 
 /**
  * GatewayFilterChain
@@ -24,49 +30,144 @@ import java.util.concurrent.CopyOnWriteArrayList;
 public class GatewayFilterChain {
 
     /**
-     * 过滤器集合
+     * 过滤器数组，规则加载时构建完成，之后只读
      */
-    private List<Filter> filterList = new ArrayList<>();
+    private final Filter[] filters;
 
     /**
-     * 向过滤器链中添加过滤器
-     * @param filter
-     * @return
+     * 注解上声明了可能阻塞的过滤器，构建时确定，请求处理时不再读注解
      */
-    public GatewayFilterChain addFilter(Filter filter) {
-        filterList.add(filter);
-        return this;
+    private final boolean[] mayBlock;
+
+    public GatewayFilterChain(List<Filter> filters) {
+        this.filters = filters.toArray(new Filter[0]);
+        this.mayBlock = new boolean[this.filters.length];
+        for (int i = 0; i < this.filters.length; i++) {
+            FilterAspect annotation = this.filters[i].getClass().getAnnotation(FilterAspect.class);
+            this.mayBlock[i] = annotation != null && annotation.blocking();
+        }
     }
 
-    /**
-     * 向过滤器链中添加过滤器
-     * @param filters
-     * @return
-     */
-    public GatewayFilterChain addFilterList (List<Filter> filters) {
-        filterList.addAll(filters);
-        return this;
+    public Filter[] getFilters() {
+        return filters.clone();
     }
 
     /**
      * 过滤
+     * 同步过滤器直接在当前线程执行；异步过滤器返回的结果未完成时，当前线程立即返回，
+     * 结果完成后回到连接所在的 EventLoop 接着执行后续过滤器；在 EventLoop 上执行时，阻塞的过滤器交给 BlockingFilterExecutor
      * @param ctx
      * @return
      * @throws Throwable
      */
     public GatewayContext doFilter(GatewayContext ctx) {
-        if (filterList.isEmpty()) {
-            return ctx;
-        }
+        proceed(ctx, 0);
+        return ctx;
+    }
+
+    /**
+     * 从指定位置开始执行过滤器
+     * @param ctx
+     * @param index
+     */
+    private void proceed(GatewayContext ctx, int index) {
+        final Filter[] chain = filters;
         try {
-            for (Filter filter : filterList) {
-                filter.doFilter(ctx);
+            for (int i = index; i < chain.length; i++) {
+                Filter filter = chain[i];
+                if (mayBlock[i] && ctx.getNettyCtx().executor().inEventLoop() && filter.isBlocking(ctx)) {
+                    offload(ctx, i);
+                    return;
+                }
+                if (!(filter instanceof AsyncFilter)) {
+                    filter.doFilter(ctx);
+                    continue;
+                }
+                CompletableFuture<Void> future = ((AsyncFilter) filter).doFilterAsync(ctx).toCompletableFuture();
+                if (!future.isDone()) {
+                    // 挂起，等待异步结果完成后回到连接所在的 EventLoop 继续执行
+                    final int next = i + 1;
+                    final EventExecutor eventLoop = ctx.getNettyCtx().executor();
+                    future.whenComplete((v, throwable) -> {
+                        if (eventLoop.inEventLoop()) {
+                            resume(ctx, next, throwable);
+                        } else {
+                            eventLoop.execute(() -> resume(ctx, next, throwable));
+                        }
+                    });
+                    return;
+                }
+                // 已经完成的结果直接继续，失败时 join 抛出异常
+                future.join();
             }
         } catch (Exception e) {
-            // 发生异常后处理
-            log.error("执行过滤器发生异常,异常信息：{}", e.getMessage());
+            onException(ctx, e);
+        }
+    }
+
+    /**
+     * 异步结果完成后在 EventLoop 上继续执行后续过滤器，异步结果失败时写回错误响应
+     * @param ctx
+     * @param index
+     * @param throwable
+     */
+    private void resume(GatewayContext ctx, int index, Throwable throwable) {
+        if (throwable != null) {
+            onException(ctx, throwable);
+        } else {
+            proceed(ctx, index);
+        }
+    }
+
+    /**
+     * 阻塞的过滤器交给 BlockingFilterExecutor 执行，执行完回到连接所在的 EventLoop 继续后续过滤器
+     * 过滤器抛出异常时同样回到 EventLoop 写回错误响应；线程池满时直接返回 503
+     * @param ctx
+     * @param index
+     */
+    private void offload(GatewayContext ctx, int index) {
+        EventExecutor eventLoop = ctx.getNettyCtx().executor();
+        try {
+            BlockingFilterExecutor.getInstance().execute(() -> {
+                try {
+                    filters[index].doFilter(ctx);
+                } catch (Throwable t) {
+                    // 错误响应同样回到 EventLoop 上写回
+                    eventLoop.execute(() -> onException(ctx, t));
+                    return;
+                }
+                eventLoop.execute(() -> proceed(ctx, index + 1));
+            });
+        } catch (RejectedExecutionException e) {
+            log.warn("阻塞过滤器线程池已满，拒绝请求：{}", ctx.getRequest().getPath());
+            onException(ctx, new ResponseException(ResponseCode.SERVICE_UNAVAILABLE));
         }
-        return ctx;
     }
-}
 
+    /**
+     * 过滤器执行失败，返回错误响应
+     * 异步结果、阻塞过滤器线程池上抛出的异常到不了 NettyCoreProcessor，在这里写回，请求才有结果
+     * @param ctx
+     * @param e
+     */
+    private void onException(GatewayContext ctx, Throwable e) {
+        if (e instanceof CompletionException && e.getCause() != null) {
+            e = e.getCause();
+        }
+        // 发生异常后处理
+        log.error("执行过滤器发生异常,异常信息：{}", e.getMessage());
+        if (!ctx.isRunning()) {
+            // 已经写回过响应
+            return;
+        }
+        ResponseCode code = e instanceof BaseException && ((BaseException) e).getCode() != null
+                ? ((BaseException) e).getCode() : ResponseCode.INTERNAL_ERROR;
+        if (ctx.getRequest().getStreamingBody() != null) {
+            ctx.getRequest().getStreamingBody().close();
+        }
+        ctx.setThrowable(e);
+        ctx.setResponse(GatewayResponse.buildGatewayResponse(code));
+        ctx.setWritten();
+        ResponseHelper.writeResponse(ctx);
+    }
+}
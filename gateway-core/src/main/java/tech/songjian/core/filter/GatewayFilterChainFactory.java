@@ -5,18 +5,16 @@
  */
 package tech.songjian.core.filter;
 
-import com.github.benmanes.caffeine.cache.Cache;
-import com.github.benmanes.caffeine.cache.Caffeine;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.lang3.StringUtils;
 import tech.songjian.common.config.Rule;
+import tech.songjian.common.config.RuleCompiler;
 import tech.songjian.common.constants.FilterConst;
 import tech.songjian.core.context.GatewayContext;
 import tech.songjian.core.filter.router.RouterFilter;
 
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.TimeUnit;
 
 /**
  * GatewayFilterChainFactory
@@ -26,7 +24,7 @@ import java.util.concurrent.TimeUnit;
  * @version
  */
 @Slf4j
-public class GatewayFilterChainFactory implements FilterFactory{
+public class GatewayFilterChainFactory implements FilterFactory, RuleCompiler {
 
     /**
      * 将单例对象的定义放在静态内部类 SingletonInstance 中
@@ -61,18 +59,39 @@ public class GatewayFilterChainFactory implements FilterFactory{
         return SingletonInstance.INSTANCE;
     }
 
-    private Cache<String, GatewayFilterChain> chainCache =
-            Caffeine.newBuilder().recordStats().expireAfterWrite(10, TimeUnit.MINUTES).build();
-
     public Map<String /* filterId */, Filter> processorFilterIdMap = new ConcurrentHashMap<>();
 
+    /**
+     * 直接取规则加载时编译好的过滤器链，规则未经编译时（如未设置编译器）才现场构建
+     * @param ctx
+     * @return
+     * @throws Exception
+     */
     @Override
     public GatewayFilterChain buildFilterChain(GatewayContext ctx) throws Exception {
-        return chainCache.get(ctx.getRule().getId(), k -> doBuildFilterChain(ctx.getRule()));
+        CompiledRule compiledRule = CompiledRule.of(ctx);
+        if (compiledRule != null) {
+            return compiledRule.getFilterChain();
+        }
+        return doBuildFilterChain(ctx.getRule());
+    }
+
+    /**
+     * 规则发布前解析各过滤器的配置、编译过滤器链，编译结果随规则保存在新的配置快照中
+     * @param rule
+     * @return
+     */
+    @Override
+    public CompiledRule compile(Rule rule) {
+        GatewayFilterChain chain = doBuildFilterChain(rule);
+        CompiledRule compiledRule = new CompiledRule(chain);
+        for (Filter filter : chain.getFilters()) {
+            filter.compileConfig(rule, compiledRule);
+        }
+        return compiledRule;
     }
 
     public GatewayFilterChain doBuildFilterChain(Rule rule) {
-        GatewayFilterChain chain = new GatewayFilterChain();
         ArrayList<Filter> filters = new ArrayList<>();
         // 添加灰度发布过滤器
         filters.add(getFilterInfo(FilterConst.GRAY_FILTER_ID));
@@ -100,9 +119,7 @@ public class GatewayFilterChainFactory implements FilterFactory{
         filters.add(getFilterInfo(FilterConst.ROUTER_FILTER_ID));
         // 排序
         filters.sort(Comparator.comparingInt(Filter::getOrder));
-        // 添加到链中
-        chain.addFilterList(filters);
-        return chain;
+        return new GatewayFilterChain(filters);
     }
 
     @Override
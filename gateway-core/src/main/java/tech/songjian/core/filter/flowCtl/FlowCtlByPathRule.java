@@ -1,11 +1,9 @@
 package tech.songjian.core.filter.flowCtl;
 
-import com.alibaba.fastjson.JSON;
 import com.alibaba.nacos.common.utils.StringUtils;
 import tech.songjian.common.config.Rule;
 import tech.songjian.core.redis.JedisUtil;
 
-import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 
 import static tech.songjian.common.constants.BasicConst.DIT_SEPARATOR;
@@ -54,35 +52,29 @@ public class FlowCtlByPathRule implements IGatewayFlowCtlRule{
 
 
     @Override
-    public void doFlowCtlFilter(Rule.FlowCtlConfig flowCtlConfig, String serviceId) {
+    public void doFlowCtlFilter(Rule.FlowCtlConfig flowCtlConfig, FlowCtlSettings settings, String serviceId) {
         if (flowCtlConfig == null || StringUtils.isEmpty(serviceId)
                 || StringUtils.isEmpty(flowCtlConfig.getConfig())) {
             return;
         }
-        Map<String, Integer> configMap = JSON.parseObject(flowCtlConfig.getConfig(), Map.class);
-        if (!configMap.containsKey(FLOW_CTL_LIMIT_DURATION) ||
-                !configMap.containsKey(FLOW_CTL_LIMIT_PERMITS)) {
+        if (!settings.isEnabled()) {
             // 如果没有这两个关键参数，则不进行流控了
             return;
         }
-        // 拿到 规定时间长度 与 限制次数
-        double duration = configMap.get(FLOW_CTL_LIMIT_DURATION);
-        double permits = configMap.get(FLOW_CTL_LIMIT_PERMITS);
         boolean flag = true;
         if (FLOW_CTL_MODEL_DISTRIBUTED.equalsIgnoreCase(flowCtlConfig.getModel())) {
             // 分布式架构
             StringBuffer buffer = new StringBuffer();
             String key = buffer.append(serviceId).append(DIT_SEPARATOR).append(path).toString();
-            flag = redisCountLimiter.doFlowCtl(key, (int) permits, (int) duration);
+            flag = redisCountLimiter.doFlowCtl(key, settings.getPermits(), settings.getDuration());
         } else {
             // 单体架构的限流实现
             GuavaCountLimiter guavaCountLimiter = GuavaCountLimiter.getInstance(serviceId, flowCtlConfig);
             if (guavaCountLimiter == null) {
                 throw new RuntimeException("获取单机限流工具类为空！");
             }
-            // 计算每秒执行多少次
-            int count = (int) Math.ceil(permits/duration);
-            flag = guavaCountLimiter.acquire(count);
+            // 每秒执行多少次
+            flag = guavaCountLimiter.acquire(settings.getPermitsPerSecond());
         }
         if (!flag) {
             throw new RuntimeException(LIMIT_MESSAGE);
@@ -3,6 +3,7 @@ package tech.songjian.core.filter.flowCtl;
 import lombok.extern.slf4j.Slf4j;
 import tech.songjian.common.config.Rule;
 import tech.songjian.core.context.GatewayContext;
+import tech.songjian.core.filter.CompiledRule;
 import tech.songjian.core.filter.Filter;
 import tech.songjian.core.filter.FilterAspect;
 
@@ -21,7 +22,7 @@ import static tech.songjian.common.constants.FilterConst.*;
  * @Describe: 限流流控过滤器
  */
 @Slf4j
-@FilterAspect(id = FLOW_CTL_FILTER_ID, name = FLOW_CTL_FILTER_NAME, order = FLOW_CTL_FILTER_ORDER)
+@FilterAspect(id = FLOW_CTL_FILTER_ID, name = FLOW_CTL_FILTER_NAME, order = FLOW_CTL_FILTER_ORDER, blocking = true)
 public class FlowCtlFilter implements Filter {
 
     @Override
@@ -47,12 +48,45 @@ public class FlowCtlFilter implements Filter {
                     // TODO 如果是根据 服务名 进行限流
                 }
                 if (flowCtlRule != null) {
-                    flowCtlRule.doFlowCtlFilter(flowCtlConfig, rule.getServiceId());
+                    flowCtlRule.doFlowCtlFilter(flowCtlConfig, FlowCtlSettings.of(ctx, flowCtlConfig), rule.getServiceId());
                 }
             }
         }
     }
 
+    /**
+     * 分布式限流同步访问 Redis，会阻塞线程；单机限流只是 tryAcquire，不阻塞
+     * @param ctx
+     * @return
+     */
+    @Override
+    public boolean isBlocking(GatewayContext ctx) {
+        Rule rule = ctx.getRule();
+        if (rule == null) {
+            return false;
+        }
+        for (Rule.FlowCtlConfig flowCtlConfig : rule.getFlowCtlConfigs()) {
+            if (flowCtlConfig != null && FLOW_CTL_MODEL_DISTRIBUTED.equalsIgnoreCase(flowCtlConfig.getModel())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 规则加载时解析所有限流配置
+     * @param rule
+     * @param compiledRule
+     */
+    @Override
+    public void compileConfig(Rule rule, CompiledRule compiledRule) {
+        for (Rule.FlowCtlConfig flowCtlConfig : rule.getFlowCtlConfigs()) {
+            if (flowCtlConfig != null) {
+                compiledRule.putFlowCtlSettings(flowCtlConfig, FlowCtlSettings.parse(flowCtlConfig.getConfig()));
+            }
+        }
+    }
+
     @Override
     public int getOrder() {
         return Filter.super.getOrder();
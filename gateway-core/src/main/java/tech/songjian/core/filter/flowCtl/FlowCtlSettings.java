@@ -0,0 +1,103 @@
+package tech.songjian.core.filter.flowCtl;
+
+import com.alibaba.fastjson.JSON;
+import com.alibaba.fastjson.JSONObject;
+import lombok.Getter;
+import org.apache.commons.lang3.StringUtils;
+import tech.songjian.common.config.Rule;
+import tech.songjian.common.enums.ResponseCode;
+import tech.songjian.common.exception.ResponseException;
+import tech.songjian.core.context.GatewayContext;
+import tech.songjian.core.filter.CompiledRule;
+
+import static tech.songjian.common.constants.FilterConst.*;
+
+/**
+ * Created by IntelliJ IDEA.
+ * tech.songjian.core.filter.flowCtl
+ *
+ * @Author: SongJian
+ * @Describe: 限流规则的强类型配置，规则加载时解析并校验
+ */
+@Getter
+public class FlowCtlSettings {
+
+    /**
+     * 没有配置时间长度或次数时，不进行流控
+     */
+    public static final FlowCtlSettings DISABLED = new FlowCtlSettings(false, 0, 0);
+
+    private final boolean enabled;
+
+    /**
+     * 规定的时间长度，单位秒
+     */
+    private final int duration;
+
+    /**
+     * 时间长度内允许的请求次数
+     */
+    private final int permits;
+
+    private FlowCtlSettings(boolean enabled, int duration, int permits) {
+        this.enabled = enabled;
+        this.duration = duration;
+        this.permits = permits;
+    }
+
+    /**
+     * 每秒允许的请求次数，单机限流使用
+     * @return
+     */
+    public int getPermitsPerSecond() {
+        return (int) Math.ceil((double) permits / duration);
+    }
+
+    /**
+     * 解析配置，如 {"duration": 1, "permits": 100}
+     * @param config
+     * @return
+     */
+    public static FlowCtlSettings parse(String config) {
+        if (StringUtils.isEmpty(config)) {
+            return DISABLED;
+        }
+        JSONObject json;
+        try {
+            json = JSON.parseObject(config);
+        } catch (Exception e) {
+            throw new ResponseException(e, ResponseCode.FILTER_CONFIG_PARSE_ERROR);
+        }
+        if (!json.containsKey(FLOW_CTL_LIMIT_DURATION) || !json.containsKey(FLOW_CTL_LIMIT_PERMITS)) {
+            // 如果没有这两个关键参数，则不进行流控了
+            return DISABLED;
+        }
+        int duration;
+        int permits;
+        try {
+            duration = json.getIntValue(FLOW_CTL_LIMIT_DURATION);
+            permits = json.getIntValue(FLOW_CTL_LIMIT_PERMITS);
+        } catch (Exception e) {
+            throw new ResponseException(e, ResponseCode.FILTER_CONFIG_PARSE_ERROR);
+        }
+        if (duration <= 0 || permits <= 0) {
+            throw new ResponseException(ResponseCode.FILTER_CONFIG_PARSE_ERROR);
+        }
+        return new FlowCtlSettings(true, duration, permits);
+    }
+
+    /**
+     * 获取请求所匹配规则编译时解析好的限流配置，未经编译的规则才现场解析
+     * @param ctx
+     * @param flowCtlConfig
+     * @return
+     */
+    public static FlowCtlSettings of(GatewayContext ctx, Rule.FlowCtlConfig flowCtlConfig) {
+        CompiledRule compiledRule = CompiledRule.of(ctx);
+        FlowCtlSettings settings = compiledRule == null ? null : compiledRule.getFlowCtlSettings(flowCtlConfig);
+        if (settings == null) {
+            settings = parse(flowCtlConfig.getConfig());
+        }
+        return settings;
+    }
+}
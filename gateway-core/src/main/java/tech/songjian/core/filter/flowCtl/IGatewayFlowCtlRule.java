@@ -16,7 +16,9 @@ public interface IGatewayFlowCtlRule {
 
     /**
      * 执行限流的具体方式
-     * @param ctx
+     * @param flowCtlConfig
+     * @param settings 规则编译时解析好的限流配置
+     * @param serviceId
      */
-    void doFlowCtlFilter(Rule.FlowCtlConfig flowCtlConfig, String serviceId);
+    void doFlowCtlFilter(Rule.FlowCtlConfig flowCtlConfig, FlowCtlSettings settings, String serviceId);
 }
@@ -0,0 +1,225 @@
+/**
+ * @projectName JianGateWay
+ * @package tech.songjian.core.filter.loadbalance
+ * @className tech.songjian.core.filter.loadbalance.ConsistentHashLoadBalanceRule
+ */
+package tech.songjian.core.filter.loadbalance;
+
+import io.netty.handler.codec.http.cookie.Cookie;
+import lombok.extern.slf4j.Slf4j;
+import tech.songjian.common.config.ConfigSnapshot;
+import tech.songjian.common.config.DynamicConfigManager;
+import tech.songjian.common.config.Rule;
+import tech.songjian.common.config.ServiceInstance;
+import tech.songjian.common.config.ServiceInstanceGroup;
+import tech.songjian.common.enums.ResponseCode;
+import tech.songjian.common.exception.NotFoundException;
+import tech.songjian.core.context.GatewayContext;
+import tech.songjian.core.request.GatewayRequest;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+
+import static tech.songjian.common.constants.FilterConst.*;
+
+/**
+ * ConsistentHashLoadBalanceRule
+ * @description 负载均衡-一致性哈希
+ *              按配置的来源（header、cookie、query 参数、用户id、客户端 ip）取出请求的哈希键，
+ *              同一个键总是落到同一个实例上；实例上下线时只有落在该实例区间上的键会迁移
+ *              每个实例在哈希环上放置若干虚拟节点，环只在服务实例集合变化时重建，查找为一次二分，不分配对象
+ * @author SongJian
+ * @version
+ */
+@Slf4j
+public class ConsistentHashLoadBalanceRule implements IGatewayLoadBalanceRule {
+
+    /**
+     * 每个实例的虚拟节点数
+     */
+    private static final int VIRTUAL_NODES = 160;
+
+    private final String serviceId;
+
+    /**
+     * 全部实例构成的哈希环
+     */
+    private volatile HashRing allRing = HashRing.EMPTY;
+
+    /**
+     * 灰度实例构成的哈希环
+     */
+    private volatile HashRing grayRing = HashRing.EMPTY;
+
+    public ConsistentHashLoadBalanceRule(String serviceId) {
+        this.serviceId = serviceId;
+    }
+
+    private static ConcurrentHashMap<String, ConsistentHashLoadBalanceRule> serviceMap = new ConcurrentHashMap<>();
+
+    public static ConsistentHashLoadBalanceRule getInstance(String serviceId) {
+        return serviceMap.computeIfAbsent(serviceId, ConsistentHashLoadBalanceRule::new);
+    }
+
+    @Override
+    public ServiceInstance choose(GatewayContext context) {
+        return choose(context.getSnapshot(), context.getUniqueId(), context.isGray(), hashKey(context));
+    }
+
+    /**
+     * 按哈希键在指定版本的实例集合上选择实例
+     * @param snapshot
+     * @param serviceId
+     * @param gray
+     * @param key
+     * @return
+     */
+    ServiceInstance choose(ConfigSnapshot snapshot, String serviceId, boolean gray, String key) {
+        return ring(snapshot, serviceId, gray).locate(hash(key));
+    }
+
+    /**
+     * 没有请求上下文时无从取哈希键，随机落到环上的一点
+     */
+    @Override
+    public ServiceInstance choose(String serviceId, boolean gray) {
+        HashRing ring = ring(DynamicConfigManager.getInstance().getSnapshot(), serviceId, gray);
+        return ring.locate(ThreadLocalRandom.current().nextInt());
+    }
+
+    private HashRing ring(ConfigSnapshot snapshot, String serviceId, boolean gray) {
+        ServiceInstanceGroup serviceInstanceGroup = snapshot.getServiceInstances(serviceId);
+        HashRing ring = gray ? grayRing : allRing;
+        if (ring.source != serviceInstanceGroup) {
+            // 实例集合发生了变化，重建哈希环
+            ring = new HashRing(serviceInstanceGroup, gray);
+            if (gray) {
+                grayRing = ring;
+            } else {
+                allRing = ring;
+            }
+        }
+        if (ring.points.length == 0) {
+            log.warn("No instance available for: {}", serviceId);
+            throw new NotFoundException(ResponseCode.SERVICE_INSTANCE_NOT_FOUND);
+        }
+        return ring;
+    }
+
+    /**
+     * 按规则上的配置从请求中取出哈希键，取不到时退化为客户端 ip
+     * @param context
+     * @return
+     */
+    private static String hashKey(GatewayContext context) {
+        GatewayRequest request = context.getRequest();
+        Rule rule = context.getRule();
+        Rule.FilterConfig filterConfig = rule == null ? null : rule.getFilterConfig(LOAD_BALANCE_FILTER_ID);
+        if (filterConfig != null) {
+            LoadBalanceSettings settings = LoadBalanceSettings.of(context, filterConfig);
+            String key = null;
+            if (settings.getHashSource() != null) {
+                switch (settings.getHashSource()) {
+                    case LOAD_BALANCE_HASH_SOURCE_HEADER:
+                        key = request.getHeaders().get(settings.getHashKey());
+                        break;
+                    case LOAD_BALANCE_HASH_SOURCE_COOKIE:
+                        Cookie cookie = request.getCookie(settings.getHashKey());
+                        key = cookie == null ? null : cookie.value();
+                        break;
+                    case LOAD_BALANCE_HASH_SOURCE_QUERY:
+                        List<String> values = request.getQueryStringDecoder().parameters().get(settings.getHashKey());
+                        key = values == null || values.isEmpty() ? null : values.get(0);
+                        break;
+                    case LOAD_BALANCE_HASH_SOURCE_USER:
+                        // userId 由鉴权过滤器解析，未登录时为 0
+                        key = request.getUserId() == 0 ? null : String.valueOf(request.getUserId());
+                        break;
+                    default:
+                        break;
+                }
+            }
+            if (key != null) {
+                return key;
+            }
+        }
+        return request.getClientIp();
+    }
+
+    /**
+     * FNV-1a 再经 murmur3 的 fmix32 打散，分布足够均匀且无需分配对象
+     * @param key
+     * @return
+     */
+    private static int hash(String key) {
+        int h = 0x811c9dc5;
+        if (key != null) {
+            for (int i = 0; i < key.length(); i++) {
+                h ^= key.charAt(i);
+                h *= 0x01000193;
+            }
+        }
+        h ^= h >>> 16;
+        h *= 0x85ebca6b;
+        h ^= h >>> 13;
+        h *= 0xc2b2ae35;
+        h ^= h >>> 16;
+        return h;
+    }
+
+    /**
+     * 某一版本实例集合对应的哈希环：有序的虚拟节点哈希值与对应的实例
+     */
+    private static final class HashRing {
+
+        private static final HashRing EMPTY = new HashRing(null, false);
+
+        /**
+         * 构建哈希环时的实例集合，用于判断是否需要重建
+         */
+        private final ServiceInstanceGroup source;
+
+        private final int[] points;
+
+        private final ServiceInstance[] owners;
+
+        private HashRing(ServiceInstanceGroup source, boolean gray) {
+            this.source = source;
+            ServiceInstance[] instances = source == null ? new ServiceInstance[0] : source.getInstances(gray);
+            // 先按 (哈希值, 实例序号) 打包成 long 排序，再拆成两个平行数组
+            long[] packed = new long[instances.length * VIRTUAL_NODES];
+            int n = 0;
+            for (int i = 0; i < instances.length; i++) {
+                String prefix = instances[i].getServiceInstanceId() + "#";
+                for (int v = 0; v < VIRTUAL_NODES; v++) {
+                    packed[n++] = ((long) hash(prefix + v) << 32) | i;
+                }
+            }
+            Arrays.sort(packed);
+            this.points = new int[packed.length];
+            this.owners = new ServiceInstance[packed.length];
+            for (int i = 0; i < packed.length; i++) {
+                points[i] = (int) (packed[i] >> 32);
+                owners[i] = instances[(int) packed[i]];
+            }
+        }
+
+        /**
+         * 顺时针找到第一个不小于该哈希值的虚拟节点，越过环尾则回到开头
+         * @param hash
+         * @return
+         */
+        private ServiceInstance locate(int hash) {
+            int index = Arrays.binarySearch(points, hash);
+            if (index < 0) {
+                index = -index - 1;
+                if (index == points.length) {
+                    index = 0;
+                }
+            }
+            return owners[index];
+        }
+    }
+}
@@ -0,0 +1,149 @@
+/**
+ * @projectName JianGateWay
+ * @package tech.songjian.core.filter.loadbalance
+ * @className tech.songjian.core.filter.loadbalance.InstanceStats
+ */
+package tech.songjian.core.filter.loadbalance;
+
+import tech.songjian.common.config.ConfigSnapshot;
+import tech.songjian.common.config.ServiceInstance;
+import tech.songjian.common.config.ServiceInstanceGroup;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * InstanceStats
+ * @description 服务实例的调用统计：进行中的请求数与响应耗时的 peak EWMA
+ *              负载均衡过滤器选中实例时 begin，路由过滤器请求结束时 end，全程无锁
+ *              每次发布实例变更后清理已经下线的实例，重新注册的同名实例从零开始统计
+ * @author SongJian
+ * @version
+ */
+public class InstanceStats {
+
+    /**
+     * EWMA 的衰减时间常数：距离上次更新越久，历史耗时的权重越小
+     */
+    private static final double DECAY_NANOS = TimeUnit.SECONDS.toNanos(10);
+
+    /**
+     * 还没有耗时数据、但已有请求在途的实例，给一个较大的代价，避免新实例被瞬间打满
+     */
+    private static final double PENALTY_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    private static final ConcurrentHashMap<String /* serviceInstanceId */, InstanceStats> statsMap = new ConcurrentHashMap<>();
+
+    /**
+     * 进行中的请求数，多个 worker 线程同时增减，使用分段计数避免在同一缓存行上竞争
+     */
+    private final LongAdder inflight = new LongAdder();
+
+    /**
+     * 响应耗时的 peak EWMA（纳秒），以 double 的位形式保存，CAS 更新
+     */
+    private final AtomicLong ewmaBits = new AtomicLong(Double.doubleToRawLongBits(0D));
+
+    private volatile long lastUpdateNanos = System.nanoTime();
+
+    public static InstanceStats of(ServiceInstance serviceInstance) {
+        return statsMap.computeIfAbsent(serviceInstance.getServiceInstanceId(), k -> new InstanceStats());
+    }
+
+    /**
+     * 只保留快照中仍然存在的实例的统计
+     * 已经选中被清理实例的请求结束时更新的是旧的统计对象，不影响之后的选择
+     * @param snapshot
+     */
+    public static void retain(ConfigSnapshot snapshot) {
+        Set<String> serviceInstanceIds = new HashSet<>();
+        for (ServiceInstanceGroup group : snapshot.getServiceInstanceMap().values()) {
+            for (ServiceInstance serviceInstance : group.getInstanceSet()) {
+                serviceInstanceIds.add(serviceInstance.getServiceInstanceId());
+            }
+        }
+        statsMap.keySet().retainAll(serviceInstanceIds);
+    }
+
+    /**
+     * 请求开始
+     * @return 开始时间
+     */
+    public long begin() {
+        inflight.increment();
+        return System.nanoTime();
+    }
+
+    /**
+     * 请求结束，记录耗时
+     * @param beginNanos
+     */
+    public void end(long beginNanos) {
+        inflight.decrement();
+        long now = System.nanoTime();
+        observe(now - beginNanos, now);
+    }
+
+    public long getInflight() {
+        return inflight.sum();
+    }
+
+    /**
+     * 衰减到当前时刻的耗时 EWMA
+     * @return
+     */
+    public double getEwmaNanos() {
+        return decayedEwma(System.nanoTime());
+    }
+
+    /**
+     * 负载代价：耗时 EWMA * (在途请求数 + 1)
+     * @return
+     */
+    public double cost() {
+        return cost(System.nanoTime());
+    }
+
+    /**
+     * 计算代价时 EWMA 先按距上次更新的时间衰减，相当于这段时间观测到的耗时为 0：
+     * 一次慢响应之后不再分到请求的实例，代价也会随时间回落，重新参与选择
+     * @param nowNanos
+     * @return
+     */
+    double cost(long nowNanos) {
+        double ewma = decayedEwma(nowNanos);
+        long pending = inflight.sum();
+        if (ewma == 0D && pending != 0) {
+            return PENALTY_NANOS + pending;
+        }
+        return ewma * (pending + 1);
+    }
+
+    private double decayedEwma(long nowNanos) {
+        long elapsed = Math.max(nowNanos - lastUpdateNanos, 0);
+        return Double.longBitsToDouble(ewmaBits.get()) * Math.exp(-elapsed / DECAY_NANOS);
+    }
+
+    /**
+     * 更新 peak EWMA：耗时高于衰减后的当前值时直接取峰值，否则按时间衰减做指数平均
+     * @param rttNanos
+     * @param nowNanos
+     */
+    void observe(long rttNanos, long nowNanos) {
+        long elapsed = Math.max(nowNanos - lastUpdateNanos, 0);
+        lastUpdateNanos = nowNanos;
+        double weight = Math.exp(-elapsed / DECAY_NANOS);
+        while (true) {
+            long bits = ewmaBits.get();
+            double decayed = Double.longBitsToDouble(bits) * weight;
+            double next = rttNanos > decayed ? rttNanos : decayed + rttNanos * (1D - weight);
+            if (ewmaBits.compareAndSet(bits, Double.doubleToRawLongBits(next))) {
+                return;
+            }
+        }
+    }
+}
@@ -0,0 +1,124 @@
+/**
+ * @projectName JianGateWay
+ * @package tech.songjian.core.filter.loadbalance
+ * @className tech.songjian.core.filter.loadbalance.LeastActiveLoadBalanceRule
+ */
+package tech.songjian.core.filter.loadbalance;
+
+import lombok.extern.slf4j.Slf4j;
+import tech.songjian.common.config.ConfigSnapshot;
+import tech.songjian.common.config.DynamicConfigManager;
+import tech.songjian.common.config.ServiceInstance;
+import tech.songjian.common.config.ServiceInstanceGroup;
+import tech.songjian.common.enums.ResponseCode;
+import tech.songjian.common.exception.NotFoundException;
+import tech.songjian.core.context.GatewayContext;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+
+import static tech.songjian.common.constants.GatewayConst.DEFAULT_WEIGHT;
+
+/**
+ * LeastActiveLoadBalanceRule
+ * @description 负载均衡-最少活跃请求
+ *              选择进行中请求数最少的实例，请求数相同时选权重大的，权重也相同时随机选一个；
+ *              长轮询、慢查询这类接口下，卡住的实例积压的请求不会再继续增加
+ *              进行中请求数由负载均衡过滤器选中实例时增加，路由过滤器在成功、异常、超时时减少
+ * @author SongJian
+ * @version
+ */
+@Slf4j
+public class LeastActiveLoadBalanceRule implements IGatewayLoadBalanceRule {
+
+    private final String serviceId;
+
+    private volatile InstanceArray allInstances = InstanceArray.EMPTY;
+
+    private volatile InstanceArray grayInstances = InstanceArray.EMPTY;
+
+    public LeastActiveLoadBalanceRule(String serviceId) {
+        this.serviceId = serviceId;
+    }
+
+    private static ConcurrentHashMap<String, LeastActiveLoadBalanceRule> serviceMap = new ConcurrentHashMap<>();
+
+    public static LeastActiveLoadBalanceRule getInstance(String serviceId) {
+        return serviceMap.computeIfAbsent(serviceId, LeastActiveLoadBalanceRule::new);
+    }
+
+    @Override
+    public ServiceInstance choose(GatewayContext context) {
+        return choose(context.getSnapshot(), context.getUniqueId(), context.isGray());
+    }
+
+    @Override
+    public ServiceInstance choose(String serviceId, boolean gray) {
+        return choose(DynamicConfigManager.getInstance().getSnapshot(), serviceId, gray);
+    }
+
+    private ServiceInstance choose(ConfigSnapshot snapshot, String serviceId, boolean gray) {
+        ServiceInstanceGroup serviceInstanceGroup = snapshot.getServiceInstances(serviceId);
+        InstanceArray array = gray ? grayInstances : allInstances;
+        if (array.source != serviceInstanceGroup) {
+            array = new InstanceArray(serviceInstanceGroup, gray);
+            if (gray) {
+                grayInstances = array;
+            } else {
+                allInstances = array;
+            }
+        }
+        ServiceInstance[] instances = array.instances;
+        if (instances.length == 0) {
+            log.warn("No instance available for: {}", serviceId);
+            throw new NotFoundException(ResponseCode.SERVICE_INSTANCE_NOT_FOUND);
+        }
+        int best = 0;
+        long leastActive = Long.MAX_VALUE;
+        int bestWeight = 0;
+        // 与当前最优实例完全相同的实例个数，用于在其中等概率随机
+        int sameCount = 0;
+        for (int i = 0; i < instances.length; i++) {
+            long active = array.stats[i].getInflight();
+            int weight = array.weights[i];
+            if (active < leastActive || (active == leastActive && weight > bestWeight)) {
+                best = i;
+                leastActive = active;
+                bestWeight = weight;
+                sameCount = 1;
+            } else if (active == leastActive && weight == bestWeight
+                    && ThreadLocalRandom.current().nextInt(++sameCount) == 0) {
+                best = i;
+            }
+        }
+        return instances[best];
+    }
+
+    /**
+     * 某一版本实例集合对应的实例、权重与统计数组
+     */
+    private static final class InstanceArray {
+
+        private static final InstanceArray EMPTY = new InstanceArray(null, false);
+
+        private final ServiceInstanceGroup source;
+
+        private final ServiceInstance[] instances;
+
+        private final int[] weights;
+
+        private final InstanceStats[] stats;
+
+        private InstanceArray(ServiceInstanceGroup source, boolean gray) {
+            this.source = source;
+            this.instances = source == null ? new ServiceInstance[0] : source.getInstances(gray);
+            this.weights = new int[instances.length];
+            this.stats = new InstanceStats[instances.length];
+            for (int i = 0; i < instances.length; i++) {
+                Integer weight = instances[i].getWeight();
+                weights[i] = weight == null ? DEFAULT_WEIGHT : weight;
+                stats[i] = InstanceStats.of(instances[i]);
+            }
+        }
+    }
+}
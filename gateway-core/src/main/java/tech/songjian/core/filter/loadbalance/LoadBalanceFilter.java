@@ -6,24 +6,18 @@
 package tech.songjian.core.filter.loadbalance;
 
 
-import com.alibaba.fastjson.JSON;
 import lombok.extern.slf4j.Slf4j;
-import org.apache.commons.lang3.StringUtils;
 import tech.songjian.common.config.Rule;
 import tech.songjian.common.config.ServiceInstance;
 import tech.songjian.common.enums.ResponseCode;
 import tech.songjian.common.exception.NotFoundException;
 import tech.songjian.core.context.GatewayContext;
+import tech.songjian.core.filter.CompiledRule;
 import tech.songjian.core.filter.Filter;
 import tech.songjian.core.filter.FilterAspect;
 import tech.songjian.core.request.GatewayRequest;
 import tech.songjian.core.request.IGatewayRequest;
 
-import java.util.Iterator;
-import java.util.Map;
-import java.util.Set;
-import java.util.concurrent.atomic.AtomicInteger;
-
 import static tech.songjian.common.constants.BasicConst.COLON_SEPARATOR;
 import static tech.songjian.common.constants.FilterConst.*;
 
@@ -43,60 +37,61 @@ public class LoadBalanceFilter implements Filter {
         String serviceId = ctx.getUniqueId();
         IGatewayLoadBalanceRule gatewayLoadBalanceRule = getLoadBalanceRule(ctx);
         // 根据负载均衡算法选择一个服务实例
-        ServiceInstance serviceInstance = gatewayLoadBalanceRule.choose(serviceId, ctx.isGray());
+        ServiceInstance serviceInstance = gatewayLoadBalanceRule.choose(ctx);
         GatewayRequest request = ctx.getRequest();
         if (serviceId != null && request != null) {
             String host = serviceInstance.getIp() + COLON_SEPARATOR + serviceInstance.getPort();
             request.setModifyHost(host);
+            // 开始统计选中实例的在途请求与耗时，请求结束时由路由过滤器结算
+            ctx.beginInstanceCall(serviceInstance);
         } else {
             log.warn("No instance available for : {}", serviceId);
             throw new NotFoundException(ResponseCode.SERVICE_DEFINITION_NOT_FOUND);
         }
     }
 
+    /**
+     * 规则加载时解析负载均衡配置
+     * @param rule
+     * @param compiledRule
+     */
+    @Override
+    public void compileConfig(Rule rule, CompiledRule compiledRule) {
+        Rule.FilterConfig filterConfig = rule.getFilterConfig(LOAD_BALANCE_FILTER_ID);
+        if (filterConfig != null) {
+            compiledRule.setLoadBalanceSettings(LoadBalanceSettings.parse(filterConfig.getConfig()));
+        }
+    }
+
     /**
      * 根据上下文获取对应的负载均衡算法
      * @param ctx
      * @return
      */
     private IGatewayLoadBalanceRule getLoadBalanceRule(GatewayContext ctx) {
-        IGatewayLoadBalanceRule loadBalanceRule = null;
         Rule configRule = ctx.getRule();
-        if (configRule != null) {
-            Set<Rule.FilterConfig> filterConfigs = configRule.getFilterConfigs();
-            Iterator iterator = filterConfigs.iterator();
-            Rule.FilterConfig filterConfig;
-            while (iterator.hasNext()) {
-                filterConfig = (Rule.FilterConfig) iterator.next();
-                if (filterConfig == null) {
-                    continue;
-                }
-                String filterId = filterConfig.getId();
-                if (LOAD_BALANCE_FILTER_ID.equals(filterId)) {
-                    // 如果匹配上，直接拿
-                    String config = filterConfig.getConfig();
-                    // 默认是随机
-                    String strategy = LOAD_BALANCE_STRATEGY_RANDOM;
-                    if (StringUtils.isNotEmpty(config)) {
-                        Map<String, String> mapTypeMap = JSON.parseObject(config, Map.class);
-                        strategy = mapTypeMap.get(LOAD_BALANCE_KEY);
-                    }
-                    switch (strategy) {
-                        case LOAD_BALANCE_STRATEGY_RANDOM:
-                            loadBalanceRule = RandomLoadBalanceRule.getInstance(configRule.getServiceId());
-                            break;
-                        case LOAD_BALANCE_STRATEGY_ROUND_ROBIN:
-                            loadBalanceRule = RoundRobinLoadBalanceRule.getInstance(configRule.getServiceId());
-                            break;
-                        default:
-                            log.warn("No loadBalance strategy for service: {}", strategy);
-                            loadBalanceRule = RandomLoadBalanceRule.getInstance(configRule.getServiceId());
-                            break;
-                    }
-                }
-            }
+        if (configRule == null) {
+            return null;
+        }
+        Rule.FilterConfig filterConfig = configRule.getFilterConfig(LOAD_BALANCE_FILTER_ID);
+        if (filterConfig == null) {
+            return null;
+        }
+        LoadBalanceSettings settings = LoadBalanceSettings.of(ctx, filterConfig);
+        switch (settings.getStrategy()) {
+            case LOAD_BALANCE_STRATEGY_ROUND_ROBIN:
+                return RoundRobinLoadBalanceRule.getInstance(configRule.getServiceId());
+            case LOAD_BALANCE_STRATEGY_WEIGHTED_ROUND_ROBIN:
+                return WeightedRoundRobinLoadBalanceRule.getInstance(configRule.getServiceId());
+            case LOAD_BALANCE_STRATEGY_PEAK_EWMA:
+                return PeakEwmaLoadBalanceRule.getInstance(configRule.getServiceId());
+            case LOAD_BALANCE_STRATEGY_LEAST_ACTIVE:
+                return LeastActiveLoadBalanceRule.getInstance(configRule.getServiceId());
+            case LOAD_BALANCE_STRATEGY_CONSISTENT_HASH:
+                return ConsistentHashLoadBalanceRule.getInstance(configRule.getServiceId());
+            case LOAD_BALANCE_STRATEGY_RANDOM:
+            default:
+                return RandomLoadBalanceRule.getInstance(configRule.getServiceId());
         }
-        return loadBalanceRule;
     }
 }
-
@@ -0,0 +1,128 @@
+package tech.songjian.core.filter.loadbalance;
+
+import com.alibaba.fastjson.JSON;
+import com.alibaba.fastjson.JSONObject;
+import lombok.Getter;
+import org.apache.commons.lang3.StringUtils;
+import tech.songjian.common.config.Rule;
+import tech.songjian.common.enums.ResponseCode;
+import tech.songjian.common.exception.ResponseException;
+import tech.songjian.core.context.GatewayContext;
+import tech.songjian.core.filter.CompiledRule;
+
+import static tech.songjian.common.constants.FilterConst.*;
+
+/**
+ * Created by IntelliJ IDEA.
+ * tech.songjian.core.filter.loadbalance
+ *
+ * @Author: SongJian
+ * @Describe: 负载均衡过滤器的强类型配置，规则加载时解析并校验
+ */
+@Getter
+public class LoadBalanceSettings {
+
+    private static final LoadBalanceSettings DEFAULT = new LoadBalanceSettings(LOAD_BALANCE_STRATEGY_RANDOM);
+
+    /**
+     * 负载均衡策略
+     */
+    private final String strategy;
+
+    /**
+     * 一致性哈希的取值来源，仅 ConsistentHash 策略使用
+     */
+    private final String hashSource;
+
+    /**
+     * 一致性哈希取值的名称，仅 ConsistentHash 策略使用
+     */
+    private final String hashKey;
+
+    private LoadBalanceSettings(String strategy) {
+        this(strategy, null, null);
+    }
+
+    private LoadBalanceSettings(String strategy, String hashSource, String hashKey) {
+        this.strategy = strategy;
+        this.hashSource = hashSource;
+        this.hashKey = hashKey;
+    }
+
+    /**
+     * 解析配置，如 {"load_balancer": "RoundRobin"}，不配置时默认随机
+     * @param config
+     * @return
+     */
+    public static LoadBalanceSettings parse(String config) {
+        if (StringUtils.isEmpty(config)) {
+            return DEFAULT;
+        }
+        JSONObject json;
+        try {
+            json = JSON.parseObject(config);
+        } catch (Exception e) {
+            throw new ResponseException(e, ResponseCode.FILTER_CONFIG_PARSE_ERROR);
+        }
+        String strategy = json.getString(LOAD_BALANCE_KEY);
+        if (StringUtils.isEmpty(strategy)) {
+            return DEFAULT;
+        }
+        switch (strategy) {
+            case LOAD_BALANCE_STRATEGY_RANDOM:
+            case LOAD_BALANCE_STRATEGY_ROUND_ROBIN:
+            case LOAD_BALANCE_STRATEGY_WEIGHTED_ROUND_ROBIN:
+            case LOAD_BALANCE_STRATEGY_PEAK_EWMA:
+            case LOAD_BALANCE_STRATEGY_LEAST_ACTIVE:
+                return new LoadBalanceSettings(strategy);
+            case LOAD_BALANCE_STRATEGY_CONSISTENT_HASH:
+                return parseConsistentHash(json);
+            default:
+                throw new ResponseException(ResponseCode.FILTER_CONFIG_PARSE_ERROR);
+        }
+    }
+
+    /**
+     * 解析一致性哈希配置，如 {"load_balancer": "ConsistentHash", "hash_source": "header", "hash_key": "X-User-Id"}
+     * 不配置来源时默认按客户端 ip
+     * @param json
+     * @return
+     */
+    private static LoadBalanceSettings parseConsistentHash(JSONObject json) {
+        String hashSource = json.getString(LOAD_BALANCE_HASH_SOURCE);
+        if (StringUtils.isEmpty(hashSource)) {
+            hashSource = LOAD_BALANCE_HASH_SOURCE_IP;
+        }
+        String hashKey = json.getString(LOAD_BALANCE_HASH_KEY);
+        switch (hashSource) {
+            case LOAD_BALANCE_HASH_SOURCE_HEADER:
+            case LOAD_BALANCE_HASH_SOURCE_COOKIE:
+            case LOAD_BALANCE_HASH_SOURCE_QUERY:
+                if (StringUtils.isEmpty(hashKey)) {
+                    throw new ResponseException(ResponseCode.FILTER_CONFIG_PARSE_ERROR);
+                }
+                break;
+            case LOAD_BALANCE_HASH_SOURCE_USER:
+            case LOAD_BALANCE_HASH_SOURCE_IP:
+                break;
+            default:
+                throw new ResponseException(ResponseCode.FILTER_CONFIG_PARSE_ERROR);
+        }
+        return new LoadBalanceSettings(LOAD_BALANCE_STRATEGY_CONSISTENT_HASH, hashSource, hashKey);
+    }
+
+    /**
+     * 获取请求所匹配规则编译时解析好的负载均衡配置，未经编译的规则才现场解析
+     * @param ctx
+     * @param filterConfig
+     * @return
+     */
+    public static LoadBalanceSettings of(GatewayContext ctx, Rule.FilterConfig filterConfig) {
+        CompiledRule compiledRule = CompiledRule.of(ctx);
+        LoadBalanceSettings settings = compiledRule == null ? null : compiledRule.getLoadBalanceSettings();
+        if (settings == null) {
+            settings = parse(filterConfig.getConfig());
+        }
+        return settings;
+    }
+}
@@ -0,0 +1,110 @@
+/**
+ * @projectName JianGateWay
+ * @package tech.songjian.core.filter.loadbalance
+ * @className tech.songjian.core.filter.loadbalance.PeakEwmaLoadBalanceRule
+ */
+package tech.songjian.core.filter.loadbalance;
+
+import lombok.extern.slf4j.Slf4j;
+import tech.songjian.common.config.ConfigSnapshot;
+import tech.songjian.common.config.DynamicConfigManager;
+import tech.songjian.common.config.ServiceInstance;
+import tech.songjian.common.config.ServiceInstanceGroup;
+import tech.songjian.common.enums.ResponseCode;
+import tech.songjian.common.exception.NotFoundException;
+import tech.songjian.core.context.GatewayContext;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * PeakEwmaLoadBalanceRule
+ * @description 负载均衡-最小延迟：两次随机选择（P2C）+ peak EWMA
+ *              随机取两个不同的实例，比较 耗时EWMA * (在途请求数 + 1)，选代价小的那个；
+ *              慢实例和积压请求多的实例会自然少分到流量，同时避免所有请求同时涌向同一个“最快”实例
+ * @author SongJian
+ * @version
+ */
+@Slf4j
+public class PeakEwmaLoadBalanceRule implements IGatewayLoadBalanceRule {
+
+    private final String serviceId;
+
+    private volatile InstanceArray allInstances = InstanceArray.EMPTY;
+
+    private volatile InstanceArray grayInstances = InstanceArray.EMPTY;
+
+    public PeakEwmaLoadBalanceRule(String serviceId) {
+        this.serviceId = serviceId;
+    }
+
+    private static ConcurrentHashMap<String, PeakEwmaLoadBalanceRule> serviceMap = new ConcurrentHashMap<>();
+
+    public static PeakEwmaLoadBalanceRule getInstance(String serviceId) {
+        return serviceMap.computeIfAbsent(serviceId, PeakEwmaLoadBalanceRule::new);
+    }
+
+    @Override
+    public ServiceInstance choose(GatewayContext context) {
+        return choose(context.getSnapshot(), context.getUniqueId(), context.isGray());
+    }
+
+    @Override
+    public ServiceInstance choose(String serviceId, boolean gray) {
+        return choose(DynamicConfigManager.getInstance().getSnapshot(), serviceId, gray);
+    }
+
+    private ServiceInstance choose(ConfigSnapshot snapshot, String serviceId, boolean gray) {
+        ServiceInstanceGroup serviceInstanceGroup = snapshot.getServiceInstances(serviceId);
+        InstanceArray array = gray ? grayInstances : allInstances;
+        if (array.source != serviceInstanceGroup) {
+            array = new InstanceArray(serviceInstanceGroup, gray);
+            if (gray) {
+                grayInstances = array;
+            } else {
+                allInstances = array;
+            }
+        }
+        ServiceInstance[] instances = array.instances;
+        int size = instances.length;
+        if (size == 0) {
+            log.warn("No instance available for: {}", serviceId);
+            throw new NotFoundException(ResponseCode.SERVICE_INSTANCE_NOT_FOUND);
+        }
+        if (size == 1) {
+            return instances[0];
+        }
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int first = random.nextInt(size);
+        int second = random.nextInt(size - 1);
+        if (second >= first) {
+            second++;
+        }
+        InstanceStats firstStats = array.stats[first];
+        InstanceStats secondStats = array.stats[second];
+        return firstStats.cost() <= secondStats.cost() ? instances[first] : instances[second];
+    }
+
+    /**
+     * 某一版本实例集合对应的实例数组与统计数组
+     */
+    private static final class InstanceArray {
+
+        private static final InstanceArray EMPTY = new InstanceArray(null, false);
+
+        private final ServiceInstanceGroup source;
+
+        private final ServiceInstance[] instances;
+
+        private final InstanceStats[] stats;
+
+        private InstanceArray(ServiceInstanceGroup source, boolean gray) {
+            this.source = source;
+            this.instances = source == null ? new ServiceInstance[0] : source.getInstances(gray);
+            this.stats = new InstanceStats[instances.length];
+            for (int i = 0; i < instances.length; i++) {
+                stats[i] = InstanceStats.of(instances[i]);
+            }
+        }
+    }
+}
@@ -6,14 +6,13 @@
 package tech.songjian.core.filter.loadbalance;
 
 import lombok.extern.slf4j.Slf4j;
+import tech.songjian.common.config.ConfigSnapshot;
 import tech.songjian.common.config.DynamicConfigManager;
 import tech.songjian.common.config.ServiceInstance;
 import tech.songjian.common.enums.ResponseCode;
 import tech.songjian.common.exception.NotFoundException;
 import tech.songjian.core.context.GatewayContext;
 
-import java.util.ArrayList;
-import java.util.List;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ThreadLocalRandom;
@@ -51,21 +50,21 @@ public class RandomLoadBalanceRule implements IGatewayLoadBalanceRule{
 
     @Override
     public ServiceInstance choose(GatewayContext context) {
-        String serviceId = context.getUniqueId();
-        return choose(serviceId, context.isGray());
+        return choose(context.getSnapshot(), context.getUniqueId(), context.isGray());
     }
 
     @Override
     public ServiceInstance choose(String serviceId, boolean gray) {
-        Set<ServiceInstance> serviceInstanceSet =
-                DynamicConfigManager.getInstance().getServiceInstanceByUniqueId(serviceId, gray);
-        if (serviceInstanceSet.isEmpty()) {
+        return choose(DynamicConfigManager.getInstance().getSnapshot(), serviceId, gray);
+    }
+
+    private ServiceInstance choose(ConfigSnapshot snapshot, String serviceId, boolean gray) {
+        ServiceInstance[] instances = snapshot.getServiceInstances(serviceId).getInstances(gray);
+        if (instances.length == 0) {
             log.warn("No instance available for: {}", serviceId);
             throw new NotFoundException(ResponseCode.SERVICE_INSTANCE_NOT_FOUND);
         }
-        List<ServiceInstance> instances = new ArrayList<>(serviceInstanceSet);
-        int index = ThreadLocalRandom.current().nextInt(instances.size());
-        return instances.get(index);
+        return instances[ThreadLocalRandom.current().nextInt(instances.length)];
     }
 }
 
@@ -6,18 +6,14 @@
 package tech.songjian.core.filter.loadbalance;
 
 import lombok.extern.slf4j.Slf4j;
+import tech.songjian.common.config.ConfigSnapshot;
 import tech.songjian.common.config.DynamicConfigManager;
 import tech.songjian.common.config.ServiceInstance;
 import tech.songjian.common.enums.ResponseCode;
 import tech.songjian.common.exception.NotFoundException;
 import tech.songjian.core.context.GatewayContext;
 
-import java.util.ArrayList;
-import java.util.List;
-import java.util.Map;
-import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ThreadLocalRandom;
 import java.util.concurrent.atomic.AtomicInteger;
 
 /**
@@ -56,21 +52,23 @@ public class RoundRobinLoadBalanceRule implements IGatewayLoadBalanceRule{
 
     @Override
     public ServiceInstance choose(GatewayContext context) {
-        String serviceId = context.getUniqueId();
-        return choose(serviceId, context.isGray());
+        return choose(context.getSnapshot(), context.getUniqueId(), context.isGray());
     }
 
     @Override
     public ServiceInstance choose(String serviceId, boolean gray) {
-        Set<ServiceInstance> serviceInstanceSet =
-                DynamicConfigManager.getInstance().getServiceInstanceByUniqueId(serviceId, gray);
-        if (serviceInstanceSet.isEmpty()) {
+        return choose(DynamicConfigManager.getInstance().getSnapshot(), serviceId, gray);
+    }
+
+    private ServiceInstance choose(ConfigSnapshot snapshot, String serviceId, boolean gray) {
+        ServiceInstance[] instances = snapshot.getServiceInstances(serviceId).getInstances(gray);
+        if (instances.length == 0) {
             log.warn("No instance available for: {}", serviceId);
             throw new NotFoundException(ResponseCode.SERVICE_INSTANCE_NOT_FOUND);
         }
-        List<ServiceInstance> instances = new ArrayList<>(serviceInstanceSet);
-        int pos = Math.abs(this.position.incrementAndGet());
-        return instances.get(pos % instances.size());
+        // 计数溢出后去掉符号位，保证下标非负
+        int pos = this.position.incrementAndGet() & Integer.MAX_VALUE;
+        return instances[pos % instances.length];
     }
 }
 
@@ -0,0 +1,148 @@
+/**
+ * @projectName JianGateWay
+ * @package tech.songjian.core.filter.loadbalance
+ * @className tech.songjian.core.filter.loadbalance.WeightedRoundRobinLoadBalanceRule
+ */
+package tech.songjian.core.filter.loadbalance;
+
+import lombok.extern.slf4j.Slf4j;
+import tech.songjian.common.config.ConfigSnapshot;
+import tech.songjian.common.config.DynamicConfigManager;
+import tech.songjian.common.config.ServiceInstance;
+import tech.songjian.common.config.ServiceInstanceGroup;
+import tech.songjian.common.enums.ResponseCode;
+import tech.songjian.common.exception.NotFoundException;
+import tech.songjian.core.context.GatewayContext;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static tech.songjian.common.constants.GatewayConst.DEFAULT_WEIGHT;
+
+/**
+ * WeightedRoundRobinLoadBalanceRule
+ * @description 负载均衡-平滑加权轮询（与 nginx 的 smooth weighted round-robin 相同）
+ *              每次选择时所有实例的当前权重加上各自的权重，选出当前权重最大的实例，再将其减去总权重；
+ *              权重为 5、1、1 的三个实例会得到 a a b a c a a 这样分散的序列，而不是连续选中同一个实例
+ *              实例数组与权重数组只在服务实例集合变化时重建，选择过程不分配对象
+ * @author SongJian
+ * @version
+ */
+@Slf4j
+public class WeightedRoundRobinLoadBalanceRule implements IGatewayLoadBalanceRule {
+
+    private final String serviceId;
+
+    /**
+     * 全部实例的轮询状态
+     */
+    private volatile WeightedState allState = WeightedState.EMPTY;
+
+    /**
+     * 灰度实例的轮询状态
+     */
+    private volatile WeightedState grayState = WeightedState.EMPTY;
+
+    public WeightedRoundRobinLoadBalanceRule(String serviceId) {
+        this.serviceId = serviceId;
+    }
+
+    private static ConcurrentHashMap<String, WeightedRoundRobinLoadBalanceRule> serviceMap = new ConcurrentHashMap<>();
+
+    public static WeightedRoundRobinLoadBalanceRule getInstance(String serviceId) {
+        return serviceMap.computeIfAbsent(serviceId, WeightedRoundRobinLoadBalanceRule::new);
+    }
+
+    @Override
+    public ServiceInstance choose(GatewayContext context) {
+        return choose(context.getSnapshot(), context.getUniqueId(), context.isGray());
+    }
+
+    @Override
+    public ServiceInstance choose(String serviceId, boolean gray) {
+        return choose(DynamicConfigManager.getInstance().getSnapshot(), serviceId, gray);
+    }
+
+    private ServiceInstance choose(ConfigSnapshot snapshot, String serviceId, boolean gray) {
+        ServiceInstanceGroup serviceInstanceGroup = snapshot.getServiceInstances(serviceId);
+        WeightedState state = gray ? grayState : allState;
+        if (state.source != serviceInstanceGroup) {
+            // 实例集合发生了变化，重建状态
+            state = new WeightedState(serviceInstanceGroup, gray);
+            if (gray) {
+                grayState = state;
+            } else {
+                allState = state;
+            }
+        }
+        ServiceInstance instance = state.next();
+        if (instance == null) {
+            log.warn("No instance available for: {}", serviceId);
+            throw new NotFoundException(ResponseCode.SERVICE_INSTANCE_NOT_FOUND);
+        }
+        return instance;
+    }
+
+    /**
+     * 某一版本实例集合对应的加权轮询状态
+     */
+    private static final class WeightedState {
+
+        private static final WeightedState EMPTY = new WeightedState(null, false);
+
+        /**
+         * 构建状态时的实例集合，用于判断是否需要重建
+         */
+        private final ServiceInstanceGroup source;
+
+        private final ServiceInstance[] instances;
+
+        private final int[] weights;
+
+        private final int[] currentWeights;
+
+        private final int totalWeight;
+
+        private WeightedState(ServiceInstanceGroup source, boolean gray) {
+            this.source = source;
+            List<ServiceInstance> candidates = new ArrayList<>();
+            if (source != null) {
+                for (ServiceInstance instance : source.getInstances(gray)) {
+                    if (weightOf(instance) > 0) {
+                        candidates.add(instance);
+                    }
+                }
+            }
+            this.instances = candidates.toArray(new ServiceInstance[0]);
+            this.weights = new int[instances.length];
+            this.currentWeights = new int[instances.length];
+            int total = 0;
+            for (int i = 0; i < instances.length; i++) {
+                weights[i] = weightOf(instances[i]);
+                total += weights[i];
+            }
+            this.totalWeight = total;
+        }
+
+        private static int weightOf(ServiceInstance instance) {
+            Integer weight = instance.getWeight();
+            return weight == null ? DEFAULT_WEIGHT : weight;
+        }
+
+        private synchronized ServiceInstance next() {
+            if (instances.length == 0) {
+                return null;
+            }
+            int best = 0;
+            for (int i = 0; i < instances.length; i++) {
+                currentWeights[i] += weights[i];
+                if (currentWeights[i] > currentWeights[best]) {
+                    best = i;
+                }
+            }
+            currentWeights[best] -= totalWeight;
+            return instances[best];
+        }
+    }
+}
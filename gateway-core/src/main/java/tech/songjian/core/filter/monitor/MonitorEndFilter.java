@@ -2,19 +2,32 @@ package tech.songjian.core.filter.monitor;
 
 import com.alibaba.nacos.client.naming.utils.RandomUtils;
 import com.sun.net.httpserver.HttpServer;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.FunctionTimer;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MultiGauge;
+import io.micrometer.core.instrument.Tags;
 import io.micrometer.core.instrument.Timer;
 import io.micrometer.prometheus.PrometheusConfig;
 import io.micrometer.prometheus.PrometheusMeterRegistry;
 import lombok.extern.slf4j.Slf4j;
 
 import tech.songjian.core.ConfigLoader;
+import tech.songjian.core.disruptor.QueueConsumerMetrics;
 import tech.songjian.core.context.GatewayContext;
 import tech.songjian.core.filter.Filter;
 import tech.songjian.core.filter.FilterAspect;
+import tech.songjian.core.helper.AsyncHttpHelper;
+import tech.songjian.core.netty.SslContextManager;
+import tech.songjian.core.netty.client.Http2UpstreamConnection;
+import tech.songjian.core.netty.processor.QueueOverloadMetrics;
+import tech.songjian.core.netty.processor.VirtualThreadMetrics;
 
 import java.io.IOException;
 import java.io.OutputStream;
 import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
 
@@ -36,13 +49,36 @@ public class MonitorEndFilter implements Filter {
     // 普罗米修斯的注册表
     private final PrometheusMeterRegistry prometheusMeterRegistry;
 
+    // 到后端的每条 HTTP/2 连接上的活跃 stream 数
+    private final MultiGauge http2ActiveStreams;
+
+    // 缓冲队列每个消费者线程处理事件与等待事件的累计时长，消费者线程数可以在运行时调整
+    private final MultiGauge queueConsumerBusy;
+
+    private final MultiGauge queueConsumerIdle;
+
     public MonitorEndFilter() {
         this.prometheusMeterRegistry = new PrometheusMeterRegistry(PrometheusConfig.DEFAULT);
+        this.http2ActiveStreams = MultiGauge.builder("gateway_upstream_http2_active_streams")
+                .description("active streams per upstream HTTP/2 connection")
+                .register(prometheusMeterRegistry);
+        this.queueConsumerBusy = MultiGauge.builder("gateway_queue_consumer_busy_seconds")
+                .description("time each buffer queue consumer spent processing events")
+                .register(prometheusMeterRegistry);
+        this.queueConsumerIdle = MultiGauge.builder("gateway_queue_consumer_idle_seconds")
+                .description("time each buffer queue consumer spent waiting for events")
+                .register(prometheusMeterRegistry);
+        registerTlsMeters();
+        registerQueueOverloadMeters();
+        registerVirtualThreadMeters();
 
         // 暴露接口给普罗米修斯拉去数据
         try {
             HttpServer server = HttpServer.create(new InetSocketAddress(ConfigLoader.getConfig().getPrometheusPort()),0);
             server.createContext("/prometheus", exchange -> {
+                // 连接随时会新建和关闭，每次拉取前刷新
+                refreshHttp2ActiveStreams();
+                refreshQueueConsumers();
                 // 该 api 用于获取指标数据的文本内容
                 String scrape = prometheusMeterRegistry.scrape();
                 // 指标数据返回
@@ -75,6 +111,81 @@ public class MonitorEndFilter implements Filter {
         },200, 100, TimeUnit.MILLISECONDS);
     }
 
+    /**
+     * TLS 握手指标，握手速率由普罗米修斯按计数器计算
+     */
+    private void registerTlsMeters() {
+        SslContextManager sslContextManager = SslContextManager.getInstance();
+        FunctionCounter.builder("gateway_tls_handshakes", sslContextManager, SslContextManager::getHandshakes)
+                .tag("result", "success")
+                .register(prometheusMeterRegistry);
+        FunctionCounter.builder("gateway_tls_handshakes", sslContextManager, SslContextManager::getHandshakeFailures)
+                .tag("result", "failure")
+                .register(prometheusMeterRegistry);
+        FunctionCounter.builder("gateway_tls_resumed_handshakes", sslContextManager,
+                        SslContextManager::getResumedHandshakes)
+                .description("handshakes resumed from session cache or session ticket")
+                .register(prometheusMeterRegistry);
+        FunctionTimer.builder("gateway_tls_handshake_duration", sslContextManager,
+                        SslContextManager::getHandshakes, SslContextManager::getHandshakeNanos, TimeUnit.NANOSECONDS)
+                .register(prometheusMeterRegistry);
+    }
+
+    /**
+     * 缓冲队列过载的指标
+     */
+    private void registerQueueOverloadMeters() {
+        QueueOverloadMetrics overloadMetrics = QueueOverloadMetrics.getInstance();
+        FunctionCounter.builder("gateway_queue_shed_requests", overloadMetrics, QueueOverloadMetrics::getShedRequests)
+                .description("requests rejected with 503 because the buffer queue was overloaded")
+                .register(prometheusMeterRegistry);
+        FunctionCounter.builder("gateway_queue_read_pauses", overloadMetrics, QueueOverloadMetrics::getPauses)
+                .description("times a client connection stopped reading because the buffer queue was overloaded")
+                .register(prometheusMeterRegistry);
+        Gauge.builder("gateway_queue_paused_channels", overloadMetrics, QueueOverloadMetrics::getPausedChannels)
+                .register(prometheusMeterRegistry);
+    }
+
+    /**
+     * 虚拟线程处理请求的指标，只有 bufferType=virtual 时有数据
+     */
+    private void registerVirtualThreadMeters() {
+        VirtualThreadMetrics virtualThreadMetrics = VirtualThreadMetrics.getInstance();
+        Gauge.builder("gateway_virtual_threads_in_flight", virtualThreadMetrics, VirtualThreadMetrics::getInFlight)
+                .register(prometheusMeterRegistry);
+        FunctionCounter.builder("gateway_virtual_threads_rejected", virtualThreadMetrics, VirtualThreadMetrics::getRejected)
+                .description("requests rejected with 503 because the virtual thread concurrency limit was reached")
+                .register(prometheusMeterRegistry);
+        FunctionTimer.builder("gateway_virtual_threads_pinned", virtualThreadMetrics,
+                        VirtualThreadMetrics::getPinned, VirtualThreadMetrics::getPinnedNanos, TimeUnit.NANOSECONDS)
+                .description("virtual threads pinned to their carrier thread while blocking")
+                .register(prometheusMeterRegistry);
+        Gauge.builder("gateway_virtual_carrier_utilization", virtualThreadMetrics, VirtualThreadMetrics::getCarrierUtilization)
+                .description("cpu utilization of the virtual thread carrier threads since the last scrape")
+                .register(prometheusMeterRegistry);
+    }
+
+    private void refreshQueueConsumers() {
+        List<MultiGauge.Row<?>> busyRows = new ArrayList<>();
+        List<MultiGauge.Row<?>> idleRows = new ArrayList<>();
+        for (QueueConsumerMetrics.ConsumerStats consumer : QueueConsumerMetrics.getInstance().getConsumers()) {
+            Tags tags = Tags.of("consumer", consumer.getName());
+            busyRows.add(MultiGauge.Row.of(tags, consumer, QueueConsumerMetrics.ConsumerStats::getBusySeconds));
+            idleRows.add(MultiGauge.Row.of(tags, consumer, QueueConsumerMetrics.ConsumerStats::getIdleSeconds));
+        }
+        queueConsumerBusy.register(busyRows, true);
+        queueConsumerIdle.register(idleRows, true);
+    }
+
+    private void refreshHttp2ActiveStreams() {
+        List<MultiGauge.Row<?>> rows = new ArrayList<>();
+        for (Http2UpstreamConnection connection : AsyncHttpHelper.getInstance().getHttp2Connections()) {
+            rows.add(MultiGauge.Row.of(Tags.of("remote", connection.getRemote(), "connection", connection.getId()),
+                    connection, Http2UpstreamConnection::getActiveStreams));
+        }
+        http2ActiveStreams.register(rows, true);
+    }
+
     @Override
     public void doFilter(GatewayContext ctx) throws Exception {
         Timer timer = prometheusMeterRegistry.timer("gateway_request",
@@ -4,7 +4,6 @@ import com.netflix.hystrix.*;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.lang3.StringUtils;
 import org.asynchttpclient.Request;
-import org.asynchttpclient.Response;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import tech.songjian.common.config.Rule;
@@ -37,10 +36,21 @@ import static tech.songjian.common.constants.FilterConst.*;
  * @Describe: 路由过滤器类
  */
 @Slf4j
-@FilterAspect(id = ROUTER_FILTER_ID, name = ROUTER_FILTER_NAME, order = ROUTER_FILTER_ORDER)
+@FilterAspect(id = ROUTER_FILTER_ID, name = ROUTER_FILTER_NAME, order = ROUTER_FILTER_ORDER, blocking = true)
 public class RouterFilter implements Filter {
 
     private static Logger accessLog = LoggerFactory.getLogger("accessLog");
+    /**
+     * 熔断的 HystrixCommand.execute 同步等待后端响应，而响应可能正要在当前 EventLoop 上处理，不能在 EventLoop 上执行
+     * 其余转发都是异步的
+     * @param gatewayContext
+     * @return
+     */
+    @Override
+    public boolean isBlocking(GatewayContext gatewayContext) {
+        return !gatewayContext.getRule().isStreaming() && getHystrixConfig(gatewayContext).isPresent();
+    }
+
     /**
      * 路由请求转发
      * @param gatewayContext
@@ -51,12 +61,21 @@ public class RouterFilter implements Filter {
 
         // Optional 可以对可能缺失的值进行建模，而不是直接将 null 赋值给变量。
         Optional<Rule.HystrixConfig> hystrixConfig = getHystrixConfig(gatewayContext);
-        if (hystrixConfig.isPresent()) {
-            // 熔断异常发送路由
-            routeWithHystrix(gatewayContext, hystrixConfig);
-        } else {
-            // 无熔断异常发送请求
-            route(gatewayContext, hystrixConfig);
+        try {
+            if (gatewayContext.getRule().isStreaming()) {
+                // 流式转发，请求体只能发送一次，不走重试与熔断
+                streamRoute(gatewayContext);
+            } else if (hystrixConfig.isPresent()) {
+                // 熔断异常发送路由
+                routeWithHystrix(gatewayContext, hystrixConfig);
+            } else {
+                // 无熔断异常发送请求
+                route(gatewayContext, hystrixConfig);
+            }
+        } catch (Exception e) {
+            // 请求没有发出去，结算实例统计
+            gatewayContext.endInstanceCall();
+            throw e;
         }
     }
 
@@ -93,10 +112,21 @@ public class RouterFilter implements Filter {
 
     }
 
-    private CompletableFuture<Response> route (GatewayContext gatewayContext, Optional<Rule.HystrixConfig> hystrixConfig) {
+    /**
+     * 流式转发：响应头、响应体由 StreamingResponseHandler 边收边写回客户端
+     * @param gatewayContext
+     */
+    private void streamRoute(GatewayContext gatewayContext) {
+        Request request = gatewayContext.getRequest().build();
+        AsyncHttpHelper.getInstance().executeRequest(request,
+                new StreamingResponseHandler(gatewayContext, request.getUrl()));
+    }
+
+    private CompletableFuture<GatewayResponse> route (GatewayContext gatewayContext, Optional<Rule.HystrixConfig> hystrixConfig) {
         Request request = gatewayContext.getRequest().build();
         // 发起请求
-        CompletableFuture<Response> future = AsyncHttpHelper.getInstance().executeRequest(request);
+        CompletableFuture<GatewayResponse> future = AsyncHttpHelper.getInstance()
+                .executeRequest(request, gatewayContext.getNettyCtx().channel().eventLoop(), gatewayContext.getProtocol());
 
         boolean whenComplete = ConfigLoader.getConfig().isWhenComplete();
         if (whenComplete) {
@@ -122,13 +152,10 @@ public class RouterFilter implements Filter {
     }
 
     private void complete(Request request,
-                          Response response,
+                          GatewayResponse response,
                           Throwable throwable,
                           GatewayContext gatewayContext,
                           Optional<Rule.HystrixConfig> hystrixConfig) {
-        // 释放请求资源
-        gatewayContext.releaseRequest();
-
         Rule rule = gatewayContext.getRule();
         // 当前重试次数
         int currentRetryTimes = gatewayContext.getCurrentRetryTimes();
@@ -138,10 +165,17 @@ public class RouterFilter implements Filter {
         if ((throwable instanceof TimeoutException
                 || throwable instanceof IOException)
                 && currentRetryTimes <= confRetryTimes && !hystrixConfig.isPresent()) {
+            // 请求体直接引用客户端请求的 ByteBuf，重试时还要再发一次，此时不能释放
             doRetry(gatewayContext, currentRetryTimes);
             return;
         }
 
+        // 释放请求资源
+        gatewayContext.releaseRequest();
+
+        // 结算选中实例的在途请求与耗时，成功、异常、超时都会走到这里
+        gatewayContext.endInstanceCall();
+
         try {
             // 判断有没有异常
             if (Objects.nonNull(throwable)) {
@@ -149,19 +183,25 @@ public class RouterFilter implements Filter {
                 if (throwable instanceof TimeoutException) {
                     log.warn("complete time out {}", url);
                     gatewayContext.setThrowable(new ResponseException(ResponseCode.REQUEST_TIMEOUT));
+                    gatewayContext.setResponse(GatewayResponse.buildGatewayResponse(ResponseCode.REQUEST_TIMEOUT));
                 } else {
                     gatewayContext.setThrowable(new ConnectException(throwable,
                             gatewayContext.getUniqueId(),
                             url, ResponseCode.HTTP_RESPONSE_ERROR));
+                    gatewayContext.setResponse(GatewayResponse.buildGatewayResponse(ResponseCode.HTTP_RESPONSE_ERROR));
                 }
             } else {
                 // 没有异常，正常响应结果
-                gatewayContext.setResponse(GatewayResponse.buildGatewayResponse(response));
+                gatewayContext.setResponse(response);
             }
         } catch (Throwable t) {
             gatewayContext.setThrowable(new ResponseException(ResponseCode.INTERNAL_ERROR));
+            gatewayContext.setResponse(GatewayResponse.buildGatewayResponse(ResponseCode.INTERNAL_ERROR));
             log.error("complete error", t);
         } finally {
+            // 响应体写出后会被释放，先记下长度
+            GatewayResponse gatewayResponse = gatewayContext.getResponse();
+            int contentLength = gatewayResponse.getBody() == null ? 0 : gatewayResponse.getBody().readableBytes();
             // 改变 context 状态
             gatewayContext.setWritten();
             // 写回数据
@@ -173,8 +213,8 @@ public class RouterFilter implements Filter {
                     gatewayContext.getRequest().getUniqueId(),
                     gatewayContext.getRequest().getMethod(),
                     gatewayContext.getRequest().getPath(),
-                    gatewayContext.getResponse().getHttpResponseStatus().code(),
-                    gatewayContext.getResponse().getFutureResponse().getResponseBodyAsBytes().length);
+                    gatewayResponse.getHttpResponseStatus().code(),
+                    contentLength);
         }
     }
 
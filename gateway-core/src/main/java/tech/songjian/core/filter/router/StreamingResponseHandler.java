@@ -0,0 +1,207 @@
+/**
+ * @projectName JianGateWay
+ * @package tech.songjian.core.filter.router
+ * @className tech.songjian.core.filter.router.StreamingResponseHandler
+ */
+package tech.songjian.core.filter.router;
+
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelFutureListener;
+import io.netty.handler.codec.http.*;
+import lombok.extern.slf4j.Slf4j;
+import org.asynchttpclient.HttpResponseBodyPart;
+import org.asynchttpclient.HttpResponseHeaders;
+import org.asynchttpclient.HttpResponseStatus;
+import org.asynchttpclient.handler.ExtendedAsyncHandler;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import tech.songjian.common.enums.ResponseCode;
+import tech.songjian.common.exception.ConnectException;
+import tech.songjian.common.exception.ResponseException;
+import tech.songjian.core.context.GatewayContext;
+import tech.songjian.core.helper.ResponseHelper;
+import tech.songjian.core.netty.HttpPipeliningHandler;
+import tech.songjian.core.request.StreamingBodyGenerator;
+import tech.songjian.core.response.GatewayResponse;
+import tech.songjian.core.response.GatewayResponseHandler;
+
+import java.net.InetSocketAddress;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * StreamingResponseHandler
+ * @description 流式转发的响应处理：收到后端的响应头就写回客户端，响应体按块边收边写，不在网关内聚合
+ *              客户端连接写不动（不可写）时关闭后端连接的 autoRead，等这次写完成后再打开，
+ *              慢客户端不会让网关堆积整份响应
+ * @author SongJian
+ * @version
+ */
+@Slf4j
+public class StreamingResponseHandler extends ExtendedAsyncHandler<Void> {
+
+    private static Logger accessLog = LoggerFactory.getLogger("accessLog");
+
+    private final GatewayContext gatewayContext;
+
+    private final String url;
+
+    /**
+     * 客户端连接
+     */
+    private final Channel downstream;
+
+    /**
+     * 后端连接，新建或从连接池取出时由 AsyncHttpClient 回调设置
+     */
+    private volatile Channel upstream;
+
+    private volatile io.netty.handler.codec.http.HttpResponseStatus status;
+
+    /**
+     * 响应头是否已经写回客户端，写回之后出错只能断开连接
+     */
+    private volatile boolean headersSent;
+
+    private HttpHeaders trailingHeaders;
+
+    private long contentLength;
+
+    public StreamingResponseHandler(GatewayContext gatewayContext, String url) {
+        this.gatewayContext = gatewayContext;
+        this.url = url;
+        this.downstream = gatewayContext.getNettyCtx().channel();
+    }
+
+    @Override
+    public void onTcpConnectSuccess(InetSocketAddress remoteAddress, Channel connection) {
+        this.upstream = connection;
+    }
+
+    @Override
+    public void onConnectionPooled(Channel connection) {
+        this.upstream = connection;
+    }
+
+    @Override
+    public State onStatusReceived(HttpResponseStatus responseStatus) {
+        this.status = new io.netty.handler.codec.http.HttpResponseStatus(
+                responseStatus.getStatusCode(), responseStatus.getStatusText());
+        return State.CONTINUE;
+    }
+
+    @Override
+    public State onHeadersReceived(HttpResponseHeaders headers) {
+        if (headers.isTrailling()) {
+            trailingHeaders = headers.getHeaders();
+            return State.CONTINUE;
+        }
+        if (!downstream.isActive()) {
+            return State.ABORT;
+        }
+        HttpResponse response = new DefaultHttpResponse(HttpVersion.HTTP_1_1, status);
+        response.headers().add(headers.getHeaders());
+        if (!HttpUtil.isContentLengthSet(response)) {
+            HttpUtil.setTransferEncodingChunked(response, true);
+        }
+        if (gatewayContext.isKeepAlive()) {
+            response.headers().set(HttpHeaderNames.CONNECTION, HttpHeaderValues.KEEP_ALIVE);
+        } else {
+            response.headers().set(HttpHeaderNames.CONNECTION, HttpHeaderValues.CLOSE);
+        }
+        headersSent = true;
+        downstream.writeAndFlush(HttpPipeliningHandler.sequenced(gatewayContext.getResponseSequence(), response));
+        return State.CONTINUE;
+    }
+
+    @Override
+    public State onBodyPartReceived(HttpResponseBodyPart bodyPart) {
+        if (!downstream.isActive()) {
+            return State.ABORT;
+        }
+        HttpContent content = new DefaultHttpContent(GatewayResponseHandler.retainedContent(bodyPart));
+        contentLength += content.content().readableBytes();
+        ChannelFuture future = downstream.writeAndFlush(
+                HttpPipeliningHandler.sequenced(gatewayContext.getResponseSequence(), content));
+        if (!downstream.isWritable()) {
+            pauseUpstream(future);
+        }
+        return State.CONTINUE;
+    }
+
+    @Override
+    public Void onCompleted() {
+        if (headersSent) {
+            LastHttpContent last = LastHttpContent.EMPTY_LAST_CONTENT;
+            if (trailingHeaders != null) {
+                last = new DefaultLastHttpContent();
+                last.trailingHeaders().add(trailingHeaders);
+            }
+            ChannelFuture future = downstream.writeAndFlush(
+                    HttpPipeliningHandler.sequenced(gatewayContext.getResponseSequence(), last));
+            if (!gatewayContext.isKeepAlive()) {
+                future.addListener(ChannelFutureListener.CLOSE);
+            }
+        }
+        complete();
+        return null;
+    }
+
+    @Override
+    public void onThrowable(Throwable throwable) {
+        if (headersSent) {
+            // 响应已经写出一部分，无法再改成错误响应，直接断开客户端连接
+            log.warn("streaming response broken {}", url, throwable);
+            downstream.close();
+        } else {
+            ResponseCode responseCode;
+            if (throwable instanceof TimeoutException) {
+                log.warn("complete time out {}", url);
+                responseCode = ResponseCode.REQUEST_TIMEOUT;
+                gatewayContext.setThrowable(new ResponseException(responseCode));
+            } else {
+                responseCode = ResponseCode.HTTP_RESPONSE_ERROR;
+                gatewayContext.setThrowable(new ConnectException(throwable,
+                        gatewayContext.getUniqueId(), url, responseCode));
+            }
+            gatewayContext.setResponse(GatewayResponse.buildGatewayResponse(responseCode));
+            gatewayContext.setWritten();
+            ResponseHelper.writeResponse(gatewayContext);
+        }
+        complete();
+    }
+
+    /**
+     * 客户端连接写不动时暂停读取后端，这次写完成（成功或失败）后恢复
+     * @param future
+     */
+    private void pauseUpstream(ChannelFuture future) {
+        Channel connection = upstream;
+        if (connection == null) {
+            return;
+        }
+        connection.config().setAutoRead(false);
+        future.addListener(f -> connection.config().setAutoRead(true));
+    }
+
+    /**
+     * 结算实例统计、释放请求资源并记录访问日志，成功与失败都会走到这里
+     */
+    private void complete() {
+        gatewayContext.endInstanceCall();
+        gatewayContext.releaseRequest();
+        StreamingBodyGenerator streamingBody = gatewayContext.getRequest().getStreamingBody();
+        if (streamingBody != null) {
+            streamingBody.close();
+        }
+        gatewayContext.setCompleted();
+        accessLog.info("{} {} {} {} {} {} {}",
+                System.currentTimeMillis() - gatewayContext.getRequest().getBeginTime(),
+                gatewayContext.getRequest().getClientIp(),
+                gatewayContext.getRequest().getUniqueId(),
+                gatewayContext.getRequest().getMethod(),
+                gatewayContext.getRequest().getPath(),
+                status == null ? 0 : status.code(),
+                contentLength);
+    }
+}
@@ -1,7 +1,15 @@
 package tech.songjian.core.helper;
 
+import io.netty.channel.EventLoop;
 import org.asynchttpclient.*;
+import tech.songjian.common.constants.GatewayProtocol;
+import tech.songjian.core.netty.client.Http2UpstreamConnection;
+import tech.songjian.core.netty.client.NativeHttpClient;
+import tech.songjian.core.response.GatewayResponse;
+import tech.songjian.core.response.GatewayResponseHandler;
 
+import java.util.Collection;
+import java.util.Collections;
 import java.util.concurrent.CompletableFuture;
 
 /**
@@ -23,13 +31,45 @@ public class AsyncHttpHelper {
 
 	private AsyncHttpClient asyncHttpClient;
 
+	/**
+	 * 基于 netty 的后端客户端
+	 */
+	private NativeHttpClient nativeHttpClient;
+
 	public void initialized(AsyncHttpClient asyncHttpClient) {
 		this.asyncHttpClient = asyncHttpClient;
 	}
 
-	public CompletableFuture<Response> executeRequest(Request request) {
-		ListenableFuture<Response> future = asyncHttpClient.executeRequest(request);
-		return future.toCompletableFuture();
+	public void initialized(NativeHttpClient nativeHttpClient) {
+		this.nativeHttpClient = nativeHttpClient;
+	}
+
+	/**
+	 * 发送请求并聚合响应，响应体为池化 ByteBuf，使用方负责写出或释放
+	 */
+	public CompletableFuture<GatewayResponse> executeRequest(Request request) {
+		return executeRequest(request, new GatewayResponseHandler());
+	}
+
+	/**
+	 * 发送请求并聚合响应，NativeHttpClient 支持的请求在客户端连接所在的 EventLoop 上完成转发
+	 * @param request
+	 * @param eventLoop 客户端连接所在的 EventLoop
+	 * @param protocol 服务定义的协议，http2 以 HTTP/2 连接后端
+	 */
+	public CompletableFuture<GatewayResponse> executeRequest(Request request, EventLoop eventLoop, String protocol) {
+		boolean http2 = GatewayProtocol.isHttp2(protocol);
+		if (nativeHttpClient != null && nativeHttpClient.supports(request, http2)) {
+			return nativeHttpClient.executeRequest(request, eventLoop, http2);
+		}
+		return executeRequest(request);
+	}
+
+	/**
+	 * 当前所有到后端的 HTTP/2 连接
+	 */
+	public Collection<Http2UpstreamConnection> getHttp2Connections() {
+		return nativeHttpClient == null ? Collections.emptyList() : nativeHttpClient.getHttp2Connections();
 	}
 
 	public <T> CompletableFuture<T> executeRequest(Request request, AsyncHandler<T> handler) {
@@ -12,6 +12,7 @@ import tech.songjian.common.enums.ResponseCode;
 import tech.songjian.common.exception.ResponseException;
 import tech.songjian.core.context.GatewayContext;
 import tech.songjian.core.request.GatewayRequest;
+import tech.songjian.core.request.RouteMatch;
 
 import java.net.InetSocketAddress;
 import java.nio.charset.Charset;
@@ -19,8 +20,6 @@ import java.nio.charset.StandardCharsets;
 import java.util.Arrays;
 import java.util.List;
 
-import static tech.songjian.common.constants.BasicConst.DIT_SEPARATOR;
-
 
 public class RequestHelper {
 
@@ -31,13 +30,27 @@ public class RequestHelper {
 	 * @return
 	 */
 	public static GatewayContext doContext(FullHttpRequest request, ChannelHandlerContext ctx) {
+		return doContext(request, ctx, null);
+	}
+
+	/**
+	 * 根据请求和 netty 上下文构建 网关的上下文
+	 * @param request
+	 * @param ctx
+	 * @param routeMatch 收到请求头时已经匹配出的规则，为 null 时在这里匹配
+	 * @return
+	 */
+	public static GatewayContext doContext(FullHttpRequest request, ChannelHandlerContext ctx, RouteMatch routeMatch) {
 
 		//	构建请求对象 GatewayRequest
 		GatewayRequest gateWayRequest = doRequest(request, ctx);
 
+		//	读取一次配置快照，本次请求的服务定义、规则与实例都来自同一版本
+		ConfigSnapshot snapshot = routeMatch != null
+				? routeMatch.getSnapshot() : DynamicConfigManager.getInstance().getSnapshot();
+
 		//	根据请求对象里的 uniqueId，获取资源服务信息(也就是服务定义信息)
-		ServiceDefinition serviceDefinition =
-				DynamicConfigManager.getInstance().getServiceDefinition(gateWayRequest.getUniqueId());
+		ServiceDefinition serviceDefinition = snapshot.getServiceDefinition(gateWayRequest.getUniqueId());
 
 
 		//	根据请求对象获取服务定义对应的方法调用，然后获取对应的规则
@@ -46,7 +59,8 @@ public class RequestHelper {
 		serviceInvoker.setTimeout(500);
 
 		// 根据请求对象，获取规则
-		Rule rule = getRule(gateWayRequest, serviceDefinition.getServiceId());
+		Rule rule = routeMatch != null
+				? routeMatch.getRule() : getRule(snapshot, gateWayRequest, serviceDefinition.getServiceId());
 
 		//	构建我们而定 GateWayContext 对象
 		GatewayContext gatewayContext = new GatewayContext(
@@ -55,12 +69,37 @@ public class RequestHelper {
 				HttpUtil.isKeepAlive(request),
 				gateWayRequest,
 				rule, 0);
+		gatewayContext.setSnapshot(snapshot);
 
 		// 后续服务发现做完，这里都要改成动态的——已经在负载均衡算法中实现
 		// gatewayContext.getRequest().setModifyHost("127.0.0.1:8080");
 		return gatewayContext;
 	}
 
+	/**
+	 * 在请求体到达之前，根据请求头匹配流式转发的规则
+	 * 快照中没有流式转发规则时直接返回，不解析路径也不匹配路由
+	 * @param request 只有请求行与请求头
+	 * @return 不是流式转发时返回 null
+	 */
+	public static RouteMatch matchStreaming(HttpRequest request) {
+		ConfigSnapshot snapshot = DynamicConfigManager.getInstance().getSnapshot();
+		if (!snapshot.hasStreamingRule()) {
+			return null;
+		}
+		String uniqueId = request.headers().get(GatewayConst.UNIQUE_ID);
+		if (uniqueId == null) {
+			return null;
+		}
+		ServiceDefinition serviceDefinition = snapshot.getServiceDefinition(uniqueId);
+		if (serviceDefinition == null || !snapshot.hasStreamingRule(serviceDefinition.getServiceId())) {
+			return null;
+		}
+		String path = new QueryStringDecoder(request.uri()).path();
+		Rule rule = snapshot.matchRule(serviceDefinition.getServiceId(), path);
+		return rule != null && rule.isStreaming() ? new RouteMatch(snapshot, rule) : null;
+	}
+
 	/**
 	 *构建 Request 请求对象
 	 */
@@ -115,19 +154,16 @@ public class RequestHelper {
 	/**
 	 * 根据请求，获取 Rule 对象
 	 *
+	 * @param snapshot
 	 * @param gateWayRequest
 	 * @param serviceId
 	 * @return
 	 */
-	private static Rule getRule(GatewayRequest gateWayRequest, String serviceId) {
-		String key = serviceId + DIT_SEPARATOR + gateWayRequest.getPath();
-		Rule rule = DynamicConfigManager.getInstance().getRuleByPath(key);
-
-		if (rule != null) {
-			return rule;
+	private static Rule getRule(ConfigSnapshot snapshot, GatewayRequest gateWayRequest, String serviceId) {
+		Rule rule = snapshot.matchRule(serviceId, gateWayRequest.getPath());
+		if (rule == null) {
+			throw new ResponseException(ResponseCode.PATH_NO_MATCHED);
 		}
-		return DynamicConfigManager.getInstance().getRuleByServiceId(serviceId)
-				.stream().filter(r -> gateWayRequest.getPath().startsWith(r.getPrefix()))
-				.findAny().orElseThrow(() -> new ResponseException(ResponseCode.PATH_NO_MATCHED));
+		return rule;
 	}
 }
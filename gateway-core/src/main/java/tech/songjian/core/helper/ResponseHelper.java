@@ -7,6 +7,7 @@ import io.netty.handler.codec.http.*;
 import tech.songjian.common.constants.BasicConst;
 import tech.songjian.common.enums.ResponseCode;
 import tech.songjian.core.context.IContext;
+import tech.songjian.core.netty.HttpPipeliningHandler;
 import tech.songjian.core.response.GatewayResponse;
 
 
@@ -36,9 +37,9 @@ public class ResponseHelper {
 	 */
 	private static FullHttpResponse getHttpResponse(IContext ctx, GatewayResponse gatewayResponse) {
 		ByteBuf content;
-		if(Objects.nonNull(gatewayResponse.getFutureResponse())) {
-			content = Unpooled.wrappedBuffer(gatewayResponse.getFutureResponse()
-					.getResponseBodyAsByteBuffer());
+		if(Objects.nonNull(gatewayResponse.getBody())) {
+			// 后端服务的响应体原样写回，不做拷贝
+			content = gatewayResponse.getBody();
 		}
 		else if(gatewayResponse.getContent() != null) {
 			content = Unpooled.wrappedBuffer(gatewayResponse.getContent().getBytes());
@@ -47,23 +48,15 @@ public class ResponseHelper {
 			content = Unpooled.wrappedBuffer(BasicConst.BLANK_SEPARATOR_1.getBytes());
 		}
 
-		if(Objects.isNull(gatewayResponse.getFutureResponse())) {
-			DefaultFullHttpResponse httpResponse = new DefaultFullHttpResponse(HttpVersion.HTTP_1_1,
-					gatewayResponse.getHttpResponseStatus(),
-					 content);
-			httpResponse.headers().add(gatewayResponse.getResponseHeaders());
-			httpResponse.headers().add(gatewayResponse.getExtraResponseHeaders());
-			httpResponse.headers().set(HttpHeaderNames.CONTENT_LENGTH, httpResponse.content().readableBytes());
-			return httpResponse;
-		} else {
-			gatewayResponse.getFutureResponse().getHeaders().add(gatewayResponse.getExtraResponseHeaders());
-
-			DefaultFullHttpResponse httpResponse = new DefaultFullHttpResponse(HttpVersion.HTTP_1_1,
-					 HttpResponseStatus.valueOf(gatewayResponse.getFutureResponse().getStatusCode()),
-					 content);
-			httpResponse.headers().add(gatewayResponse.getFutureResponse().getHeaders());
-			return httpResponse;
-		}
+		DefaultFullHttpResponse httpResponse = new DefaultFullHttpResponse(HttpVersion.HTTP_1_1,
+				gatewayResponse.getHttpResponseStatus(),
+				content);
+		httpResponse.headers().add(gatewayResponse.getResponseHeaders());
+		httpResponse.headers().add(gatewayResponse.getExtraResponseHeaders());
+		// 响应体已经完整聚合（也可能已解压），按实际长度返回
+		httpResponse.headers().remove(HttpHeaderNames.TRANSFER_ENCODING);
+		httpResponse.headers().set(HttpHeaderNames.CONTENT_LENGTH, httpResponse.content().readableBytes());
+		return httpResponse;
 	}
 
 
@@ -78,14 +71,16 @@ public class ResponseHelper {
 		if(context.isWritten()) {
 			//	1：第一步构建响应对象，并写回数据
 			FullHttpResponse httpResponse = ResponseHelper.getHttpResponse(context, (GatewayResponse)context.getResponse());
+			//	管道化的请求按到达顺序写回
+			Object response = HttpPipeliningHandler.sequenced(context.getResponseSequence(), httpResponse);
 			if(!context.isKeepAlive()) {
 				context.getNettyCtx()
-					.writeAndFlush(httpResponse).addListener(ChannelFutureListener.CLOSE);
+					.writeAndFlush(response).addListener(ChannelFutureListener.CLOSE);
 			}
 			//	长连接：
 			else {
 				httpResponse.headers().set(HttpHeaderNames.CONNECTION, HttpHeaderValues.KEEP_ALIVE);
-				context.getNettyCtx().writeAndFlush(httpResponse);
+				context.getNettyCtx().writeAndFlush(response);
 			}
 			//	2:	设置写回结束状态为： COMPLETED
 			context.isCompleted();
@@ -0,0 +1,104 @@
+/**
+ * @projectName JianGateWay
+ * @package tech.songjian.core.netty
+ * @className tech.songjian.core.netty.ChannelReadSuspender
+ */
+package tech.songjian.core.netty;
+
+import io.netty.channel.Channel;
+import io.netty.util.Attribute;
+import io.netty.util.AttributeKey;
+
+/**
+ * ChannelReadSuspender
+ * @description 客户端连接的暂停读取：管道化的在途请求过多、流式请求体缓存超过高水位、缓冲队列过载都会暂停读取，
+ *              各自记录暂停的原因，所有原因都解除后才恢复读取，一方恢复不会覆盖另一方的暂停
+ *              原因只在连接的 EventLoop 上修改，其它线程调用时提交到 EventLoop 执行
+ * @author SongJian
+ * @version
+ */
+public final class ChannelReadSuspender {
+
+    /**
+     * 暂停读取的原因
+     */
+    public enum Reason {
+        /**
+         * HTTP/1.1 管道化时还没有响应的请求过多
+         */
+        PIPELINING,
+        /**
+         * 流式请求体还没有发给后端的字节数超过高水位
+         */
+        STREAMING_BODY,
+        /**
+         * 缓冲队列过载
+         */
+        QUEUE_OVERLOAD
+    }
+
+    private static final AttributeKey<Integer> REASONS = AttributeKey.valueOf("gatewayReadSuspendReasons");
+
+    private ChannelReadSuspender() {
+
+    }
+
+    /**
+     * 因为某个原因暂停读取，同一原因重复调用没有影响
+     * @param channel
+     * @param reason
+     */
+    public static void suspend(Channel channel, Reason reason) {
+        if (!channel.eventLoop().inEventLoop()) {
+            channel.eventLoop().execute(() -> suspend(channel, reason));
+            return;
+        }
+        Attribute<Integer> attr = channel.attr(REASONS);
+        int reasons = reasons(attr);
+        if (reasons == 0) {
+            channel.config().setAutoRead(false);
+        }
+        attr.set(reasons | bit(reason));
+    }
+
+    /**
+     * 解除某个原因的暂停，没有其它原因时恢复读取
+     * @param channel
+     * @param reason
+     */
+    public static void resume(Channel channel, Reason reason) {
+        if (!channel.eventLoop().inEventLoop()) {
+            channel.eventLoop().execute(() -> resume(channel, reason));
+            return;
+        }
+        Attribute<Integer> attr = channel.attr(REASONS);
+        int reasons = reasons(attr);
+        if ((reasons & bit(reason)) == 0) {
+            return;
+        }
+        reasons &= ~bit(reason);
+        attr.set(reasons);
+        if (reasons == 0) {
+            channel.config().setAutoRead(true);
+        }
+    }
+
+    /**
+     * 是否因为某个原因暂停了读取，在连接的 EventLoop 上调用
+     * @param channel
+     * @param reason
+     * @return
+     */
+    public static boolean isSuspended(Channel channel, Reason reason) {
+        return (reasons(channel.attr(REASONS)) & bit(reason)) != 0;
+    }
+
+    private static int reasons(Attribute<Integer> attr) {
+        Integer reasons = attr.get();
+        return reasons == null ? 0 : reasons;
+    }
+
+    private static int bit(Reason reason) {
+        return 1 << reason.ordinal();
+    }
+}
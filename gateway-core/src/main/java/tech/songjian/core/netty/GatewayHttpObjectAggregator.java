@@ -0,0 +1,145 @@
+/**
+ * @projectName JianGateWay
+ * @package tech.songjian.core.netty
+ * @className tech.songjian.core.netty.GatewayHttpObjectAggregator
+ */
+package tech.songjian.core.netty;
+
+import io.netty.buffer.Unpooled;
+import io.netty.channel.ChannelFutureListener;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelPipeline;
+import io.netty.handler.codec.http.DefaultFullHttpResponse;
+import io.netty.handler.codec.http.FullHttpMessage;
+import io.netty.handler.codec.http.FullHttpRequest;
+import io.netty.handler.codec.http.FullHttpResponse;
+import io.netty.handler.codec.http.HttpHeaderNames;
+import io.netty.handler.codec.http.HttpHeaderValues;
+import io.netty.handler.codec.http.HttpMessage;
+import io.netty.handler.codec.http.HttpObjectAggregator;
+import io.netty.handler.codec.http.HttpRequest;
+import io.netty.handler.codec.http.HttpResponseStatus;
+import io.netty.handler.codec.http.HttpUtil;
+import io.netty.handler.codec.http.HttpVersion;
+import io.netty.handler.codec.http.LastHttpContent;
+import tech.songjian.core.helper.RequestHelper;
+import tech.songjian.core.request.RouteMatch;
+import tech.songjian.core.request.StreamingHttpRequest;
+
+/**
+ * GatewayHttpObjectAggregator
+ * @description HTTP 消息聚合器：收到请求头时先匹配规则，
+ *              规则为流式转发时，该请求的 HttpRequest 与 HttpContent 不做聚合，请求头换成携带匹配结果的
+ *              StreamingHttpRequest，直接交给后面的业务处理器；
+ *              其余请求仍然聚合成 FullHttpRequest
+ *              聚合器自己写出的 100-continue、417、413 同样经过 HttpPipeliningHandler 按请求顺序写出
+ * @author SongJian
+ * @version
+ */
+public class GatewayHttpObjectAggregator extends HttpObjectAggregator {
+
+    /**
+     * 当前请求是否流式转发，收到最后一块请求体后复位
+     */
+    private boolean streaming;
+
+    /**
+     * HTTP/1.1 连接上的响应排序，HTTP/2 的 stream 上没有
+     */
+    private HttpPipeliningHandler pipelining;
+
+    /**
+     * 刚生成的 100-continue 响应是否拒绝了请求（417、413），包装之后父类识别不了状态码
+     */
+    private boolean continueRejected;
+
+    public GatewayHttpObjectAggregator(int maxContentLength) {
+        super(maxContentLength);
+    }
+
+    @Override
+    public void handlerAdded(ChannelHandlerContext ctx) throws Exception {
+        super.handlerAdded(ctx);
+        this.pipelining = ctx.pipeline().get(HttpPipeliningHandler.class);
+    }
+
+    @Override
+    public void channelRead(ChannelHandlerContext ctx, Object msg) throws Exception {
+        if (msg instanceof HttpRequest) {
+            RouteMatch routeMatch = msg instanceof FullHttpRequest ? null : RequestHelper.matchStreaming((HttpRequest) msg);
+            streaming = routeMatch != null;
+            if (streaming) {
+                // 匹配出的规则随请求头往后传，构建上下文时不再匹配
+                ctx.fireChannelRead(new StreamingHttpRequest((HttpRequest) msg, routeMatch));
+                return;
+            }
+        }
+        if (streaming) {
+            if (msg instanceof LastHttpContent) {
+                streaming = false;
+            }
+            ctx.fireChannelRead(msg);
+            return;
+        }
+        super.channelRead(ctx, msg);
+    }
+
+    @Override
+    protected Object newContinueResponse(HttpMessage start, int maxContentLength, ChannelPipeline pipeline) {
+        Object response = super.newContinueResponse(start, maxContentLength, pipeline);
+        if (response == null || pipelining == null) {
+            return response;
+        }
+        continueRejected = super.ignoreContentAfterContinueResponse(response);
+        // 被拒绝的请求不会再往后传，也不会再收到请求体，在这里占用它的编号并计为收完；
+        // 100-continue 用请求收完后拿到的编号
+        int sequence;
+        if (continueRejected) {
+            sequence = pipelining.nextSequence();
+            pipelining.completeRead();
+        } else {
+            sequence = pipelining.peekSequence();
+        }
+        return HttpPipeliningHandler.sequenced(sequence, response);
+    }
+
+    @Override
+    protected boolean ignoreContentAfterContinueResponse(Object msg) {
+        return pipelining != null ? continueRejected : super.ignoreContentAfterContinueResponse(msg);
+    }
+
+    /**
+     * 与父类相同地返回 413，请求不会再往后传，在这里占用它的编号并计为收完，排序后写出
+     * @param ctx
+     * @param oversized
+     * @throws Exception
+     */
+    @Override
+    protected void handleOversizedMessage(ChannelHandlerContext ctx, HttpMessage oversized) throws Exception {
+        if (pipelining == null || !(oversized instanceof HttpRequest)) {
+            super.handleOversizedMessage(ctx, oversized);
+            return;
+        }
+        int sequence = pipelining.nextSequence();
+        pipelining.completeRead();
+        // 客户端已经开始发送请求体，或者不需要保持连接时，写完就关闭连接
+        if (oversized instanceof FullHttpMessage
+                || !HttpUtil.is100ContinueExpected(oversized) && !HttpUtil.isKeepAlive(oversized)) {
+            ctx.writeAndFlush(HttpPipeliningHandler.sequenced(sequence, tooLarge(true)))
+                    .addListener(ChannelFutureListener.CLOSE);
+        } else {
+            ctx.writeAndFlush(HttpPipeliningHandler.sequenced(sequence, tooLarge(false)))
+                    .addListener(ChannelFutureListener.CLOSE_ON_FAILURE);
+        }
+    }
+
+    private static FullHttpResponse tooLarge(boolean close) {
+        FullHttpResponse response = new DefaultFullHttpResponse(HttpVersion.HTTP_1_1,
+                HttpResponseStatus.REQUEST_ENTITY_TOO_LARGE, Unpooled.EMPTY_BUFFER);
+        response.headers().set(HttpHeaderNames.CONTENT_LENGTH, 0);
+        if (close) {
+            response.headers().set(HttpHeaderNames.CONNECTION, HttpHeaderValues.CLOSE);
+        }
+        return response;
+    }
+}
@@ -0,0 +1,163 @@
+/**
+ * @projectName JianGateWay
+ * @package tech.songjian.core.netty
+ * @className tech.songjian.core.netty.GatewayServerInitializer
+ */
+package tech.songjian.core.netty;
+
+import io.netty.channel.*;
+import io.netty.handler.codec.http.HttpServerCodec;
+import io.netty.handler.codec.http.HttpServerUpgradeHandler;
+import io.netty.handler.codec.http2.*;
+import io.netty.handler.flush.FlushConsolidationHandler;
+import io.netty.handler.ssl.ApplicationProtocolNames;
+import io.netty.handler.ssl.ApplicationProtocolNegotiationHandler;
+import io.netty.util.AsciiString;
+import tech.songjian.core.Config;
+import tech.songjian.core.netty.processor.NettyProcessor;
+
+/**
+ * GatewayServerInitializer
+ * @description 服务端连接的 pipeline 初始化
+ *              配置了 TLS 时通过 ALPN 协商 h2 或 http/1.1；
+ *              明文连接开启 HTTP/2 时同时支持 h2c 直连（prior knowledge）与 Upgrade: h2c 升级，其余仍按 HTTP/1.1 处理
+ *              HTTP/2 的每个 stream 是一个子 Channel，经 Http2StreamFrameToHttpObjectCodec 转换成 HTTP/1.1 对象后，
+ *              与 HTTP/1.1 连接走同一套聚合器与 NettyHttpServerHandler，交给 NettyProcessor 处理
+ *              连接最前面的 FlushConsolidationHandler 把一批读事件内的多次 flush 合并为一次
+ * @author SongJian
+ * @version
+ */
+public class GatewayServerInitializer extends ChannelInitializer<Channel> {
+
+    private final Config config;
+
+    private final NettyProcessor nettyProcessor;
+
+    /**
+     * TLS 上下文管理，未开启 TLS 时为 null
+     */
+    private final SslContextManager sslContextManager;
+
+    public GatewayServerInitializer(Config config, NettyProcessor nettyProcessor, SslContextManager sslContextManager) {
+        this.config = config;
+        this.nettyProcessor = nettyProcessor;
+        this.sslContextManager = sslContextManager;
+    }
+
+    @Override
+    protected void initChannel(Channel channel) {
+        ChannelPipeline pipeline = channel.pipeline();
+        if (config.isFlushConsolidationEnabled()) {
+            // 放在最前面，TLS 与 HTTP/2 的 flush 也一起合并
+            pipeline.addLast(new FlushConsolidationHandler(config.getExplicitFlushAfterFlushes(),
+                    config.isConsolidateWhenNoReadInProgress()));
+        }
+        if (sslContextManager != null) {
+            pipeline.addLast(sslContextManager.newHandler(channel.alloc()));
+            pipeline.addLast(new ApplicationProtocolNegotiationHandler(ApplicationProtocolNames.HTTP_1_1) {
+                @Override
+                protected void configurePipeline(ChannelHandlerContext ctx, String protocol) {
+                    if (ApplicationProtocolNames.HTTP_2.equals(protocol)) {
+                        configureHttp2(ctx.pipeline());
+                    } else if (ApplicationProtocolNames.HTTP_1_1.equals(protocol)) {
+                        // HTTP 编解码器
+                        ctx.pipeline().addLast(new HttpServerCodec());
+                        configureHttp1(ctx.pipeline());
+                    } else {
+                        throw new IllegalStateException("unknown protocol: " + protocol);
+                    }
+                }
+            });
+        } else if (config.isHttp2Enabled()) {
+            HttpServerCodec sourceCodec = new HttpServerCodec();
+            HttpServerUpgradeHandler upgradeHandler = new HttpServerUpgradeHandler(sourceCodec, protocol ->
+                    AsciiString.contentEquals(Http2CodecUtil.HTTP_UPGRADE_PROTOCOL_NAME, protocol)
+                            ? new Http2ServerUpgradeCodec(newHttp2FrameCodec(), newHttp2MultiplexHandler())
+                            : null,
+                    config.getMaxContentLength());
+            pipeline.addLast(new CleartextHttp2ServerUpgradeHandler(sourceCodec, upgradeHandler,
+                    new Http2PriorKnowledgeInstaller()));
+            configureHttp1(pipeline);
+        } else {
+            // HTTP 编解码器
+            pipeline.addLast(new HttpServerCodec());
+            configureHttp1(pipeline);
+        }
+    }
+
+    /**
+     * HTTP/1.1 编解码器之后的处理器；h2c 升级成功后它们留在连接的 pipeline 上，只会收到连接级别的帧，直接丢弃
+     * @param pipeline
+     */
+    private void configureHttp1(ChannelPipeline pipeline) {
+        // 管道化的请求可能乱序完成，响应按请求到达的顺序写回
+        pipeline.addLast(new HttpPipeliningHandler(config.getHttpPipeliningMaxInFlight(),
+                config.getHttpPipeliningResponseTimeout()));
+        /**
+         * 如果只是单纯的用 HttpServerCodec 是无法完全的解析 Http POST 请求的，
+         * 因为 HttpServerCodec 只能获取 uri 中参数
+         * HttpObjectAggregator 是 Netty 提供的 HTTP 消息聚合器，通过它可以把 HttpMessage
+         * 和 HttpContent 聚合成一个 FullHttpRequest 或者 FullHttpResponse(取决于是处理请求还是响应）
+         * 匹配到流式转发规则的请求不做聚合
+         */
+        pipeline.addLast(new GatewayHttpObjectAggregator(config.getMaxContentLength()));
+        // 自定义，打印 Channel 的生命周期
+        pipeline.addLast(new NettyServerConnectManagerHandler());
+        // 自定义，业务处理
+        pipeline.addLast(new NettyHttpServerHandler(nettyProcessor));
+    }
+
+    /**
+     * TLS 协商出 h2 时的连接 pipeline
+     * @param pipeline
+     */
+    private void configureHttp2(ChannelPipeline pipeline) {
+        pipeline.addLast(newHttp2FrameCodec());
+        pipeline.addLast(newHttp2MultiplexHandler());
+        pipeline.addLast(new NettyServerConnectManagerHandler());
+    }
+
+    private Http2FrameCodec newHttp2FrameCodec() {
+        return Http2FrameCodecBuilder.forServer()
+                .initialSettings(Http2Settings.defaultSettings()
+                        .maxConcurrentStreams(config.getHttp2MaxConcurrentStreams()))
+                .build();
+    }
+
+    private Http2MultiplexHandler newHttp2MultiplexHandler() {
+        Http2StreamInitializer streamInitializer = new Http2StreamInitializer();
+        // 第二个参数处理 h2c 升级前的那个请求，它在升级后作为 stream 1 送达
+        return new Http2MultiplexHandler(streamInitializer, streamInitializer);
+    }
+
+    /**
+     * 每个 stream 子 Channel 的 pipeline
+     */
+    @ChannelHandler.Sharable
+    private final class Http2StreamInitializer extends ChannelInitializer<Channel> {
+        @Override
+        protected void initChannel(Channel channel) {
+            ChannelPipeline pipeline = channel.pipeline();
+            pipeline.addLast(new Http2StreamFrameToHttpObjectCodec(true));
+            pipeline.addLast(new GatewayHttpObjectAggregator(config.getMaxContentLength()));
+            pipeline.addLast(new NettyServerConnectManagerHandler());
+            pipeline.addLast(new NettyHttpServerHandler(nettyProcessor));
+        }
+    }
+
+    /**
+     * h2c 直连：在 CleartextHttp2ServerUpgradeHandler 所在的位置装上 HTTP/2 处理器
+     * 不能用 ChannelInitializer，它会把处理器加到 pipeline 的末尾，排在 HTTP/1.1 的处理器之后
+     */
+    private final class Http2PriorKnowledgeInstaller extends ChannelHandlerAdapter {
+        @Override
+        public void handlerAdded(ChannelHandlerContext ctx) {
+            // Http2MultiplexHandler 加入时要求 Http2FrameCodec 已经在它前面
+            Http2FrameCodec frameCodec = newHttp2FrameCodec();
+            ChannelPipeline pipeline = ctx.pipeline();
+            pipeline.addAfter(ctx.name(), null, frameCodec);
+            pipeline.addAfter(pipeline.context(frameCodec).name(), null, newHttp2MultiplexHandler());
+            pipeline.remove(this);
+        }
+    }
+}
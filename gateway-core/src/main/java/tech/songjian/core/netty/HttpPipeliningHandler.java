@@ -0,0 +1,374 @@
+/**
+ * @projectName JianGateWay
+ * @package tech.songjian.core.netty
+ * @className tech.songjian.core.netty.HttpPipeliningHandler
+ */
+package tech.songjian.core.netty;
+
+import io.netty.channel.ChannelDuplexHandler;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelPromise;
+import io.netty.channel.PendingWriteQueue;
+import io.netty.handler.codec.http.FullHttpResponse;
+import io.netty.handler.codec.http.HttpRequest;
+import io.netty.handler.codec.http.HttpResponse;
+import io.netty.handler.codec.http.HttpResponseStatus;
+import io.netty.handler.codec.http.HttpStatusClass;
+import io.netty.handler.codec.http.LastHttpContent;
+import io.netty.util.ReferenceCountUtil;
+import io.netty.util.ReferenceCounted;
+import io.netty.util.concurrent.ScheduledFuture;
+import tech.songjian.common.enums.ResponseCode;
+import tech.songjian.core.helper.ResponseHelper;
+
+import java.nio.channels.ClosedChannelException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * HttpPipeliningHandler
+ * @description HTTP/1.1 管道化请求的响应排序
+ *              同一连接上的请求按到达顺序编号，各请求的响应完成顺序不定：
+ *              轮到的响应直接写出，没轮到的先缓存，前面的响应写完最后一块后再按顺序写出
+ *              缓存的数据计入连接的待写字节数，流式响应的背压照常生效；
+ *              已经收完、还没有响应的请求数达到上限时暂停读取，响应追上后再恢复
+ *              轮到的请求收完之后超过响应超时还没有开始写响应时，直接返回 504 并轮到下一个请求，
+ *              之后才到的响应丢弃，一个没有结果的请求不会卡住后面所有的响应
+ *              只在 EventLoop 上访问
+ * @author SongJian
+ * @version
+ */
+public class HttpPipeliningHandler extends ChannelDuplexHandler {
+
+    /**
+     * 同一连接上允许同时处理的请求数
+     */
+    private final int maxInFlight;
+
+    /**
+     * 响应超时，小于等于 0 表示不限制
+     */
+    private final long responseTimeoutNanos;
+
+    /**
+     * 下一个请求的编号
+     */
+    private int readSequence;
+
+    /**
+     * 已经收完最后一块的请求数
+     */
+    private int completedReads;
+
+    /**
+     * 正在读取的请求是否已经计入收完的请求数：被拒绝的请求提前计入，之后到达的最后一块不再重复计数
+     */
+    private boolean readCompleted;
+
+    /**
+     * 当前正在写出的响应的编号
+     */
+    private int writeSequence;
+
+    /**
+     * 当前编号的响应是否已经写出了一部分，写出之后不再超时
+     */
+    private boolean writeStarted;
+
+    /**
+     * 当前编号的请求开始等待响应的时刻：轮到它并且已经收完
+     */
+    private long waitingSince;
+
+    private ScheduledFuture<?> timeoutFuture;
+
+    /**
+     * 提前完成、还没轮到的响应
+     */
+    private final Map<Integer, PendingResponse> pending = new HashMap<>();
+
+    /**
+     * 是否因为未完成的请求过多暂停了读取
+     */
+    private boolean readSuspended;
+
+    private ChannelHandlerContext ctx;
+
+    public HttpPipeliningHandler(int maxInFlight, long responseTimeoutMillis) {
+        this.maxInFlight = maxInFlight;
+        this.responseTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(responseTimeoutMillis);
+    }
+
+    /**
+     * 给新到达的请求编号，每个编号都必须有一个响应
+     * @return
+     */
+    public int nextSequence() {
+        return readSequence++;
+    }
+
+    /**
+     * 下一个请求将要拿到的编号，请求收完之前先写出的 100-continue 用它排序
+     * @return
+     */
+    public int peekSequence() {
+        return readSequence;
+    }
+
+    /**
+     * 正在读取的请求已经收完：请求的最后一块到达，或者请求在收完之前被拒绝（413、417），
+     * 客户端不会再发送请求体时调用，同一个请求只计一次
+     */
+    public void completeRead() {
+        if (readCompleted) {
+            return;
+        }
+        readCompleted = true;
+        // 按收完的请求数决定是否暂停读取
+        if (completedReads++ == writeSequence) {
+            waitingSince = System.nanoTime();
+        }
+        if (completedReads - writeSequence >= maxInFlight && !readSuspended) {
+            readSuspended = true;
+            ChannelReadSuspender.suspend(ctx.channel(), ChannelReadSuspender.Reason.PIPELINING);
+        }
+        scheduleTimeout();
+    }
+
+    /**
+     * 给要写出的响应标上所属请求的编号，编号小于 0 表示连接上没有排序（HTTP/2 的 stream），原样写出
+     * @param sequence
+     * @param msg
+     * @return
+     */
+    public static Object sequenced(int sequence, Object msg) {
+        return sequence < 0 ? msg : new SequencedMessage(sequence, msg);
+    }
+
+    @Override
+    public void handlerAdded(ChannelHandlerContext ctx) {
+        this.ctx = ctx;
+    }
+
+    @Override
+    public void channelRead(ChannelHandlerContext ctx, Object msg) throws Exception {
+        if (msg instanceof HttpRequest) {
+            readCompleted = false;
+        }
+        if (msg instanceof LastHttpContent) {
+            completeRead();
+        }
+        ctx.fireChannelRead(msg);
+    }
+
+    @Override
+    public void write(ChannelHandlerContext ctx, Object msg, ChannelPromise promise) throws Exception {
+        if (!(msg instanceof SequencedMessage)) {
+            ctx.write(msg, promise);
+            return;
+        }
+        SequencedMessage sequenced = (SequencedMessage) msg;
+        if (sequenced.sequence < writeSequence) {
+            // 已经按超时返回过了
+            ReferenceCountUtil.release(sequenced.message);
+            promise.tryFailure(new IllegalStateException("response already timed out: " + sequenced.sequence));
+            return;
+        }
+        boolean last = isLast(sequenced.message);
+        if (sequenced.sequence == writeSequence) {
+            ctx.write(sequenced.message, promise);
+            if (last) {
+                advance(ctx);
+            } else if (!isInformational(sequenced.message)) {
+                writeStarted = true;
+            }
+            return;
+        }
+        PendingResponse response = pending.get(sequenced.sequence);
+        if (response == null) {
+            response = new PendingResponse(ctx);
+            pending.put(sequenced.sequence, response);
+        }
+        response.queue.add(sequenced.message, promise);
+        response.complete = last;
+    }
+
+    /**
+     * 当前编号的响应写完，依次写出已经轮到的缓存响应；轮到的响应还没有完成时，写出已有部分，之后的部分直接写出
+     * @param ctx
+     */
+    private void advance(ChannelHandlerContext ctx) {
+        writeSequence++;
+        writeStarted = false;
+        boolean written = false;
+        PendingResponse response;
+        while ((response = pending.remove(writeSequence)) != null) {
+            response.queue.removeAndWriteAll();
+            written = true;
+            if (!response.complete) {
+                writeStarted = true;
+                break;
+            }
+            writeSequence++;
+        }
+        if (written) {
+            // 这些响应的 flush 在缓存时已经错过了
+            ctx.flush();
+        }
+        if (writeSequence < completedReads) {
+            waitingSince = System.nanoTime();
+        }
+        if (readSuspended && completedReads - writeSequence < maxInFlight) {
+            readSuspended = false;
+            ChannelReadSuspender.resume(ctx.channel(), ChannelReadSuspender.Reason.PIPELINING);
+        }
+        scheduleTimeout();
+    }
+
+    /**
+     * 有请求在等待响应时保证有一个超时检查，检查时没有到期就按剩余时间再检查
+     */
+    private void scheduleTimeout() {
+        if (responseTimeoutNanos <= 0 || timeoutFuture != null || !waitingResponse()) {
+            return;
+        }
+        long delay = waitingSince + responseTimeoutNanos - System.nanoTime();
+        timeoutFuture = ctx.executor().schedule(this::checkTimeout, Math.max(0, delay), TimeUnit.NANOSECONDS);
+    }
+
+    private void checkTimeout() {
+        timeoutFuture = null;
+        if (!ctx.channel().isActive()) {
+            return;
+        }
+        if (waitingResponse() && System.nanoTime() - waitingSince >= responseTimeoutNanos) {
+            FullHttpResponse response = ResponseHelper.getHttpResponse(ResponseCode.REQUEST_TIMEOUT);
+            response.setStatus(HttpResponseStatus.GATEWAY_TIMEOUT);
+            ctx.write(response);
+            advance(ctx);
+            ctx.flush();
+            return;
+        }
+        scheduleTimeout();
+    }
+
+    /**
+     * 轮到的请求已经收完，还没有开始写响应
+     * @return
+     */
+    private boolean waitingResponse() {
+        return writeSequence < completedReads && !writeStarted;
+    }
+
+    /**
+     * 是否是一个响应的最后一块，1xx 临时响应之后还有最终响应
+     * @param msg
+     * @return
+     */
+    private static boolean isLast(Object msg) {
+        return msg instanceof LastHttpContent && !isInformational(msg);
+    }
+
+    private static boolean isInformational(Object msg) {
+        return msg instanceof HttpResponse
+                && ((HttpResponse) msg).status().codeClass() == HttpStatusClass.INFORMATIONAL;
+    }
+
+    @Override
+    public void channelInactive(ChannelHandlerContext ctx) throws Exception {
+        failPending();
+        super.channelInactive(ctx);
+    }
+
+    @Override
+    public void handlerRemoved(ChannelHandlerContext ctx) {
+        failPending();
+    }
+
+    private void failPending() {
+        if (timeoutFuture != null) {
+            timeoutFuture.cancel(false);
+            timeoutFuture = null;
+        }
+        if (pending.isEmpty()) {
+            return;
+        }
+        ClosedChannelException cause = new ClosedChannelException();
+        for (PendingResponse response : pending.values()) {
+            response.queue.removeAndFailAll(cause);
+        }
+        pending.clear();
+    }
+
+    private static final class PendingResponse {
+
+        /**
+         * 缓存的写操作，字节数计入连接的可写状态
+         */
+        private final PendingWriteQueue queue;
+
+        /**
+         * 最后一块是否已经缓存
+         */
+        private boolean complete;
+
+        private PendingResponse(ChannelHandlerContext ctx) {
+            this.queue = new PendingWriteQueue(ctx);
+        }
+    }
+
+    /**
+     * 连接已关闭等情况下写操作到不了这里，由 netty 直接释放，所以引用计数委托给响应本身
+     */
+    private static final class SequencedMessage implements ReferenceCounted {
+
+        private final int sequence;
+
+        private final Object message;
+
+        private SequencedMessage(int sequence, Object message) {
+            this.sequence = sequence;
+            this.message = message;
+        }
+
+        @Override
+        public int refCnt() {
+            return message instanceof ReferenceCounted ? ((ReferenceCounted) message).refCnt() : 1;
+        }
+
+        @Override
+        public ReferenceCounted retain() {
+            ReferenceCountUtil.retain(message);
+            return this;
+        }
+
+        @Override
+        public ReferenceCounted retain(int increment) {
+            ReferenceCountUtil.retain(message, increment);
+            return this;
+        }
+
+        @Override
+        public ReferenceCounted touch() {
+            ReferenceCountUtil.touch(message);
+            return this;
+        }
+
+        @Override
+        public ReferenceCounted touch(Object hint) {
+            ReferenceCountUtil.touch(message, hint);
+            return this;
+        }
+
+        @Override
+        public boolean release() {
+            return ReferenceCountUtil.release(message);
+        }
+
+        @Override
+        public boolean release(int decrement) {
+            return ReferenceCountUtil.release(message, decrement);
+        }
+    }
+}
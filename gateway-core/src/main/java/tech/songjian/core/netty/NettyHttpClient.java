@@ -7,8 +7,10 @@ package tech.songjian.core.netty;
 
 import io.netty.buffer.PooledByteBufAllocator;
 import io.netty.channel.EventLoopGroup;
+import io.netty.util.concurrent.DefaultThreadFactory;
 import lombok.extern.slf4j.Slf4j;
 import org.asynchttpclient.AsyncHttpClient;
+import org.asynchttpclient.AsyncHttpClientConfig;
 import org.asynchttpclient.DefaultAsyncHttpClient;
 import org.asynchttpclient.DefaultAsyncHttpClientConfig;
 import tech.songjian.core.Config;
@@ -37,6 +39,11 @@ public class NettyHttpClient implements LifeCycle {
      */
     private final EventLoopGroup workerEventLoopGroup;
 
+    /**
+     * worker 线程组为 io_uring 时，AsyncHttpClient 单独使用的线程组
+     */
+    private EventLoopGroup asyncEventLoopGroup;
+
     /**
      * 异步非阻塞 Http 客户端
      */
@@ -50,8 +57,15 @@ public class NettyHttpClient implements LifeCycle {
 
     @Override
     public void init() {
+        EventLoopGroup eventLoopGroup = workerEventLoopGroup;
+        if (NettyTransport.of(workerEventLoopGroup) == NettyTransport.IO_URING) {
+            // AsyncHttpClient 只支持 NIO 与 epoll 的线程组，不能与 io_uring 的 worker 共用
+            this.asyncEventLoopGroup = NettyTransport.select(NettyTransport.EPOLL.getCode()).newEventLoopGroup(
+                    config.getEventLoopGroupWorkerNum(), new DefaultThreadFactory("netty-async-client"));
+            eventLoopGroup = asyncEventLoopGroup;
+        }
         DefaultAsyncHttpClientConfig.Builder builder = new DefaultAsyncHttpClientConfig.Builder()
-                .setEventLoopGroup(workerEventLoopGroup)
+                .setEventLoopGroup(eventLoopGroup)
                 // 超时时间
                 .setConnectTimeout(config.getHttpConnectTimeout())
                 .setRequestTimeout(config.getHttpRequestTimeout())
@@ -59,6 +73,8 @@ public class NettyHttpClient implements LifeCycle {
                 .setMaxRedirects(config.getHttpMaxRequestRetry())
                 // 池化 ByteBuffer 分配器 提升性能
                 .setAllocator(PooledByteBufAllocator.DEFAULT)
+                // 响应体分段直接引用连接上收到的 ByteBuf，不再拷贝成 byte[]，由 GatewayResponseHandler 接管
+                .setResponseBodyPartFactory(AsyncHttpClientConfig.ResponseBodyPartFactory.LAZY)
                 .setCompressionEnforced(true)
                 .setMaxConnections(config.getHttpMaxConnections())
                 .setMaxConnectionsPerHost(config.getHttpConnectionsPerHost())
@@ -82,6 +98,9 @@ public class NettyHttpClient implements LifeCycle {
                 log.error("NettyHttpClient 关闭异常！", e);
             }
         }
+        if (asyncEventLoopGroup != null) {
+            asyncEventLoopGroup.shutdownGracefully();
+        }
     }
 }
 
@@ -6,21 +6,13 @@
 package tech.songjian.core.netty;
 
 import io.netty.bootstrap.ServerBootstrap;
-import io.netty.channel.Channel;
-import io.netty.channel.ChannelInitializer;
-import io.netty.channel.ChannelPipeline;
+import io.netty.channel.EventLoop;
 import io.netty.channel.EventLoopGroup;
-import io.netty.channel.epoll.Epoll;
-import io.netty.channel.epoll.EpollEventLoopGroup;
-import io.netty.channel.epoll.EpollServerSocketChannel;
-import io.netty.channel.nio.NioEventLoopGroup;
-import io.netty.channel.socket.nio.NioServerSocketChannel;
-import io.netty.handler.codec.http.HttpObjectAggregator;
-import io.netty.handler.codec.http.HttpServerCodec;
+import io.netty.channel.epoll.EpollChannelOption;
 import io.netty.util.concurrent.DefaultThreadFactory;
+import io.netty.util.concurrent.EventExecutor;
 import lombok.Getter;
 import lombok.extern.slf4j.Slf4j;
-import tech.songjian.common.utils.RemotingUtil;
 import tech.songjian.core.Config;
 import tech.songjian.core.LifeCycle;
 import tech.songjian.core.netty.processor.NettyProcessor;
@@ -57,11 +49,21 @@ public class NettyHttpServer implements LifeCycle {
     @Getter
     private EventLoopGroup workerEventLoopGroup;
 
+    /**
+     * 传输实现：io_uring、epoll 或 NIO
+     */
+    private NettyTransport transport;
+
     /**
      * NettyProcessor 核心处理器
      */
     private final NettyProcessor nettyProcessor;
 
+    /**
+     * TLS 上下文管理，未开启 TLS 时为 null
+     */
+    private SslContextManager sslContextManager;
+
     public NettyHttpServer (Config config, NettyProcessor nettyProcessor) {
         this.config = config;
         this.nettyProcessor = nettyProcessor;
@@ -72,71 +74,98 @@ public class NettyHttpServer implements LifeCycle {
     public void init() {
         this.serverBootstrap = new ServerBootstrap();
         log.info("【Netty服务端】Worker 线程数为：{}", config.getEventLoopGroupWorkerNum());
-        if (useEpoll()) {
-            this.bossEventLoopGroup = new EpollEventLoopGroup(
+        this.transport = NettyTransport.select(config.getTransport());
+        log.info("【Netty服务端】传输实现：{}", transport.getCode());
+        // SO_REUSEPORT 模式下由 worker 自己 accept，不需要 boss 线程
+        if (!useReusePort()) {
+            this.bossEventLoopGroup = transport.newEventLoopGroup(
                     config.getEventLoopGroupBossNum(),
                     new DefaultThreadFactory("netty-boss-nio")
             );
-            this.workerEventLoopGroup = new EpollEventLoopGroup(
-                    config.getEventLoopGroupWorkerNum(),
-                    new DefaultThreadFactory("netty-worker-nio")
-            );
-        } else {
-            this.bossEventLoopGroup = new NioEventLoopGroup(
-                    config.getEventLoopGroupBossNum(),
-                    new DefaultThreadFactory("netty-boss-nio")
-            );
-            this.workerEventLoopGroup = new NioEventLoopGroup(
-                    config.getEventLoopGroupWorkerNum(),
-                    new DefaultThreadFactory("netty-worker-nio")
-            );
+        }
+        this.workerEventLoopGroup = transport.newEventLoopGroup(
+                config.getEventLoopGroupWorkerNum(),
+                new DefaultThreadFactory("netty-worker-nio")
+        );
+        if (!useEpoll() && (config.isReusePortEnabled() || config.getTcpFastOpen() > 0
+                || config.getTcpDeferAccept() > 0 || config.isTcpQuickAck())) {
+            log.warn("【Netty服务端】当前传输实现不是 epoll，SO_REUSEPORT 与 TCP 选项不生效");
+        }
+        if (config.isSslEnabled()) {
+            this.sslContextManager = SslContextManager.getInstance();
+            this.sslContextManager.initialized(config);
         }
     }
 
     /**
-     * 系统是否支持 epoll
+     * 是否使用 epoll 传输
      * @return
      */
     public boolean useEpoll() {
-        return RemotingUtil.isLinuxPlatform() && Epoll.isAvailable();
+        return transport == NettyTransport.EPOLL;
+    }
+
+    /**
+     * 是否以 SO_REUSEPORT 绑定多个监听 Channel
+     * @return
+     */
+    private boolean useReusePort() {
+        return config.isReusePortEnabled() && useEpoll();
     }
 
     @Override
     public void start() {
         this.serverBootstrap
-                .group(bossEventLoopGroup, workerEventLoopGroup)
-                .channel(useEpoll() ? EpollServerSocketChannel.class : NioServerSocketChannel.class)
+                .channel(transport.serverChannelClass())
                 .localAddress(new InetSocketAddress(config.getPort()))
-                .childHandler(new ChannelInitializer<Channel>() {
-                    @Override
-                    protected void initChannel(Channel channel) throws Exception {
-                        ChannelPipeline pipeline = channel.pipeline();
-                        // HTTP 编解码器
-                        pipeline.addLast(new HttpServerCodec());
-                        /**
-                         * 如果只是单纯的用 HttpServerCodec 是无法完全的解析 Http POST 请求的，
-                         * 因为 HttpServerCodec 只能获取 uri 中参数
-                         * HttpObjectAggregator 是 Netty 提供的 HTTP 消息聚合器，通过它可以把 HttpMessage
-                         * 和 HttpContent 聚合成一个 FullHttpRequest 或者 FullHttpResponse(取决于是处理请求还是响应）
-                         */
-                        pipeline.addLast(new HttpObjectAggregator(config.getMaxContentLength()));
-                        // 自定义，打印 Channel 的生命周期
-                        pipeline.addLast(new NettyServerConnectManagerHandler());
-                        // 自定义，业务处理
-                        pipeline.addLast(new NettyHttpServerHandler(nettyProcessor));
-                    }
-                });
+                .childHandler(new GatewayServerInitializer(config, nettyProcessor, sslContextManager));
+        if (useEpoll()) {
+            configureEpollOptions();
+        }
         try {
             // 绑定服务器的地址，并同步等待服务器启动完成
-            this.serverBootstrap.bind().sync();
-            log.info("【Netty服务端】网关服务端口： {}", config.getPort());
+            int acceptors = 0;
+            if (useReusePort()) {
+                // SO_REUSEPORT 模式下每个 worker 各绑定一个监听 Channel，
+                // 监听 Channel 与它 accept 的连接都注册在这个 worker 上，内核按连接把负载分散到各个 worker
+                for (EventExecutor executor : workerEventLoopGroup) {
+                    EventLoop eventLoop = (EventLoop) executor;
+                    this.serverBootstrap.clone().group(eventLoop, eventLoop).bind().sync();
+                    acceptors++;
+                }
+            } else {
+                this.serverBootstrap.group(bossEventLoopGroup, workerEventLoopGroup).bind().sync();
+                acceptors = 1;
+            }
+            log.info("【Netty服务端】网关服务端口： {}，监听 Channel 数：{}", config.getPort(), acceptors);
         } catch (Exception e) {
             throw new RuntimeException(e);
         }
     }
 
+    /**
+     * epoll 专有的监听与连接选项
+     */
+    private void configureEpollOptions() {
+        if (useReusePort()) {
+            this.serverBootstrap.option(EpollChannelOption.SO_REUSEPORT, true);
+        }
+        if (config.getTcpFastOpen() > 0) {
+            this.serverBootstrap.option(EpollChannelOption.TCP_FASTOPEN, config.getTcpFastOpen());
+        }
+        if (config.getTcpDeferAccept() > 0) {
+            this.serverBootstrap.option(EpollChannelOption.TCP_DEFER_ACCEPT, config.getTcpDeferAccept());
+        }
+        if (config.isTcpQuickAck()) {
+            this.serverBootstrap.childOption(EpollChannelOption.TCP_QUICKACK, true);
+        }
+    }
+
     @Override
     public void shutdown() {
+        if (sslContextManager != null) {
+            sslContextManager.shutdown();
+        }
         if (bossEventLoopGroup != null) {
             bossEventLoopGroup.shutdownGracefully();
         }
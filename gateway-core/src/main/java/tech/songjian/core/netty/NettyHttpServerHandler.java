@@ -6,11 +6,17 @@
 package tech.songjian.core.netty;
 
 
+import io.netty.buffer.Unpooled;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.channel.ChannelInboundHandlerAdapter;
-import io.netty.handler.codec.http.FullHttpRequest;
+import io.netty.handler.codec.http.*;
+import io.netty.util.ReferenceCountUtil;
+import tech.songjian.core.Config;
+import tech.songjian.core.ConfigLoader;
 import tech.songjian.core.netty.processor.NettyProcessor;
 import tech.songjian.core.request.HttpRequestWrapper;
+import tech.songjian.core.request.StreamingBodyGenerator;
+import tech.songjian.core.request.StreamingHttpRequest;
 
 /**
  * NettyHttpServerHandler
@@ -23,21 +29,104 @@ public class NettyHttpServerHandler extends ChannelInboundHandlerAdapter {
 
     private final NettyProcessor nettyProcessor;
 
+    /**
+     * 当前正在接收的流式请求体，收到最后一块后置空
+     */
+    private StreamingBodyGenerator streamingBody;
+
+    /**
+     * HTTP/1.1 连接上的响应排序，HTTP/2 的 stream 上没有
+     */
+    private HttpPipeliningHandler pipelining;
+
     public NettyHttpServerHandler(NettyProcessor nettyProcessor) {
         this.nettyProcessor = nettyProcessor;
     }
 
+    @Override
+    public void handlerAdded(ChannelHandlerContext ctx) {
+        this.pipelining = ctx.pipeline().get(HttpPipeliningHandler.class);
+    }
+
     @Override
     public void channelRead(ChannelHandlerContext ctx, Object msg) throws Exception {
-        // HttpObjectAggregator 帮我们实现的
-        FullHttpRequest request = (FullHttpRequest) msg;
+        if (msg instanceof FullHttpRequest) {
+            // HttpObjectAggregator 帮我们实现的
+            FullHttpRequest request = (FullHttpRequest) msg;
+
+            HttpRequestWrapper httpRequestWrapper = new HttpRequestWrapper();
+            httpRequestWrapper.setCtx(ctx);
+            httpRequestWrapper.setRequest(request);
+            httpRequestWrapper.setSequence(nextSequence());
+
+            // 封装好后，把核心业务逻辑委托给 nettyProcessor 进行处理
+            nettyProcessor.process(httpRequestWrapper);
+        } else if (msg instanceof HttpRequest) {
+            // 流式转发的请求，GatewayHttpObjectAggregator 没有做聚合
+            processStreaming(ctx, (HttpRequest) msg);
+        } else if (msg instanceof HttpContent) {
+            HttpContent content = (HttpContent) msg;
+            boolean last = msg instanceof LastHttpContent;
+            if (streamingBody != null) {
+                streamingBody.feed(content.content(), last);
+            } else {
+                content.release();
+            }
+            if (last) {
+                streamingBody = null;
+            }
+        } else {
+            ReferenceCountUtil.release(msg);
+        }
+    }
+
+    /**
+     * 流式请求：收到请求头就开始走过滤器链，请求体之后边收边投递
+     * @param ctx
+     * @param head
+     */
+    private void processStreaming(ChannelHandlerContext ctx, HttpRequest head) {
+        int sequence = nextSequence();
+        if (HttpUtil.is100ContinueExpected(head)) {
+            ctx.writeAndFlush(HttpPipeliningHandler.sequenced(sequence,
+                    new DefaultFullHttpResponse(HttpVersion.HTTP_1_1, HttpResponseStatus.CONTINUE)));
+            head.headers().remove(HttpHeaderNames.EXPECT);
+        }
+        // 只有请求行与请求头，过滤器链中读取请求体的逻辑拿到的是空请求体
+        FullHttpRequest request = new DefaultFullHttpRequest(head.protocolVersion(), head.method(), head.uri(),
+                Unpooled.EMPTY_BUFFER, head.headers(), EmptyHttpHeaders.INSTANCE);
 
         HttpRequestWrapper httpRequestWrapper = new HttpRequestWrapper();
         httpRequestWrapper.setCtx(ctx);
         httpRequestWrapper.setRequest(request);
+        httpRequestWrapper.setSequence(sequence);
+        if (head instanceof StreamingHttpRequest) {
+            // 沿用收到请求头时匹配的规则与快照
+            httpRequestWrapper.setRouteMatch(((StreamingHttpRequest) head).getRouteMatch());
+        }
 
-        // 封装好后，把核心业务逻辑委托给 nettyProcessor 进行处理
+        if (HttpUtil.isTransferEncodingChunked(head) || HttpUtil.getContentLength(head, 0L) > 0) {
+            Config config = ConfigLoader.getConfig();
+            streamingBody = new StreamingBodyGenerator(ctx.channel(),
+                    HttpUtil.getContentLength(head, -1L),
+                    config.getStreamingHighWaterMark(),
+                    config.getStreamingLowWaterMark());
+            httpRequestWrapper.setStreamingBody(streamingBody);
+        }
         nettyProcessor.process(httpRequestWrapper);
     }
-}
 
+    private int nextSequence() {
+        return pipelining != null ? pipelining.nextSequence() : -1;
+    }
+
+    @Override
+    public void channelInactive(ChannelHandlerContext ctx) throws Exception {
+        if (streamingBody != null) {
+            // 请求体没有收完连接就断开了
+            streamingBody.close();
+            streamingBody = null;
+        }
+        super.channelInactive(ctx);
+    }
+}
@@ -0,0 +1,164 @@
+/**
+ * @projectName JianGateWay
+ * @package tech.songjian.core.netty
+ * @className tech.songjian.core.netty.NettyTransport
+ */
+package tech.songjian.core.netty;
+
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.ServerChannel;
+import io.netty.channel.epoll.Epoll;
+import io.netty.channel.epoll.EpollEventLoopGroup;
+import io.netty.channel.epoll.EpollServerSocketChannel;
+import io.netty.channel.epoll.EpollSocketChannel;
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.socket.SocketChannel;
+import io.netty.channel.socket.nio.NioServerSocketChannel;
+import io.netty.channel.socket.nio.NioSocketChannel;
+import io.netty.incubator.channel.uring.IOUring;
+import io.netty.incubator.channel.uring.IOUringEventLoopGroup;
+import io.netty.incubator.channel.uring.IOUringServerSocketChannel;
+import io.netty.incubator.channel.uring.IOUringSocketChannel;
+import lombok.extern.slf4j.Slf4j;
+import tech.songjian.common.utils.RemotingUtil;
+
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * NettyTransport
+ * @description netty 的传输实现：io_uring、epoll 与 NIO
+ *              服务端与 netty 后端客户端共用 worker 线程组，Channel 类型必须与线程组的传输实现一致
+ * @author SongJian
+ * @version
+ */
+@Slf4j
+public enum NettyTransport {
+
+    IO_URING("io_uring") {
+        @Override
+        public boolean isAvailable() {
+            return RemotingUtil.isLinuxPlatform() && IOUring.isAvailable();
+        }
+
+        @Override
+        public EventLoopGroup newEventLoopGroup(int threads, ThreadFactory threadFactory) {
+            return new IOUringEventLoopGroup(threads, threadFactory);
+        }
+
+        @Override
+        public Class<? extends ServerChannel> serverChannelClass() {
+            return IOUringServerSocketChannel.class;
+        }
+
+        @Override
+        public Class<? extends SocketChannel> socketChannelClass() {
+            return IOUringSocketChannel.class;
+        }
+    },
+
+    EPOLL("epoll") {
+        @Override
+        public boolean isAvailable() {
+            return RemotingUtil.isLinuxPlatform() && Epoll.isAvailable();
+        }
+
+        @Override
+        public EventLoopGroup newEventLoopGroup(int threads, ThreadFactory threadFactory) {
+            return new EpollEventLoopGroup(threads, threadFactory);
+        }
+
+        @Override
+        public Class<? extends ServerChannel> serverChannelClass() {
+            return EpollServerSocketChannel.class;
+        }
+
+        @Override
+        public Class<? extends SocketChannel> socketChannelClass() {
+            return EpollSocketChannel.class;
+        }
+    },
+
+    NIO("nio") {
+        @Override
+        public boolean isAvailable() {
+            return true;
+        }
+
+        @Override
+        public EventLoopGroup newEventLoopGroup(int threads, ThreadFactory threadFactory) {
+            return new NioEventLoopGroup(threads, threadFactory);
+        }
+
+        @Override
+        public Class<? extends ServerChannel> serverChannelClass() {
+            return NioServerSocketChannel.class;
+        }
+
+        @Override
+        public Class<? extends SocketChannel> socketChannelClass() {
+            return NioSocketChannel.class;
+        }
+    };
+
+    private final String code;
+
+    NettyTransport(String code) {
+        this.code = code;
+    }
+
+    public String getCode() {
+        return code;
+    }
+
+    public abstract boolean isAvailable();
+
+    public abstract EventLoopGroup newEventLoopGroup(int threads, ThreadFactory threadFactory);
+
+    public abstract Class<? extends ServerChannel> serverChannelClass();
+
+    public abstract Class<? extends SocketChannel> socketChannelClass();
+
+    /**
+     * 按配置选择传输实现，不可用时依次回退：io_uring -> epoll -> nio
+     * auto 与 epoll 相同
+     * @param transport
+     * @return
+     */
+    public static NettyTransport select(String transport) {
+        NettyTransport preferred = null;
+        for (NettyTransport value : values()) {
+            if (value.code.equalsIgnoreCase(transport)) {
+                preferred = value;
+            }
+        }
+        boolean explicit = preferred != null;
+        if (!explicit) {
+            preferred = EPOLL;
+        }
+        for (int i = preferred.ordinal(); i < values().length; i++) {
+            NettyTransport candidate = values()[i];
+            if (candidate.isAvailable()) {
+                if (explicit && candidate != preferred) {
+                    log.warn("【Netty】传输实现 {} 不可用，回退为 {}", preferred.code, candidate.code);
+                }
+                return candidate;
+            }
+        }
+        return NIO;
+    }
+
+    /**
+     * 线程组对应的传输实现
+     * @param eventLoopGroup
+     * @return
+     */
+    public static NettyTransport of(EventLoopGroup eventLoopGroup) {
+        if (eventLoopGroup instanceof IOUringEventLoopGroup) {
+            return IO_URING;
+        }
+        if (eventLoopGroup instanceof EpollEventLoopGroup) {
+            return EPOLL;
+        }
+        return NIO;
+    }
+}
@@ -0,0 +1,309 @@
+/**
+ * @projectName JianGateWay
+ * @package tech.songjian.core.netty
+ * @className tech.songjian.core.netty.SslContextManager
+ */
+package tech.songjian.core.netty;
+
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.handler.codec.http2.Http2SecurityUtil;
+import io.netty.handler.ssl.*;
+import lombok.extern.slf4j.Slf4j;
+import tech.songjian.core.Config;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.*;
+import java.security.SecureRandom;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * SslContextManager
+ * @description 服务端 TLS 上下文的管理
+ *              优先使用 netty-tcnative 提供的 BoringSSL，开启会话缓存与会话票据，客户端重连时可以跳过完整握手；
+ *              配置了 OCSP 响应文件时在握手中装订给客户端
+ *              证书、私钥或 OCSP 响应文件变化后重新构建上下文，只影响之后新建立的连接；
+ *              会话票据的密钥在启动时生成，重新加载证书后之前签发的票据仍然有效
+ *              同时统计握手次数、失败次数、复用会话的次数与握手耗时，供监控拉取；
+ *              OpenSSL 实现下复用会话的次数直接取会话上下文的统计，重新加载证书后累加到之前的上下文上
+ * @author SongJian
+ * @version
+ */
+@Slf4j
+public final class SslContextManager {
+
+    private static final class SingletonHolder {
+        private static final SslContextManager INSTANCE = new SslContextManager();
+    }
+
+    private SslContextManager() {
+
+    }
+
+    public static SslContextManager getInstance() {
+        return SingletonHolder.INSTANCE;
+    }
+
+    /**
+     * 文件变化后等待的时间，证书与私钥通常是先后写入的，等写完再加载
+     */
+    private static final long RELOAD_QUIET_MILLIS = 500;
+
+    private Config config;
+
+    private SslProvider provider;
+
+    private OpenSslSessionTicketKey[] ticketKeys;
+
+    private volatile SslContext sslContext;
+
+    /**
+     * 当前装订的 OCSP 响应，未配置时为 null
+     */
+    private volatile byte[] ocspResponse;
+
+    private WatchService watchService;
+
+    private final LongAdder handshakes = new LongAdder();
+
+    private final LongAdder handshakeFailures = new LongAdder();
+
+    /**
+     * JDK 实现下复用会话的握手次数，OpenSSL 实现直接取会话上下文的统计
+     */
+    private final LongAdder resumedHandshakes = new LongAdder();
+
+    /**
+     * 重新加载证书前，旧上下文上复用会话的次数之和
+     */
+    private long retiredResumedHandshakes;
+
+    private final LongAdder handshakeNanos = new LongAdder();
+
+    /**
+     * 构建 TLS 上下文，按配置监听证书文件的变化
+     * @param config
+     */
+    public synchronized void initialized(Config config) {
+        this.config = config;
+        if ("openssl".equalsIgnoreCase(config.getSslProvider()) && OpenSsl.isAvailable()) {
+            this.provider = SslProvider.OPENSSL;
+            this.ticketKeys = new OpenSslSessionTicketKey[] {newTicketKey()};
+        } else {
+            if ("openssl".equalsIgnoreCase(config.getSslProvider())) {
+                log.warn("【TLS】OpenSSL 不可用，回退为 JDK 实现", OpenSsl.unavailabilityCause());
+            }
+            this.provider = SslProvider.JDK;
+        }
+        try {
+            reload();
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        }
+        log.info("【TLS】实现：{}，OCSP 装订：{}", provider, ocspResponse != null);
+        if (config.isSslCertWatchEnabled()) {
+            startWatcher();
+        }
+    }
+
+    public boolean isEnabled() {
+        return sslContext != null;
+    }
+
+    /**
+     * 为新连接创建 SslHandler，使用当前的证书与 OCSP 响应，并记录这次握手
+     * @param alloc
+     * @return
+     */
+    public SslHandler newHandler(ByteBufAllocator alloc) {
+        SslHandler handler = sslContext.newHandler(alloc);
+        byte[] ocsp = ocspResponse;
+        if (ocsp != null && handler.engine() instanceof ReferenceCountedOpenSslEngine) {
+            ((ReferenceCountedOpenSslEngine) handler.engine()).setOcspResponse(ocsp);
+        }
+        long start = System.nanoTime();
+        boolean countResumed = provider != SslProvider.OPENSSL;
+        // JDK 会话的创建时间只精确到秒，按秒比较，同一秒内创建又复用的会话不计入
+        long startSecond = TimeUnit.MILLISECONDS.toSeconds(System.currentTimeMillis());
+        handler.handshakeFuture().addListener(f -> {
+            if (!f.isSuccess()) {
+                handshakeFailures.increment();
+                return;
+            }
+            handshakes.increment();
+            handshakeNanos.add(System.nanoTime() - start);
+            // 复用的会话是在之前的连接上创建的
+            if (countResumed
+                    && TimeUnit.MILLISECONDS.toSeconds(handler.engine().getSession().getCreationTime()) < startSecond) {
+                resumedHandshakes.increment();
+            }
+        });
+        return handler;
+    }
+
+    /**
+     * 成功的握手次数
+     * @return
+     */
+    public long getHandshakes() {
+        return handshakes.sum();
+    }
+
+    /**
+     * 失败的握手次数，包括握手完成前连接就断开的
+     * @return
+     */
+    public long getHandshakeFailures() {
+        return handshakeFailures.sum();
+    }
+
+    /**
+     * 通过会话缓存或会话票据复用会话的握手次数
+     * @return
+     */
+    public synchronized long getResumedHandshakes() {
+        if (provider != SslProvider.OPENSSL) {
+            return resumedHandshakes.sum();
+        }
+        return retiredResumedHandshakes + resumedHandshakes(sslContext);
+    }
+
+    /**
+     * 成功握手的累计耗时，从连接建立到握手完成
+     * @return
+     */
+    public long getHandshakeNanos() {
+        return handshakeNanos.sum();
+    }
+
+    public synchronized void shutdown() {
+        if (watchService != null) {
+            try {
+                watchService.close();
+            } catch (IOException e) {
+                log.warn("【TLS】关闭证书文件监听失败", e);
+            }
+            watchService = null;
+        }
+    }
+
+    /**
+     * 重新读取证书、私钥与 OCSP 响应，构建失败时抛出异常，继续使用原来的上下文
+     * @throws Exception
+     */
+    private synchronized void reload() throws Exception {
+        byte[] ocsp = null;
+        if (config.getSslOcspResponseFile() != null) {
+            if (provider == SslProvider.OPENSSL && OpenSsl.isOcspSupported()) {
+                ocsp = Files.readAllBytes(Paths.get(config.getSslOcspResponseFile()));
+            } else {
+                log.warn("【TLS】当前实现不支持 OCSP 装订，忽略 {}", config.getSslOcspResponseFile());
+            }
+        }
+        SslContextBuilder builder = SslContextBuilder.forServer(
+                        new File(config.getSslCertChainFile()), new File(config.getSslPrivateKeyFile()))
+                .sslProvider(provider)
+                .sessionCacheSize(config.getSslSessionCacheSize())
+                .sessionTimeout(config.getSslSessionTimeout())
+                .enableOcsp(ocsp != null);
+        // 开启 HTTP/2 时通过 ALPN 优先协商 h2
+        if (config.isHttp2Enabled()) {
+            builder.ciphers(Http2SecurityUtil.CIPHERS, SupportedCipherSuiteFilter.INSTANCE)
+                    .applicationProtocolConfig(new ApplicationProtocolConfig(
+                            ApplicationProtocolConfig.Protocol.ALPN,
+                            ApplicationProtocolConfig.SelectorFailureBehavior.NO_ADVERTISE,
+                            ApplicationProtocolConfig.SelectedListenerFailureBehavior.ACCEPT,
+                            ApplicationProtocolNames.HTTP_2,
+                            ApplicationProtocolNames.HTTP_1_1));
+        }
+        SslContext context = builder.build();
+        if (ticketKeys != null && context.sessionContext() instanceof OpenSslSessionContext) {
+            ((OpenSslSessionContext) context.sessionContext()).setTicketKeys(ticketKeys);
+        }
+        // 旧上下文不再创建新连接，把它的复用次数累加起来
+        this.retiredResumedHandshakes += resumedHandshakes(sslContext);
+        this.ocspResponse = ocsp;
+        this.sslContext = context;
+    }
+
+    /**
+     * OpenSSL 会话上下文上复用会话的次数：会话缓存命中与会话票据复用之和
+     * @param context
+     * @return
+     */
+    private static long resumedHandshakes(SslContext context) {
+        if (context == null || !(context.sessionContext() instanceof OpenSslSessionContext)) {
+            return 0;
+        }
+        OpenSslSessionStats stats = ((OpenSslSessionContext) context.sessionContext()).stats();
+        return stats.hits() + stats.ticketKeyResume();
+    }
+
+    private static OpenSslSessionTicketKey newTicketKey() {
+        SecureRandom random = new SecureRandom();
+        byte[] name = new byte[OpenSslSessionTicketKey.NAME_SIZE];
+        byte[] hmacKey = new byte[OpenSslSessionTicketKey.HMAC_KEY_SIZE];
+        byte[] aesKey = new byte[OpenSslSessionTicketKey.AES_KEY_SIZE];
+        random.nextBytes(name);
+        random.nextBytes(hmacKey);
+        random.nextBytes(aesKey);
+        return new OpenSslSessionTicketKey(name, hmacKey, aesKey);
+    }
+
+    /**
+     * 监听证书所在的目录；Kubernetes 挂载的 Secret 是通过替换符号链接更新的，文件名本身不会出现在事件里，
+     * 所以目录下有任何变化都重新加载
+     */
+    private void startWatcher() {
+        Set<Path> dirs = new HashSet<>();
+        dirs.add(parentOf(config.getSslCertChainFile()));
+        dirs.add(parentOf(config.getSslPrivateKeyFile()));
+        if (config.getSslOcspResponseFile() != null) {
+            dirs.add(parentOf(config.getSslOcspResponseFile()));
+        }
+        try {
+            watchService = FileSystems.getDefault().newWatchService();
+            for (Path dir : dirs) {
+                dir.register(watchService, StandardWatchEventKinds.ENTRY_CREATE,
+                        StandardWatchEventKinds.ENTRY_MODIFY, StandardWatchEventKinds.ENTRY_DELETE);
+            }
+        } catch (IOException e) {
+            log.warn("【TLS】监听证书文件失败，证书更新后需要重启", e);
+            return;
+        }
+        WatchService service = watchService;
+        Thread watcher = new Thread(() -> watch(service), "ssl-cert-watcher");
+        watcher.setDaemon(true);
+        watcher.start();
+    }
+
+    private void watch(WatchService service) {
+        try {
+            while (true) {
+                WatchKey key = service.take();
+                key.pollEvents();
+                key.reset();
+                // 合并一段时间内的连续变化
+                while ((key = service.poll(RELOAD_QUIET_MILLIS, TimeUnit.MILLISECONDS)) != null) {
+                    key.pollEvents();
+                    key.reset();
+                }
+                try {
+                    reload();
+                    log.info("【TLS】证书已重新加载：{}", config.getSslCertChainFile());
+                } catch (Exception e) {
+                    log.error("【TLS】证书重新加载失败，继续使用原来的证书", e);
+                }
+            }
+        } catch (ClosedWatchServiceException | InterruptedException e) {
+            // 停机
+        }
+    }
+
+    private static Path parentOf(String file) {
+        return Paths.get(file).toAbsolutePath().getParent();
+    }
+}
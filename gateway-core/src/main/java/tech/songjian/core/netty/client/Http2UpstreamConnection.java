@@ -0,0 +1,100 @@
+/**
+ * @projectName JianGateWay
+ * @package tech.songjian.core.netty.client
+ * @className tech.songjian.core.netty.client.Http2UpstreamConnection
+ */
+package tech.songjian.core.netty.client;
+
+import io.netty.channel.Channel;
+import io.netty.handler.codec.http2.Http2FrameCodec;
+
+/**
+ * Http2UpstreamConnection
+ * @description 到后端服务的一条 HTTP/2 连接，多个请求以 stream 的方式复用
+ *              并发 stream 数不超过后端在 SETTINGS 中声明的 MAX_CONCURRENT_STREAMS；
+ *              收到 GOAWAY 后不再开新的 stream，已有的 stream 结束后关闭连接
+ *              除 activeStreams 外只在连接所在的 EventLoop 上访问
+ * @author SongJian
+ * @version
+ */
+public final class Http2UpstreamConnection {
+
+    private final Channel channel;
+
+    private final String remote;
+
+    private final Http2FrameCodec frameCodec;
+
+    /**
+     * 已打开、尚未关闭的 stream 数，监控线程会读取
+     */
+    private volatile int activeStreams;
+
+    /**
+     * 是否已收到后端的 SETTINGS，收到之前不知道并发上限，不开 stream
+     */
+    private boolean settingsReceived;
+
+    private boolean goAway;
+
+    Http2UpstreamConnection(Channel channel, String remote, Http2FrameCodec frameCodec) {
+        this.channel = channel;
+        this.remote = remote;
+        this.frameCodec = frameCodec;
+    }
+
+    /**
+     * 连接标识
+     * @return
+     */
+    public String getId() {
+        return channel.id().asShortText();
+    }
+
+    /**
+     * 后端地址 host:port
+     * @return
+     */
+    public String getRemote() {
+        return remote;
+    }
+
+    public int getActiveStreams() {
+        return activeStreams;
+    }
+
+    Channel channel() {
+        return channel;
+    }
+
+    /**
+     * 是否还能再开一个 stream
+     * @return
+     */
+    boolean canOpenStream() {
+        return channel.isActive() && settingsReceived && !goAway
+                && activeStreams < frameCodec.connection().local().maxActiveStreams();
+    }
+
+    void settingsReceived() {
+        settingsReceived = true;
+    }
+
+    void streamOpened() {
+        activeStreams++;
+    }
+
+    void streamClosed() {
+        activeStreams--;
+        if (goAway && activeStreams == 0) {
+            channel.close();
+        }
+    }
+
+    void goAway() {
+        goAway = true;
+        if (activeStreams == 0) {
+            channel.close();
+        }
+    }
+}
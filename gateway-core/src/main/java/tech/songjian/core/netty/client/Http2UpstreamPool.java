@@ -0,0 +1,282 @@
+/**
+ * @projectName JianGateWay
+ * @package tech.songjian.core.netty.client
+ * @className tech.songjian.core.netty.client.Http2UpstreamPool
+ */
+package tech.songjian.core.netty.client;
+
+import io.netty.bootstrap.Bootstrap;
+import io.netty.channel.*;
+import io.netty.handler.codec.http2.*;
+import io.netty.handler.timeout.IdleStateEvent;
+import io.netty.handler.timeout.IdleStateHandler;
+import io.netty.util.ReferenceCountUtil;
+import io.netty.util.concurrent.Future;
+import io.netty.util.concurrent.Promise;
+
+import java.net.InetSocketAddress;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Http2UpstreamPool
+ * @description 单个 EventLoop 上到某个后端地址的 HTTP/2 连接池（h2c prior knowledge）
+ *              取出的是连接上新开的 stream：优先选活跃 stream 最少且未达到并发上限的连接，
+ *              所有连接都满了才排队并新建连接（同一时间只建一条），连接数到上限后排队等有 stream 结束再分配
+ *              stream 级别的流量控制由 netty 的 Http2MultiplexHandler 完成：子 Channel 读走数据后才归还接收窗口
+ * @author SongJian
+ * @version
+ */
+final class Http2UpstreamPool implements UpstreamChannelPool {
+
+    private final Bootstrap bootstrap;
+
+    private final InetSocketAddress address;
+
+    private final String remote;
+
+    private final int maxConnections;
+
+    private final int idleTimeout;
+
+    /**
+     * 所有 EventLoop 上的 HTTP/2 连接，用于监控
+     */
+    private final Set<Http2UpstreamConnection> registry;
+
+    private final List<Http2UpstreamConnection> connections = new ArrayList<>();
+
+    private final ArrayDeque<Promise<Channel>> waiters = new ArrayDeque<>();
+
+    /**
+     * 正在建立的连接数
+     */
+    private int connecting;
+
+    /**
+     * 连接池是否已关闭
+     */
+    private boolean closed;
+
+    private final ChannelHandler streamInitializer = new StreamInitializer();
+
+    Http2UpstreamPool(Bootstrap bootstrap, InetSocketAddress address, int maxConnections, int idleTimeout,
+                      Set<Http2UpstreamConnection> registry) {
+        this.bootstrap = bootstrap;
+        this.address = address;
+        this.remote = address.getHostString() + ":" + address.getPort();
+        this.maxConnections = maxConnections;
+        this.idleTimeout = idleTimeout;
+        this.registry = registry;
+    }
+
+    @Override
+    public void acquire(Promise<Channel> promise) {
+        if (closed) {
+            promise.tryFailure(new IllegalStateException("upstream connection pool closed: " + remote));
+            return;
+        }
+        Http2UpstreamConnection selected = select();
+        if (selected != null) {
+            openStream(selected, promise);
+            return;
+        }
+        waiters.offer(promise);
+        if (connecting == 0 && connections.size() < maxConnections) {
+            connect();
+        }
+    }
+
+    /**
+     * 选出活跃 stream 最少且还能开新 stream 的连接
+     * @return 没有可用连接时为 null
+     */
+    private Http2UpstreamConnection select() {
+        Http2UpstreamConnection selected = null;
+        for (Http2UpstreamConnection connection : connections) {
+            if (connection.canOpenStream()
+                    && (selected == null || connection.getActiveStreams() < selected.getActiveStreams())) {
+                selected = connection;
+            }
+        }
+        return selected;
+    }
+
+    /**
+     * stream 不能复用，请求结束就关闭；响应没有读完时关闭会发送 RST_STREAM
+     * @param channel
+     * @param reusable
+     */
+    @Override
+    public void release(Channel channel, boolean reusable) {
+        channel.close();
+    }
+
+    /**
+     * 所有连接按收到 GOAWAY 处理，活跃的 stream 结束后再关闭连接
+     */
+    @Override
+    public void close() {
+        closed = true;
+        Promise<Channel> waiter;
+        while ((waiter = waiters.poll()) != null) {
+            waiter.tryFailure(new IllegalStateException("upstream connection pool closed: " + remote));
+        }
+        for (Http2UpstreamConnection connection : new ArrayList<>(connections)) {
+            connection.goAway();
+        }
+    }
+
+    private void openStream(Http2UpstreamConnection connection, Promise<Channel> promise) {
+        connection.streamOpened();
+        new Http2StreamChannelBootstrap(connection.channel())
+                .handler(streamInitializer)
+                .open()
+                .addListener((Future<Http2StreamChannel> f) -> {
+                    if (!f.isSuccess()) {
+                        connection.streamClosed();
+                        promise.tryFailure(f.cause());
+                        dispatch();
+                        return;
+                    }
+                    Http2StreamChannel stream = f.getNow();
+                    stream.closeFuture().addListener(c -> {
+                        connection.streamClosed();
+                        // 子 Channel 是在读取最后一帧的回调里关闭的，此时 netty 还没有把 stream 从活跃计数中移除，
+                        // 马上开新 stream 会超过后端的并发上限，放到当前任务之后再分配
+                        stream.eventLoop().execute(Http2UpstreamPool.this::dispatch);
+                    });
+                    if (!promise.trySuccess(stream)) {
+                        // 请求已经超时放弃
+                        stream.close();
+                    }
+                });
+    }
+
+    private void connect() {
+        connecting++;
+        bootstrap.clone()
+                .handler(new ChannelInitializer<Channel>() {
+                    @Override
+                    protected void initChannel(Channel channel) {
+                        ChannelPipeline pipeline = channel.pipeline();
+                        pipeline.addLast(new IdleStateHandler(0, 0, idleTimeout, TimeUnit.MILLISECONDS));
+                        pipeline.addLast(Http2FrameCodecBuilder.forClient()
+                                .initialSettings(Http2Settings.defaultSettings().pushEnabled(false))
+                                .build());
+                        // 后端不会主动开 stream，收到也直接丢弃
+                        pipeline.addLast(new Http2MultiplexHandler(new ChannelInboundHandlerAdapter()));
+                        pipeline.addLast(new ConnectionHandler());
+                    }
+                })
+                .connect(address)
+                .addListener(f -> {
+                    if (!f.isSuccess()) {
+                        connecting--;
+                        // 排队的请求都在等这条连接，一起失败，由上层决定是否重试
+                        Promise<Channel> waiter;
+                        while ((waiter = waiters.poll()) != null) {
+                            waiter.tryFailure(f.cause());
+                        }
+                    }
+                });
+    }
+
+    /**
+     * 把排队的请求分配到有空余 stream 的连接上
+     */
+    private void dispatch() {
+        Promise<Channel> waiter;
+        while ((waiter = waiters.peek()) != null) {
+            if (waiter.isDone()) {
+                waiters.poll();
+                continue;
+            }
+            Http2UpstreamConnection selected = select();
+            if (selected == null) {
+                if (connecting == 0 && connections.size() < maxConnections) {
+                    connect();
+                }
+                return;
+            }
+            waiters.poll();
+            openStream(selected, waiter);
+        }
+    }
+
+    /**
+     * 每个 stream 子 Channel 的 pipeline：HTTP/2 帧与 HTTP/1.1 对象互转，复用 HTTP/1.1 的响应处理
+     */
+    @ChannelHandler.Sharable
+    private static final class StreamInitializer extends ChannelInitializer<Channel> {
+        @Override
+        protected void initChannel(Channel channel) {
+            channel.pipeline().addLast(new Http2StreamFrameToHttpObjectCodec(false));
+            channel.pipeline().addLast(new UpstreamChannelHandler());
+        }
+    }
+
+    /**
+     * 连接级别的事件：SETTINGS、GOAWAY、空闲超时
+     */
+    private final class ConnectionHandler extends ChannelInboundHandlerAdapter {
+
+        private Http2UpstreamConnection connection;
+
+        /**
+         * 连接建立成功的回调先于 channelActive 执行，而连接前言在 Http2FrameCodec 的 channelActive 中才发出，
+         * 所以在这里而不是在 connect 的回调里登记连接
+         */
+        @Override
+        public void channelActive(ChannelHandlerContext ctx) throws Exception {
+            connecting--;
+            Channel channel = ctx.channel();
+            connection = new Http2UpstreamConnection(channel, remote, ctx.pipeline().get(Http2FrameCodec.class));
+            connections.add(connection);
+            registry.add(connection);
+            channel.closeFuture().addListener(c -> {
+                connections.remove(connection);
+                registry.remove(connection);
+                dispatch();
+            });
+            super.channelActive(ctx);
+            // Http2FrameCodec 只写入了连接前言与 SETTINGS，没有 flush
+            ctx.flush();
+            if (closed) {
+                // 连接池在建立连接的过程中被关闭
+                connection.goAway();
+            }
+        }
+
+        @Override
+        public void channelRead(ChannelHandlerContext ctx, Object msg) throws Exception {
+            if (msg instanceof Http2GoAwayFrame) {
+                connection.goAway();
+            } else if (msg instanceof Http2SettingsFrame) {
+                // 收到后端声明的并发上限后才开始分配 stream，之后上限也可能变大，让排队的请求重新分配
+                connection.settingsReceived();
+                dispatch();
+            }
+            ReferenceCountUtil.release(msg);
+        }
+
+        @Override
+        public void userEventTriggered(ChannelHandlerContext ctx, Object evt) throws Exception {
+            if (evt instanceof IdleStateEvent) {
+                if (connection.getActiveStreams() == 0) {
+                    ctx.close();
+                }
+                return;
+            }
+            super.userEventTriggered(ctx, evt);
+        }
+
+        @Override
+        public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) {
+            ctx.close();
+        }
+    }
+}
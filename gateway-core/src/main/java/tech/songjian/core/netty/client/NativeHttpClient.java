@@ -0,0 +1,313 @@
+/**
+ * @projectName JianGateWay
+ * @package tech.songjian.core.netty.client
+ * @className tech.songjian.core.netty.client.NativeHttpClient
+ */
+package tech.songjian.core.netty.client;
+
+import io.netty.bootstrap.Bootstrap;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.PooledByteBufAllocator;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.*;
+import io.netty.handler.codec.http.*;
+import io.netty.handler.codec.http2.HttpConversionUtil;
+import io.netty.handler.timeout.IdleStateHandler;
+import io.netty.util.concurrent.EventExecutor;
+import io.netty.util.concurrent.FastThreadLocal;
+import io.netty.util.concurrent.Future;
+import io.netty.util.concurrent.Promise;
+import lombok.extern.slf4j.Slf4j;
+import org.asynchttpclient.Request;
+import org.asynchttpclient.cookie.CookieEncoder;
+import org.asynchttpclient.request.body.generator.BodyGenerator;
+import org.asynchttpclient.uri.Uri;
+import org.asynchttpclient.util.HttpUtils;
+import tech.songjian.core.Config;
+import tech.songjian.core.LifeCycle;
+import tech.songjian.core.helper.AsyncHttpHelper;
+import tech.songjian.core.netty.NettyTransport;
+import tech.songjian.core.request.ByteBufBodyGenerator;
+import tech.songjian.core.response.GatewayResponse;
+
+import java.net.InetSocketAddress;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import static tech.songjian.common.constants.GatewayConst.UPSTREAM_CLIENT_NATIVE;
+
+/**
+ * NativeHttpClient
+ * @description 直接基于 netty Bootstrap 的后端 Http 客户端
+ *              连接池按 EventLoop、按后端地址划分，请求总是在客户端连接所在的 EventLoop 上发出，
+ *              后端连接也注册在同一个 EventLoop 上，整个转发过程在一个线程内完成，没有跨线程的任务投递，连接池也不需要加锁
+ *              服务协议为 http2 时以 h2c 连接后端，少量连接上复用多个 stream；否则按 upstreamClient 配置决定是否走 HTTP/1.1 连接池
+ *              只处理 http 协议、请求体已经聚合好的请求，其余请求（https、表单、流式转发）仍由 AsyncHttpClient 处理
+ * @author SongJian
+ * @version
+ */
+@Slf4j
+public class NativeHttpClient implements LifeCycle {
+
+    /**
+     * 关闭时等待每个 EventLoop 关闭连接池的时间
+     */
+    private static final long SHUTDOWN_TIMEOUT_MILLIS = 3000;
+
+    /**
+     * 配置文件
+     */
+    private final Config config;
+
+    /**
+     * 线程组，与服务端共用
+     */
+    private final EventLoopGroup workerEventLoopGroup;
+
+    private Bootstrap bootstrap;
+
+    /**
+     * 每个 EventLoop 线程各自的连接池，key 为 host:port
+     */
+    private final FastThreadLocal<Map<String, UpstreamConnectionPool>> pools =
+            new FastThreadLocal<Map<String, UpstreamConnectionPool>>() {
+                @Override
+                protected Map<String, UpstreamConnectionPool> initialValue() {
+                    return new HashMap<>();
+                }
+            };
+
+    /**
+     * 每个 EventLoop 线程各自的 HTTP/2 连接池，key 为 host:port
+     */
+    private final FastThreadLocal<Map<String, Http2UpstreamPool>> http2Pools =
+            new FastThreadLocal<Map<String, Http2UpstreamPool>>() {
+                @Override
+                protected Map<String, Http2UpstreamPool> initialValue() {
+                    return new HashMap<>();
+                }
+            };
+
+    /**
+     * 所有 HTTP/2 连接，用于监控每条连接上的活跃 stream 数
+     */
+    private final Set<Http2UpstreamConnection> http2Connections = ConcurrentHashMap.newKeySet();
+
+    /**
+     * 每个 EventLoop 到同一个后端地址的最大连接数
+     */
+    private int maxConnectionsPerLoop;
+
+    /**
+     * HTTP/1.1 请求是否也由本客户端发送
+     */
+    private boolean http1Enabled;
+
+    /**
+     * 是否已关闭，关闭后不再创建连接池
+     */
+    private volatile boolean closed;
+
+    public NativeHttpClient(Config config, EventLoopGroup workerEventLoopGroup) {
+        this.config = config;
+        this.workerEventLoopGroup = workerEventLoopGroup;
+        init();
+    }
+
+    @Override
+    public void init() {
+        this.http1Enabled = UPSTREAM_CLIENT_NATIVE.equals(config.getUpstreamClient());
+        this.maxConnectionsPerLoop = Math.max(1,
+                config.getHttpConnectionsPerHost() / Math.max(1, config.getEventLoopGroupWorkerNum()));
+        this.bootstrap = new Bootstrap()
+                // 与 worker 线程组的传输实现保持一致
+                .channel(NettyTransport.of(workerEventLoopGroup).socketChannelClass())
+                .option(ChannelOption.CONNECT_TIMEOUT_MILLIS, config.getHttpConnectTimeout())
+                .option(ChannelOption.TCP_NODELAY, true)
+                .option(ChannelOption.SO_KEEPALIVE, true)
+                .option(ChannelOption.ALLOCATOR, PooledByteBufAllocator.DEFAULT)
+                .handler(new ChannelInitializer<Channel>() {
+                    @Override
+                    protected void initChannel(Channel channel) {
+                        ChannelPipeline pipeline = channel.pipeline();
+                        pipeline.addLast(new IdleStateHandler(0, 0,
+                                config.getHttpPooledConnectionIdleTimeout(), TimeUnit.MILLISECONDS));
+                        pipeline.addLast(new HttpClientCodec());
+                        pipeline.addLast(new UpstreamChannelHandler());
+                    }
+                });
+    }
+
+    @Override
+    public void start() {
+        AsyncHttpHelper.getInstance().initialized(this);
+    }
+
+    @Override
+    public void shutdown() {
+        closed = true;
+        // 连接池只能在各自的 EventLoop 上访问，需要在服务端关闭 worker 线程组之前执行
+        List<Future<?>> futures = new ArrayList<>();
+        for (EventExecutor executor : workerEventLoopGroup) {
+            if (!executor.isShuttingDown()) {
+                futures.add(executor.submit(this::closePools));
+            }
+        }
+        for (Future<?> future : futures) {
+            if (!future.awaitUninterruptibly(SHUTDOWN_TIMEOUT_MILLIS)) {
+                log.warn("【Native 客户端】关闭连接池超时");
+            }
+        }
+        http2Connections.clear();
+    }
+
+    /**
+     * 关闭当前 EventLoop 上的所有连接池
+     */
+    private void closePools() {
+        Map<String, UpstreamConnectionPool> loopPools = pools.get();
+        loopPools.values().forEach(UpstreamChannelPool::close);
+        loopPools.clear();
+        Map<String, Http2UpstreamPool> loopHttp2Pools = http2Pools.get();
+        loopHttp2Pools.values().forEach(UpstreamChannelPool::close);
+        loopHttp2Pools.clear();
+    }
+
+    /**
+     * 当前所有 HTTP/2 连接
+     * @return
+     */
+    public Collection<Http2UpstreamConnection> getHttp2Connections() {
+        return Collections.unmodifiableSet(http2Connections);
+    }
+
+    /**
+     * 是否可以由本客户端发送
+     * @param request
+     * @param http2 是否以 HTTP/2 发送
+     * @return
+     */
+    public boolean supports(Request request, boolean http2) {
+        BodyGenerator bodyGenerator = request.getBodyGenerator();
+        return (http2 || http1Enabled)
+                && "http".equals(request.getUri().getScheme())
+                && (bodyGenerator == null || bodyGenerator instanceof ByteBufBodyGenerator)
+                && request.getFormParams().isEmpty()
+                && request.getBodyParts().isEmpty()
+                && request.getStreamData() == null;
+    }
+
+    /**
+     * 在指定的 EventLoop 上发送请求并聚合响应，响应体为池化 ByteBuf，使用方负责写出或释放
+     * @param request
+     * @param eventLoop 客户端连接所在的 EventLoop
+     * @param http2 是否以 HTTP/2 发送
+     * @return 在 eventLoop 上完成的 future
+     */
+    public CompletableFuture<GatewayResponse> executeRequest(Request request, EventLoop eventLoop, boolean http2) {
+        CompletableFuture<GatewayResponse> future = new CompletableFuture<>();
+        if (eventLoop.inEventLoop()) {
+            send(request, eventLoop, http2, future);
+        } else {
+            eventLoop.execute(() -> send(request, eventLoop, http2, future));
+        }
+        return future;
+    }
+
+    private void send(Request request, EventLoop eventLoop, boolean http2, CompletableFuture<GatewayResponse> future) {
+        if (closed) {
+            future.completeExceptionally(new IllegalStateException("native http client is shut down"));
+            return;
+        }
+        Uri uri = request.getUri();
+        int port = uri.getExplicitPort();
+        String key = uri.getHost() + ":" + port;
+        UpstreamChannelPool pool = http2 ? http2Pool(eventLoop, uri.getHost(), port, key)
+                : http1Pool(eventLoop, uri.getHost(), port, key);
+
+        Promise<Channel> promise = eventLoop.newPromise();
+        UpstreamExchange exchange = new UpstreamExchange(pool, toHttpRequest(request, http2), promise, future);
+        int requestTimeout = request.getRequestTimeout() > 0 ? request.getRequestTimeout() : config.getHttpRequestTimeout();
+        exchange.setTimeout(eventLoop.schedule(() -> exchange.fail(
+                new TimeoutException("Request timeout to " + key + " after " + requestTimeout + " ms")),
+                requestTimeout, TimeUnit.MILLISECONDS));
+        promise.addListener(f -> {
+            if (f.isSuccess()) {
+                exchange.start(promise.getNow());
+            } else {
+                exchange.fail(f.cause());
+            }
+        });
+        pool.acquire(promise);
+    }
+
+    private UpstreamChannelPool http1Pool(EventLoop eventLoop, String host, int port, String key) {
+        Map<String, UpstreamConnectionPool> loopPools = pools.get();
+        UpstreamConnectionPool pool = loopPools.get(key);
+        if (pool == null) {
+            pool = new UpstreamConnectionPool(bootstrap.clone(eventLoop),
+                    InetSocketAddress.createUnresolved(host, port), maxConnectionsPerLoop);
+            loopPools.put(key, pool);
+        }
+        return pool;
+    }
+
+    private UpstreamChannelPool http2Pool(EventLoop eventLoop, String host, int port, String key) {
+        Map<String, Http2UpstreamPool> loopPools = http2Pools.get();
+        Http2UpstreamPool pool = loopPools.get(key);
+        if (pool == null) {
+            pool = new Http2UpstreamPool(bootstrap.clone(eventLoop),
+                    InetSocketAddress.createUnresolved(host, port), config.getHttp2ConnectionsPerHost(),
+                    config.getHttpPooledConnectionIdleTimeout(), http2Connections);
+            loopPools.put(key, pool);
+        }
+        return pool;
+    }
+
+    /**
+     * 转换成 netty 的请求对象，请求体与客户端请求共享同一块内存
+     * @param request
+     * @param http2
+     * @return
+     */
+    private FullHttpRequest toHttpRequest(Request request, boolean http2) {
+        Uri uri = request.getUri();
+        ByteBuf content;
+        if (request.getBodyGenerator() instanceof ByteBufBodyGenerator) {
+            // 发送后 netty 释放一次引用计数，客户端请求的 ByteBuf 仍由 GatewayContext 释放
+            content = ((ByteBufBodyGenerator) request.getBodyGenerator()).getContent().retainedDuplicate();
+        } else if (request.getByteData() != null) {
+            content = Unpooled.wrappedBuffer(request.getByteData());
+        } else if (request.getByteBufferData() != null) {
+            content = Unpooled.wrappedBuffer(request.getByteBufferData());
+        } else {
+            content = Unpooled.EMPTY_BUFFER;
+        }
+
+        HttpHeaders headers = new DefaultHttpHeaders().add(request.getHeaders());
+        if (!headers.contains(HttpHeaderNames.HOST)) {
+            headers.set(HttpHeaderNames.HOST, HttpUtils.hostHeader(request, uri));
+        }
+        if (!request.getCookies().isEmpty()) {
+            headers.set(HttpHeaderNames.COOKIE, CookieEncoder.encode(request.getCookies()));
+        }
+        // 逐跳头部不转发，后端连接由连接池自己保持
+        headers.remove(HttpHeaderNames.CONNECTION);
+        headers.remove("keep-alive");
+        // 请求体已经完整聚合，按实际长度发送
+        headers.remove(HttpHeaderNames.EXPECT);
+        headers.remove(HttpHeaderNames.TRANSFER_ENCODING);
+        if (content.isReadable() || headers.contains(HttpHeaderNames.CONTENT_LENGTH)) {
+            headers.set(HttpHeaderNames.CONTENT_LENGTH, content.readableBytes());
+        }
+        if (http2) {
+            // 转换成 HTTP/2 头部时需要 :scheme
+            headers.set(HttpConversionUtil.ExtensionHeaderNames.SCHEME.text(), uri.getScheme());
+        }
+        return new DefaultFullHttpRequest(HttpVersion.HTTP_1_1, HttpMethod.valueOf(request.getMethod()),
+                uri.toRelativeUrl(), content, headers, EmptyHttpHeaders.INSTANCE);
+    }
+}
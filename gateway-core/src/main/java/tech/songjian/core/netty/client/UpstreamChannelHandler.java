@@ -0,0 +1,69 @@
+/**
+ * @projectName JianGateWay
+ * @package tech.songjian.core.netty.client
+ * @className tech.songjian.core.netty.client.UpstreamChannelHandler
+ */
+package tech.songjian.core.netty.client;
+
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.handler.timeout.IdleStateEvent;
+import io.netty.util.ReferenceCountUtil;
+
+import java.io.IOException;
+
+/**
+ * UpstreamChannelHandler
+ * @description 后端连接的业务处理器，把读到的响应交给连接上当前的 UpstreamExchange
+ *              连接空闲（池中没有请求在用）超时后关闭
+ * @author SongJian
+ * @version
+ */
+final class UpstreamChannelHandler extends ChannelInboundHandlerAdapter {
+
+    /**
+     * 连接上正在进行的请求，空闲时为 null
+     */
+    private UpstreamExchange exchange;
+
+    void setExchange(UpstreamExchange exchange) {
+        this.exchange = exchange;
+    }
+
+    @Override
+    public void channelRead(ChannelHandlerContext ctx, Object msg) {
+        if (exchange != null) {
+            exchange.onMessage(msg);
+        } else {
+            ReferenceCountUtil.release(msg);
+        }
+    }
+
+    @Override
+    public void channelInactive(ChannelHandlerContext ctx) throws Exception {
+        if (exchange != null) {
+            exchange.fail(new IOException("upstream connection closed " + ctx.channel().remoteAddress()));
+        }
+        super.channelInactive(ctx);
+    }
+
+    @Override
+    public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) {
+        if (exchange != null) {
+            exchange.fail(cause);
+        } else {
+            ctx.close();
+        }
+    }
+
+    @Override
+    public void userEventTriggered(ChannelHandlerContext ctx, Object evt) throws Exception {
+        if (evt instanceof IdleStateEvent) {
+            if (exchange == null) {
+                ctx.close();
+            }
+            return;
+        }
+        super.userEventTriggered(ctx, evt);
+    }
+}
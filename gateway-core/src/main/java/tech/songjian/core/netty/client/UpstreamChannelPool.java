@@ -0,0 +1,37 @@
+/**
+ * @projectName JianGateWay
+ * @package tech.songjian.core.netty.client
+ * @className tech.songjian.core.netty.client.UpstreamChannelPool
+ */
+package tech.songjian.core.netty.client;
+
+import io.netty.channel.Channel;
+import io.netty.util.concurrent.Promise;
+
+/**
+ * UpstreamChannelPool
+ * @description 单个 EventLoop 上到某个后端地址的连接池，只在这个 EventLoop 上调用
+ *              HTTP/1.1 取出的是一条连接，HTTP/2 取出的是复用连接上的一个 stream
+ * @author SongJian
+ * @version
+ */
+interface UpstreamChannelPool {
+
+    /**
+     * 获取一个可以发送请求的 Channel，可能需要排队
+     * @param promise
+     */
+    void acquire(Promise<Channel> promise);
+
+    /**
+     * 请求完成后归还
+     * @param channel
+     * @param reusable 响应完整且连接可以继续使用
+     */
+    void release(Channel channel, boolean reusable);
+
+    /**
+     * 关闭连接池：排队的请求直接失败，空闲连接立即关闭，正在使用的连接在请求结束后关闭
+     */
+    void close();
+}
@@ -0,0 +1,148 @@
+/**
+ * @projectName JianGateWay
+ * @package tech.songjian.core.netty.client
+ * @className tech.songjian.core.netty.client.UpstreamConnectionPool
+ */
+package tech.songjian.core.netty.client;
+
+import io.netty.bootstrap.Bootstrap;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelFuture;
+import io.netty.util.concurrent.Promise;
+
+import java.net.InetSocketAddress;
+import java.util.ArrayDeque;
+
+/**
+ * UpstreamConnectionPool
+ * @description 单个 EventLoop 上到某个后端地址的 HTTP/1.1 连接池
+ *              池里的连接都注册在这个 EventLoop 上，所有方法也只在这个 EventLoop 上调用，因此不需要任何锁
+ *              连接数达到上限时，获取连接的请求排队，等有连接归还或关闭时再分配
+ * @author SongJian
+ * @version
+ */
+final class UpstreamConnectionPool implements UpstreamChannelPool {
+
+    /**
+     * 已绑定到当前 EventLoop 的启动助手
+     */
+    private final Bootstrap bootstrap;
+
+    private final InetSocketAddress address;
+
+    private final int maxConnections;
+
+    /**
+     * 空闲连接，后进先出，优先复用最近用过的连接
+     */
+    private final ArrayDeque<Channel> idle = new ArrayDeque<>();
+
+    /**
+     * 等待连接的请求
+     */
+    private final ArrayDeque<Promise<Channel>> waiters = new ArrayDeque<>();
+
+    /**
+     * 已建立和正在建立的连接数
+     */
+    private int connections;
+
+    /**
+     * 连接池是否已关闭
+     */
+    private boolean closed;
+
+    UpstreamConnectionPool(Bootstrap bootstrap, InetSocketAddress address, int maxConnections) {
+        this.bootstrap = bootstrap;
+        this.address = address;
+        this.maxConnections = maxConnections;
+    }
+
+    /**
+     * 获取连接：优先取空闲连接，没有则新建，达到上限时排队
+     * @param promise
+     */
+    @Override
+    public void acquire(Promise<Channel> promise) {
+        if (closed) {
+            promise.tryFailure(new IllegalStateException("upstream connection pool closed: " + address));
+            return;
+        }
+        Channel channel;
+        while ((channel = idle.pollLast()) != null) {
+            if (channel.isActive()) {
+                promise.trySuccess(channel);
+                return;
+            }
+        }
+        if (connections < maxConnections) {
+            connect(promise);
+        } else {
+            waiters.offer(promise);
+        }
+    }
+
+    /**
+     * 归还连接，不可复用的连接直接关闭
+     * @param channel
+     * @param reusable
+     */
+    @Override
+    public void release(Channel channel, boolean reusable) {
+        if (closed || !reusable || !channel.isActive()) {
+            // 关闭后由 closeFuture 的回调处理计数与排队的请求
+            channel.close();
+            return;
+        }
+        Promise<Channel> waiter;
+        while ((waiter = waiters.poll()) != null) {
+            if (waiter.trySuccess(channel)) {
+                return;
+            }
+        }
+        idle.offerLast(channel);
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        Promise<Channel> waiter;
+        while ((waiter = waiters.poll()) != null) {
+            waiter.tryFailure(new IllegalStateException("upstream connection pool closed: " + address));
+        }
+        Channel channel;
+        while ((channel = idle.poll()) != null) {
+            channel.close();
+        }
+    }
+
+    private void connect(Promise<Channel> promise) {
+        connections++;
+        ChannelFuture future = bootstrap.connect(address);
+        future.addListener(f -> {
+            if (!f.isSuccess()) {
+                connections--;
+                promise.tryFailure(f.cause());
+                return;
+            }
+            Channel channel = future.channel();
+            channel.closeFuture().addListener(c -> onClosed(channel));
+            if (!promise.trySuccess(channel)) {
+                // 请求已经超时放弃，连接留给别人用
+                release(channel, true);
+            }
+        });
+    }
+
+    private void onClosed(Channel channel) {
+        connections--;
+        idle.remove(channel);
+        Promise<Channel> waiter;
+        while ((waiter = waiters.poll()) != null) {
+            if (!waiter.isDone()) {
+                connect(waiter);
+                return;
+            }
+        }
+    }
+}
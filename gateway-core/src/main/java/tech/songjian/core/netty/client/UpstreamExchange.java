@@ -0,0 +1,176 @@
+/**
+ * @projectName JianGateWay
+ * @package tech.songjian.core.netty.client
+ * @className tech.songjian.core.netty.client.UpstreamExchange
+ */
+package tech.songjian.core.netty.client;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.CompositeByteBuf;
+import io.netty.channel.Channel;
+import io.netty.handler.codec.http.*;
+import io.netty.util.ReferenceCountUtil;
+import io.netty.util.concurrent.Promise;
+import io.netty.util.concurrent.ScheduledFuture;
+import tech.songjian.core.response.GatewayResponse;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * UpstreamExchange
+ * @description 一次向后端服务的请求-响应交换：取连接、发请求、聚合响应、归还连接
+ *              与连接池在同一个 EventLoop 上执行；响应体直接组合收到的 ByteBuf，不做拷贝
+ * @author SongJian
+ * @version
+ */
+final class UpstreamExchange {
+
+    private final UpstreamChannelPool pool;
+
+    private final CompletableFuture<GatewayResponse> future;
+
+    /**
+     * 待发送的请求，发出后置空，引用计数交给 netty
+     */
+    private FullHttpRequest request;
+
+    private final Promise<Channel> channelPromise;
+
+    private Channel channel;
+
+    private ScheduledFuture<?> timeout;
+
+    private GatewayResponse response;
+
+    private CompositeByteBuf body;
+
+    /**
+     * 是否正在接收 1xx 临时响应，临时响应直接丢弃
+     */
+    private boolean informational;
+
+    private boolean keepAlive;
+
+    private boolean done;
+
+    UpstreamExchange(UpstreamChannelPool pool, FullHttpRequest request,
+                     Promise<Channel> channelPromise, CompletableFuture<GatewayResponse> future) {
+        this.pool = pool;
+        this.request = request;
+        this.channelPromise = channelPromise;
+        this.future = future;
+    }
+
+    void setTimeout(ScheduledFuture<?> timeout) {
+        this.timeout = timeout;
+    }
+
+    /**
+     * 拿到连接后发出请求
+     * @param channel
+     */
+    void start(Channel channel) {
+        if (done) {
+            pool.release(channel, true);
+            return;
+        }
+        this.channel = channel;
+        channel.pipeline().get(UpstreamChannelHandler.class).setExchange(this);
+        FullHttpRequest httpRequest = request;
+        request = null;
+        channel.writeAndFlush(httpRequest).addListener(f -> {
+            if (!f.isSuccess()) {
+                fail(f.cause());
+            }
+        });
+    }
+
+    /**
+     * 处理后端连接上读到的响应消息，消息的引用计数在这里释放
+     * @param msg
+     */
+    void onMessage(Object msg) {
+        try {
+            if (done) {
+                return;
+            }
+            if (msg instanceof HttpResponse) {
+                HttpResponse httpResponse = (HttpResponse) msg;
+                if (httpResponse.decoderResult().isFailure()) {
+                    fail(httpResponse.decoderResult().cause());
+                    return;
+                }
+                HttpResponseStatus status = httpResponse.status();
+                informational = status.codeClass() == HttpStatusClass.INFORMATIONAL;
+                if (!informational) {
+                    response = new GatewayResponse();
+                    response.setHttpResponseStatus(status);
+                    response.getResponseHeaders().add(httpResponse.headers());
+                    keepAlive = HttpUtil.isKeepAlive(httpResponse);
+                    body = channel.alloc().compositeBuffer(Integer.MAX_VALUE);
+                }
+            }
+            if (msg instanceof HttpContent && !informational && body != null) {
+                ByteBuf content = ((HttpContent) msg).content();
+                if (content.isReadable()) {
+                    body.addComponent(true, content.retain());
+                }
+            }
+            if (msg instanceof LastHttpContent) {
+                if (informational) {
+                    informational = false;
+                } else if (response != null) {
+                    succeed();
+                }
+            }
+        } finally {
+            ReferenceCountUtil.release(msg);
+        }
+    }
+
+    private void succeed() {
+        done = true;
+        cancelTimeout();
+        channel.pipeline().get(UpstreamChannelHandler.class).setExchange(null);
+        response.setBody(body);
+        body = null;
+        // 先归还连接，下一个请求可以马上复用
+        pool.release(channel, keepAlive);
+        future.complete(response);
+    }
+
+    /**
+     * 请求失败：超时、连接失败、连接中途断开或读写异常
+     * 已经拿到连接的，连接上的状态无法确定，直接关闭
+     * @param cause
+     */
+    void fail(Throwable cause) {
+        if (done) {
+            return;
+        }
+        done = true;
+        cancelTimeout();
+        if (body != null) {
+            body.release();
+            body = null;
+        }
+        if (request != null) {
+            request.release();
+            request = null;
+        }
+        if (channel != null) {
+            channel.pipeline().get(UpstreamChannelHandler.class).setExchange(null);
+            channel.close();
+        } else {
+            channelPromise.tryFailure(cause);
+        }
+        future.completeExceptionally(cause);
+    }
+
+    private void cancelTimeout() {
+        if (timeout != null) {
+            timeout.cancel(false);
+            timeout = null;
+        }
+    }
+}
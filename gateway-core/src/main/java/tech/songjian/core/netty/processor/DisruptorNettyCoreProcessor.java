@@ -6,6 +6,7 @@
 package tech.songjian.core.netty.processor;
 
 import com.lmax.disruptor.dsl.ProducerType;
+import io.netty.channel.Channel;
 import io.netty.channel.ChannelFutureListener;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.handler.codec.http.*;
@@ -16,16 +17,28 @@ import tech.songjian.common.exception.BaseException;
 import tech.songjian.core.Config;
 import tech.songjian.core.context.GatewayContext;
 import tech.songjian.core.disruptor.EventListener;
+import tech.songjian.core.disruptor.ParallelQueue;
 import tech.songjian.core.disruptor.ParallelQueueHandler;
+import tech.songjian.core.disruptor.ShardedParallelQueueHandler;
 import tech.songjian.core.filter.FilterFactory;
 import tech.songjian.core.filter.GatewayFilterChainFactory;
 import tech.songjian.core.helper.RequestHelper;
 import tech.songjian.core.helper.ResponseHelper;
+import tech.songjian.core.netty.ChannelReadSuspender;
+import tech.songjian.core.netty.HttpPipeliningHandler;
 import tech.songjian.core.request.HttpRequestWrapper;
 
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static tech.songjian.common.constants.GatewayConst.BUFFER_TYPE_SHARDED;
+
 /**
  * NettyCoreProcess
  * @description disruptor 流程处理类
+ *              投递请求时不阻塞 EventLoop：队列占用达到高水位或已满时按过载策略处理，
+ *              reject 直接返回 503 并带上 Retry-After，pause 暂停读取该连接直到队列回落到低水位，both 两者都做；
+ *              队列满时无论哪种策略都返回 503
  * @author SongJian
  * @date 2023/6/9 09:01
  * @version
@@ -35,29 +48,162 @@ public class DisruptorNettyCoreProcessor implements NettyProcessor {
 
     private static final String THREAD_NAME_PREFIX = "gateway-queue-";
 
+    /**
+     * 暂停读取后检查队列是否回落的间隔
+     */
+    private static final long RESUME_CHECK_MILLIS = 10;
+
+    /**
+     * 运行时切换队列后，旧队列延迟关闭的时间
+     */
+    private static final long RETIRE_DELAY_MILLIS = 1000;
+
     private Config config;
 
     private NettyCoreProcessor nettyCoreProcessor;
 
-    private ParallelQueueHandler<HttpRequestWrapper> parallelQueueHandler;
+    /**
+     * 运行时调整配置时整体替换
+     */
+    private volatile ParallelQueue<HttpRequestWrapper> parallelQueueHandler;
+
+    /**
+     * 当前队列使用的消费者线程数与等待策略
+     */
+    private String queueSettings;
+
+    /**
+     * 队列替换的次数，用于区分新旧队列的线程名
+     */
+    private int generation;
+
+    private boolean stopped;
+
+    /**
+     * 队列占用达到该数量时按过载策略处理
+     */
+    private final long highWaterMark;
+
+    /**
+     * 队列占用回落到该数量以下时恢复读取
+     */
+    private final long lowWaterMark;
+
+    private final boolean rejectOnOverload;
+
+    private final boolean pauseOnOverload;
+
+    private final QueueOverloadMetrics overloadMetrics = QueueOverloadMetrics.getInstance();
 
     public DisruptorNettyCoreProcessor(Config config, NettyCoreProcessor nettyCoreProcessor) {
         this.config = config;
         this.nettyCoreProcessor = nettyCoreProcessor;
+        // 分片模式下是每个分片的大小
+        int bufferSize = config.getBufferSize();
+        this.highWaterMark = Math.max(1, Math.min(bufferSize, (long) Math.ceil(bufferSize * config.getQueueHighWaterMark())));
+        this.lowWaterMark = Math.min(highWaterMark - 1, (long) (bufferSize * config.getQueueLowWaterMark()));
+        this.rejectOnOverload = !"pause".equals(config.getQueueOverloadPolicy());
+        this.pauseOnOverload = !"reject".equals(config.getQueueOverloadPolicy());
+        this.parallelQueueHandler = newQueue(config);
+        this.queueSettings = queueSettings(config);
+    }
+
+    /**
+     * 按配置创建队列，消费者线程数与等待策略取自 runtimeConfig
+     * @param runtimeConfig
+     * @return
+     */
+    private ParallelQueue<HttpRequestWrapper> newQueue(Config runtimeConfig) {
+        String namePrefix = THREAD_NAME_PREFIX + (generation == 0 ? "" : generation + "-");
+        BatchEventListenerProcessor batchEventListenerProcessor = new BatchEventListenerProcessor();
+        if (BUFFER_TYPE_SHARDED.equals(config.getBufferType())) {
+            // 每个 worker 一个分片，同一连接的请求始终由同一个 EventLoop 投递到同一个分片
+            return new ShardedParallelQueueHandler.Builder<HttpRequestWrapper>()
+                    .setShards(config.getEventLoopGroupWorkerNum())
+                    .setBufferSize(config.getBufferSize())
+                    .setNamePrefix(namePrefix + "shard-")
+                    .setWaitStrategyFactory(runtimeConfig::getWaitStrategy)
+                    .setListener(batchEventListenerProcessor)
+                    .build();
+        }
         ParallelQueueHandler.Builder<HttpRequestWrapper> builder = new ParallelQueueHandler.Builder<HttpRequestWrapper>()
                 .setBufferSize(config.getBufferSize())
-                .setThreads(config.getProcessThread())
+                .setThreads(runtimeConfig.getProcessThread())
                 .setProducerType(ProducerType.MULTI)
-                .setNamePrefix(THREAD_NAME_PREFIX)
-                .setWaitStrategy(config.getWaitStrategy());
-        BatchEventListenerProcessor batchEventListenerProcessor = new BatchEventListenerProcessor();
+                .setNamePrefix(namePrefix)
+                .setWaitStrategy(runtimeConfig.getWaitStrategy());
         builder.setListener(batchEventListenerProcessor);
-        this.parallelQueueHandler = builder.build();
+        return builder.build();
+    }
+
+    private String queueSettings(Config runtimeConfig) {
+        // 分片模式每个分片固定一个消费者线程
+        int threads = BUFFER_TYPE_SHARDED.equals(config.getBufferType())
+                ? config.getEventLoopGroupWorkerNum() : runtimeConfig.getProcessThread();
+        return "threads=" + threads + ", waitStrategy=" + runtimeConfig.getWaitStrategyName()
+                + ", adaptiveSpinMaxMicros=" + runtimeConfig.getAdaptiveSpinMaxMicros()
+                + ", adaptiveYieldMaxMicros=" + runtimeConfig.getAdaptiveYieldMaxMicros();
     }
 
     @Override
     public void process(HttpRequestWrapper httpRequestWrapper) {
-        this.parallelQueueHandler.add(httpRequestWrapper);
+        ParallelQueue<HttpRequestWrapper> parallelQueueHandler = this.parallelQueueHandler;
+        if (config.getBufferSize() - parallelQueueHandler.remainingCapacity() >= highWaterMark) {
+            if (pauseOnOverload) {
+                pause(httpRequestWrapper.getCtx().channel());
+            }
+            if (rejectOnOverload) {
+                shed(httpRequestWrapper);
+                return;
+            }
+        }
+        // 不能用 add，队列满时会阻塞 EventLoop，这个 EventLoop 上的所有连接都会卡住
+        if (!parallelQueueHandler.tryAdd(httpRequestWrapper)) {
+            shed(httpRequestWrapper);
+        }
+    }
+
+    /**
+     * 当前线程投递的队列中已占用的数量
+     * @return
+     */
+    private long usedCapacity() {
+        return config.getBufferSize() - parallelQueueHandler.remainingCapacity();
+    }
+
+    /**
+     * 队列过载，直接返回 503，客户端按 Retry-After 稍后重试
+     * @param httpRequestWrapper
+     */
+    private void shed(HttpRequestWrapper httpRequestWrapper) {
+        overloadMetrics.recordShed();
+        NettyCoreProcessor.writeServiceUnavailable(httpRequestWrapper, config.getQueueRetryAfterSeconds());
+    }
+
+    /**
+     * 暂停读取该连接，在连接的 EventLoop 上定时检查队列，回落到低水位后恢复
+     * 与流水线、流式请求体的背压各自记录暂停原因，都解除后才恢复读取
+     * @param channel
+     */
+    private void pause(Channel channel) {
+        if (ChannelReadSuspender.isSuspended(channel, ChannelReadSuspender.Reason.QUEUE_OVERLOAD)) {
+            return;
+        }
+        ChannelReadSuspender.suspend(channel, ChannelReadSuspender.Reason.QUEUE_OVERLOAD);
+        overloadMetrics.recordPause();
+        log.debug("【缓冲队列】队列过载，暂停读取连接：{}", channel);
+        scheduleResume(channel);
+    }
+
+    private void scheduleResume(Channel channel) {
+        channel.eventLoop().schedule(() -> {
+            if (channel.isActive() && usedCapacity() > lowWaterMark) {
+                scheduleResume(channel);
+                return;
+            }
+            overloadMetrics.recordResume();
+            ChannelReadSuspender.resume(channel, ChannelReadSuspender.Reason.QUEUE_OVERLOAD);
+        }, RESUME_CHECK_MILLIS, TimeUnit.MILLISECONDS);
     }
 
     @Override
@@ -66,10 +212,37 @@ public class DisruptorNettyCoreProcessor implements NettyProcessor {
     }
 
     @Override
-    public void shutdown() {
+    public synchronized void shutdown() {
+        stopped = true;
         parallelQueueHandler.shutDown();
     }
 
+    /**
+     * 消费者线程数或等待策略变化时，按新配置创建队列并切换过去，旧队列处理完已投递的请求后关闭
+     * 切换期间同一连接的请求可能分别在新旧队列中，响应顺序由 HttpPipeliningHandler 保证
+     */
+    @Override
+    public synchronized void reconfigure(Config runtimeConfig) {
+        String settings = queueSettings(runtimeConfig);
+        if (stopped || settings.equals(queueSettings)) {
+            return;
+        }
+        generation++;
+        ParallelQueue<HttpRequestWrapper> old = parallelQueueHandler;
+        ParallelQueue<HttpRequestWrapper> queue = newQueue(runtimeConfig);
+        try {
+            queue.start();
+        } catch (RuntimeException e) {
+            queue.shutDown();
+            throw e;
+        }
+        parallelQueueHandler = queue;
+        log.info("【缓冲队列】配置变更，切换队列：{} -> {}", queueSettings, settings);
+        queueSettings = settings;
+        // 已经取到旧队列的生产者可能还没投递完，等一会儿再排空关闭
+        CompletableFuture.delayedExecutor(RETIRE_DELAY_MILLIS, TimeUnit.MILLISECONDS).execute(old::shutDown);
+    }
+
     public class BatchEventListenerProcessor implements EventListener<HttpRequestWrapper> {
 
         @Override
@@ -81,15 +254,17 @@ public class DisruptorNettyCoreProcessor implements NettyProcessor {
         public void onException(Throwable ex, long sequence, HttpRequestWrapper event) {
             HttpRequest request = event.getRequest();
             ChannelHandlerContext ctx = event.getCtx();
+            NettyCoreProcessor.closeStreamingBody(event);
             try {
                 log.error("BatchEventListenerProcessor onException 请求写回失败，request:{}，errormsg：{}", request, ex.getMessage(), ex);
                 // 构建响应对象
                 FullHttpResponse fullHttpResponse = ResponseHelper.getHttpResponse(ResponseCode.INTERNAL_ERROR);
+                Object response = HttpPipeliningHandler.sequenced(event.getSequence(), fullHttpResponse);
                 if (!HttpUtil.isKeepAlive(request)) {
-                    ctx.writeAndFlush(fullHttpResponse).addListener(ChannelFutureListener.CLOSE);
+                    ctx.writeAndFlush(response).addListener(ChannelFutureListener.CLOSE);
                 } else {
                     fullHttpResponse.headers().set(HttpHeaderNames.CONNECTION, HttpHeaderValues.KEEP_ALIVE);
-                    ctx.writeAndFlush(fullHttpResponse);
+                    ctx.writeAndFlush(response);
                 }
             } catch (Exception e) {
                 log.error("BatchEventListenerProcessor onException 请求写回失败，request:{}，errormsg：{}", request, e.getMessage(), e);
@@ -9,6 +9,10 @@ import io.netty.channel.ChannelFutureListener;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.handler.codec.http.FullHttpRequest;
 import io.netty.handler.codec.http.FullHttpResponse;
+import io.netty.handler.codec.http.HttpHeaderNames;
+import io.netty.handler.codec.http.HttpHeaderValues;
+import io.netty.handler.codec.http.HttpResponseStatus;
+import io.netty.handler.codec.http.HttpUtil;
 import io.netty.util.ReferenceCountUtil;
 import lombok.extern.slf4j.Slf4j;
 import tech.songjian.common.enums.ResponseCode;
@@ -18,6 +22,7 @@ import tech.songjian.core.filter.FilterFactory;
 import tech.songjian.core.filter.GatewayFilterChainFactory;
 import tech.songjian.core.helper.RequestHelper;
 import tech.songjian.core.helper.ResponseHelper;
+import tech.songjian.core.netty.HttpPipeliningHandler;
 import tech.songjian.core.request.HttpRequestWrapper;
 
 /**
@@ -39,7 +44,12 @@ public class NettyCoreProcessor implements NettyProcessor{
         ChannelHandlerContext ctx = httpRequestWrapper.getCtx();
 
         try {
-            GatewayContext gatewayContext = RequestHelper.doContext(request, ctx);
+            GatewayContext gatewayContext = RequestHelper.doContext(request, ctx, httpRequestWrapper.getRouteMatch());
+            gatewayContext.setResponseSequence(httpRequestWrapper.getSequence());
+            if (httpRequestWrapper.getStreamingBody() != null) {
+                // 流式转发，请求体边收边发给后端服务
+                gatewayContext.getRequest().setStreamingBody(httpRequestWrapper.getStreamingBody());
+            }
 
             // 执行过滤器逻辑
             filterFactory.buildFilterChain(gatewayContext).doFilter(gatewayContext);
@@ -47,12 +57,14 @@ public class NettyCoreProcessor implements NettyProcessor{
         } catch (BaseException e) {
             // 自定义异常
             log.error("process error {} {}", e.getCode(), e.getMessage());
+            closeStreamingBody(httpRequestWrapper);
             FullHttpResponse response = ResponseHelper.getHttpResponse(e.getCode());
-            doWriteAndRelease(ctx, request, response);
+            doWriteAndRelease(httpRequestWrapper, response);
         } catch (Throwable t) {
             log.error("process unknown error", t);
+            closeStreamingBody(httpRequestWrapper);
             FullHttpResponse response = ResponseHelper.getHttpResponse(ResponseCode.INTERNAL_ERROR);
-            doWriteAndRelease(ctx, request, response);
+            doWriteAndRelease(httpRequestWrapper, response);
         }
 
     }
@@ -67,17 +79,52 @@ public class NettyCoreProcessor implements NettyProcessor{
 
     }
 
+    /**
+     * 请求没有转发出去，放弃还没有收完的流式请求体
+     * @param httpRequestWrapper
+     */
+    static void closeStreamingBody(HttpRequestWrapper httpRequestWrapper) {
+        if (httpRequestWrapper.getStreamingBody() != null) {
+            httpRequestWrapper.getStreamingBody().close();
+        }
+    }
+
+    /**
+     * 过载时直接返回 503 并释放请求，客户端按 Retry-After 稍后重试
+     * @param httpRequestWrapper
+     * @param retryAfterSeconds
+     */
+    static void writeServiceUnavailable(HttpRequestWrapper httpRequestWrapper, int retryAfterSeconds) {
+        closeStreamingBody(httpRequestWrapper);
+        FullHttpRequest request = httpRequestWrapper.getRequest();
+        boolean keepAlive = HttpUtil.isKeepAlive(request);
+        ReferenceCountUtil.release(request);
+
+        FullHttpResponse fullHttpResponse = ResponseHelper.getHttpResponse(ResponseCode.SERVICE_UNAVAILABLE);
+        fullHttpResponse.setStatus(HttpResponseStatus.SERVICE_UNAVAILABLE);
+        fullHttpResponse.headers().set(HttpHeaderNames.RETRY_AFTER, retryAfterSeconds);
+        Object response = HttpPipeliningHandler.sequenced(httpRequestWrapper.getSequence(), fullHttpResponse);
+        ChannelHandlerContext ctx = httpRequestWrapper.getCtx();
+        if (!keepAlive) {
+            ctx.writeAndFlush(response).addListener(ChannelFutureListener.CLOSE);
+        } else {
+            // 保持连接，过载时再让客户端重新建连只会更糟
+            fullHttpResponse.headers().set(HttpHeaderNames.CONNECTION, HttpHeaderValues.KEEP_ALIVE);
+            ctx.writeAndFlush(response);
+        }
+    }
+
     /**
      * 回写数据并释放资源
-     * @param ctx
-     * @param request
+     * @param httpRequestWrapper
      * @param response
      */
-    private void doWriteAndRelease(ChannelHandlerContext ctx, FullHttpRequest request, FullHttpResponse response) {
-        ctx.writeAndFlush(response)
+    private void doWriteAndRelease(HttpRequestWrapper httpRequestWrapper, FullHttpResponse response) {
+        httpRequestWrapper.getCtx()
+                .writeAndFlush(HttpPipeliningHandler.sequenced(httpRequestWrapper.getSequence(), response))
                 // 添加关闭 channel 的监听者，在释放资源后关闭 channel
                 .addListener(ChannelFutureListener.CLOSE);
-        ReferenceCountUtil.release(request);
+        ReferenceCountUtil.release(httpRequestWrapper.getRequest());
     }
 
 }
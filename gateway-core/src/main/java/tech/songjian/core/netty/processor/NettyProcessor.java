@@ -5,6 +5,7 @@
  */
 package tech.songjian.core.netty.processor;
 
+import tech.songjian.core.Config;
 import tech.songjian.core.request.HttpRequestWrapper;
 
 /**
@@ -31,4 +32,13 @@ public interface NettyProcessor {
      * 销毁
      */
     void shutdown();
+
+    /**
+     * 按配置中心下发的运行时配置调整，不支持调整的处理器忽略
+     * 调整失败时抛出异常，继续使用原来的配置
+     * @param runtimeConfig 只有运行时可以调整的配置项有意义，其余配置仍以启动时的 Config 为准
+     */
+    default void reconfigure(Config runtimeConfig) {
+
+    }
 }
\ No newline at end of file
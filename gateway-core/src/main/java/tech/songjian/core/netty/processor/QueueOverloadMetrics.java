@@ -0,0 +1,71 @@
+/**
+ * @projectName JianGateWay
+ * @package tech.songjian.core.netty.processor
+ * @className tech.songjian.core.netty.processor.QueueOverloadMetrics
+ */
+package tech.songjian.core.netty.processor;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * QueueOverloadMetrics
+ * @description 缓冲队列过载时的统计：被拒绝的请求数、暂停读取的连接数，供监控拉取
+ * @author SongJian
+ * @version
+ */
+public final class QueueOverloadMetrics {
+
+    private static final class SingletonHolder {
+        private static final QueueOverloadMetrics INSTANCE = new QueueOverloadMetrics();
+    }
+
+    private QueueOverloadMetrics() {
+
+    }
+
+    public static QueueOverloadMetrics getInstance() {
+        return SingletonHolder.INSTANCE;
+    }
+
+    private final LongAdder shedRequests = new LongAdder();
+
+    private final LongAdder pauses = new LongAdder();
+
+    private final LongAdder resumes = new LongAdder();
+
+    void recordShed() {
+        shedRequests.increment();
+    }
+
+    void recordPause() {
+        pauses.increment();
+    }
+
+    void recordResume() {
+        resumes.increment();
+    }
+
+    /**
+     * 因队列过载直接返回 503 的请求数
+     * @return
+     */
+    public long getShedRequests() {
+        return shedRequests.sum();
+    }
+
+    /**
+     * 因队列过载暂停读取的次数
+     * @return
+     */
+    public long getPauses() {
+        return pauses.sum();
+    }
+
+    /**
+     * 当前暂停读取的连接数，连接在暂停期间关闭的也按恢复计算
+     * @return
+     */
+    public long getPausedChannels() {
+        return pauses.sum() - resumes.sum();
+    }
+}
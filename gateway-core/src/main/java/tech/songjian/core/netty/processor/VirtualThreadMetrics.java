@@ -0,0 +1,226 @@
+/**
+ * @projectName JianGateWay
+ * @package tech.songjian.core.netty.processor
+ * @className tech.songjian.core.netty.processor.VirtualThreadMetrics
+ */
+package tech.songjian.core.netty.processor;
+
+import io.netty.util.concurrent.DefaultThreadFactory;
+import lombok.extern.slf4j.Slf4j;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadInfo;
+import java.lang.management.ThreadMXBean;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * VirtualThreadMetrics
+ * @description 虚拟线程处理请求的统计：正在处理的请求数、并发数超限被拒绝的请求数、虚拟线程被钉住（pinned）的次数与时长，
+ *              以及承载虚拟线程的 carrier 线程的 CPU 利用率，供监控拉取
+ *              carrier 利用率由后台线程按固定间隔采样，监控拉取时只读取最近一次的结果
+ * @author SongJian
+ * @version
+ */
+@Slf4j
+public final class VirtualThreadMetrics {
+
+    private static final class SingletonHolder {
+        private static final VirtualThreadMetrics INSTANCE = new VirtualThreadMetrics();
+    }
+
+    private VirtualThreadMetrics() {
+
+    }
+
+    public static VirtualThreadMetrics getInstance() {
+        return SingletonHolder.INSTANCE;
+    }
+
+    private final LongAdder started = new LongAdder();
+
+    private final LongAdder finished = new LongAdder();
+
+    private final LongAdder rejected = new LongAdder();
+
+    private final LongAdder pinned = new LongAdder();
+
+    private final LongAdder pinnedNanos = new LongAdder();
+
+    private final ThreadMXBean threadMXBean = ManagementFactory.getThreadMXBean();
+
+    /**
+     * carrier 线程名的前缀，形如 ForkJoinPool-1-worker-，启动采样时识别
+     */
+    private String carrierNamePrefix;
+
+    private ScheduledExecutorService sampler;
+
+    /**
+     * 上一次采样时 carrier 线程的累计 CPU 时间与时刻，只在采样线程上访问
+     */
+    private long lastCarrierCpuNanos = -1;
+
+    private long lastSampleNanos;
+
+    /**
+     * 最近一个采样周期内 carrier 线程的 CPU 利用率
+     */
+    private volatile double carrierUtilization;
+
+    /**
+     * 按固定间隔采样 carrier 线程的 CPU 时间
+     * @param virtualThreadFactory 用来识别 carrier 线程的虚拟线程工厂
+     * @param intervalMillis
+     */
+    synchronized void startSampling(ThreadFactory virtualThreadFactory, long intervalMillis) {
+        if (sampler != null || !threadMXBean.isThreadCpuTimeSupported()) {
+            return;
+        }
+        carrierNamePrefix = carrierNamePrefix(virtualThreadFactory);
+        if (carrierNamePrefix == null) {
+            log.warn("【虚拟线程】无法识别 carrier 线程，不统计 carrier 利用率");
+            return;
+        }
+        sampler = Executors.newSingleThreadScheduledExecutor(new DefaultThreadFactory("virtual-carrier-sampler", true));
+        sampler.scheduleAtFixedRate(this::sample, 0, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    synchronized void stopSampling() {
+        if (sampler != null) {
+            sampler.shutdownNow();
+            sampler = null;
+        }
+    }
+
+    void recordStart() {
+        started.increment();
+    }
+
+    void recordFinish() {
+        finished.increment();
+    }
+
+    void recordReject() {
+        rejected.increment();
+    }
+
+    void recordPinned(long nanos) {
+        pinned.increment();
+        pinnedNanos.add(nanos);
+    }
+
+    /**
+     * 正在虚拟线程上处理的请求数
+     * @return
+     */
+    public long getInFlight() {
+        return started.sum() - finished.sum();
+    }
+
+    /**
+     * 并发数达到上限，直接返回 503 的请求数
+     * @return
+     */
+    public long getRejected() {
+        return rejected.sum();
+    }
+
+    /**
+     * 虚拟线程在 synchronized 块或本地方法中阻塞、占住 carrier 线程的次数，来自 JFR 的 jdk.VirtualThreadPinned 事件
+     * @return
+     */
+    public long getPinned() {
+        return pinned.sum();
+    }
+
+    /**
+     * 虚拟线程被钉住的累计时长
+     * @return
+     */
+    public long getPinnedNanos() {
+        return pinnedNanos.sum();
+    }
+
+    /**
+     * 最近一个采样周期内 carrier 线程的 CPU 利用率，0 ~ 1
+     * 被钉住而阻塞的 carrier 不消耗 CPU，这部分看 pinned 指标
+     * @return
+     */
+    public double getCarrierUtilization() {
+        return carrierUtilization;
+    }
+
+    /**
+     * 按线程名找出 carrier 线程，累加它们的 CPU 时间；只取线程信息，不抓取线程栈
+     */
+    private void sample() {
+        long cpuNanos = 0;
+        for (ThreadInfo info : threadMXBean.getThreadInfo(threadMXBean.getAllThreadIds())) {
+            if (info != null && info.getThreadName().startsWith(carrierNamePrefix)) {
+                long threadCpuNanos = threadMXBean.getThreadCpuTime(info.getThreadId());
+                if (threadCpuNanos > 0) {
+                    cpuNanos += threadCpuNanos;
+                }
+            }
+        }
+        long now = System.nanoTime();
+        // 退出的 carrier 线程不再计入，累计值可能变小，这一次不计算
+        if (lastCarrierCpuNanos >= 0 && now > lastSampleNanos && cpuNanos >= lastCarrierCpuNanos) {
+            double utilization = (double) (cpuNanos - lastCarrierCpuNanos) / ((now - lastSampleNanos) * carrierParallelism());
+            carrierUtilization = Math.min(1, utilization);
+        }
+        lastCarrierCpuNanos = cpuNanos;
+        lastSampleNanos = now;
+    }
+
+    /**
+     * 启动一个虚拟线程，从它挂载时的 toString（形如 VirtualThread[#21]/runnable@ForkJoinPool-1-worker-1）中取出 carrier 线程名的前缀
+     * @param virtualThreadFactory
+     * @return 识别失败时为 null
+     */
+    static String carrierNamePrefix(ThreadFactory virtualThreadFactory) {
+        AtomicReference<String> description = new AtomicReference<>();
+        Thread probe = virtualThreadFactory.newThread(() -> description.set(Thread.currentThread().toString()));
+        probe.start();
+        try {
+            probe.join(TimeUnit.SECONDS.toMillis(1));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        }
+        return parseCarrierNamePrefix(description.get());
+    }
+
+    static String parseCarrierNamePrefix(String virtualThreadDescription) {
+        if (virtualThreadDescription == null) {
+            return null;
+        }
+        int at = virtualThreadDescription.lastIndexOf('@');
+        int dash = virtualThreadDescription.lastIndexOf('-');
+        if (at < 0 || dash <= at) {
+            return null;
+        }
+        return virtualThreadDescription.substring(at + 1, dash + 1);
+    }
+
+    /**
+     * 虚拟线程调度器的并行度，默认等于 CPU 核数
+     * @return
+     */
+    private static int carrierParallelism() {
+        String parallelism = System.getProperty("jdk.virtualThreadScheduler.parallelism");
+        if (parallelism != null) {
+            try {
+                return Math.max(1, Integer.parseInt(parallelism));
+            } catch (NumberFormatException e) {
+                // 使用默认值
+            }
+        }
+        return Runtime.getRuntime().availableProcessors();
+    }
+}
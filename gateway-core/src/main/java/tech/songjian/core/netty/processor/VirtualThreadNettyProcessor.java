@@ -0,0 +1,123 @@
+/**
+ * @projectName JianGateWay
+ * @package tech.songjian.core.netty.processor
+ * @className tech.songjian.core.netty.processor.VirtualThreadNettyProcessor
+ */
+package tech.songjian.core.netty.processor;
+
+import jdk.jfr.consumer.RecordingStream;
+import lombok.extern.slf4j.Slf4j;
+import tech.songjian.core.Config;
+import tech.songjian.core.request.HttpRequestWrapper;
+
+import java.time.Duration;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * VirtualThreadNettyProcessor
+ * @description 每个请求一个虚拟线程执行过滤器链，Redis 限流、Hystrix 等阻塞调用只占用虚拟线程，不需要按并发量配置平台线程池
+ *              同时执行的虚拟线程数由信号量限制，超过上限直接返回 503；只限制过滤器链的执行，
+ *              异步转发出去之后虚拟线程就结束了，等待后端响应的请求不计入
+ *              虚拟线程需要 JDK 21 及以上，通过反射创建，低版本上 isSupported 返回 false
+ * @author SongJian
+ * @version
+ */
+@Slf4j
+public class VirtualThreadNettyProcessor implements NettyProcessor {
+
+    private static final String THREAD_NAME_PREFIX = "gateway-virtual-";
+
+    /**
+     * 虚拟线程在 synchronized 块或本地方法中阻塞时产生的 JFR 事件
+     */
+    private static final String PINNED_EVENT = "jdk.VirtualThreadPinned";
+
+    private static final ThreadFactory VIRTUAL_THREAD_FACTORY = virtualThreadFactory();
+
+    private final Config config;
+
+    private final NettyCoreProcessor nettyCoreProcessor;
+
+    private final Semaphore permits;
+
+    private final VirtualThreadMetrics metrics = VirtualThreadMetrics.getInstance();
+
+    private RecordingStream pinnedEvents;
+
+    public VirtualThreadNettyProcessor(Config config, NettyCoreProcessor nettyCoreProcessor) {
+        if (!isSupported()) {
+            throw new IllegalStateException("virtual threads require JDK 21+, current: " + System.getProperty("java.version"));
+        }
+        this.config = config;
+        this.nettyCoreProcessor = nettyCoreProcessor;
+        this.permits = new Semaphore(Math.max(1, config.getVirtualMaxConcurrency()));
+    }
+
+    /**
+     * 当前 JDK 是否支持虚拟线程
+     * @return
+     */
+    public static boolean isSupported() {
+        return VIRTUAL_THREAD_FACTORY != null;
+    }
+
+    @Override
+    public void process(HttpRequestWrapper httpRequestWrapper) {
+        // 在 EventLoop 上调用，不能等待
+        if (!permits.tryAcquire()) {
+            metrics.recordReject();
+            NettyCoreProcessor.writeServiceUnavailable(httpRequestWrapper, config.getQueueRetryAfterSeconds());
+            return;
+        }
+        metrics.recordStart();
+        VIRTUAL_THREAD_FACTORY.newThread(() -> {
+            try {
+                nettyCoreProcessor.process(httpRequestWrapper);
+            } finally {
+                permits.release();
+                metrics.recordFinish();
+            }
+        }).start();
+    }
+
+    @Override
+    public void start() {
+        try {
+            RecordingStream stream = new RecordingStream();
+            stream.enable(PINNED_EVENT).withThreshold(Duration.ofMillis(config.getVirtualPinnedThresholdMillis()));
+            stream.onEvent(PINNED_EVENT, event -> metrics.recordPinned(event.getDuration().toNanos()));
+            stream.startAsync();
+            this.pinnedEvents = stream;
+        } catch (Exception e) {
+            log.warn("【虚拟线程】JFR 不可用，不统计 pinned 事件", e);
+        }
+        metrics.startSampling(VIRTUAL_THREAD_FACTORY, config.getVirtualCarrierSampleIntervalMillis());
+        log.info("【虚拟线程】最大并发数：{}", config.getVirtualMaxConcurrency());
+    }
+
+    @Override
+    public void shutdown() {
+        metrics.stopSampling();
+        if (pinnedEvents != null) {
+            pinnedEvents.close();
+            pinnedEvents = null;
+        }
+    }
+
+    /**
+     * 通过反射调用 Thread.ofVirtual().name(prefix, 0).factory()，低版本 JDK 上返回 null
+     * @return
+     */
+    private static ThreadFactory virtualThreadFactory() {
+        try {
+            Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            Class<?> builderClass = Class.forName("java.lang.Thread$Builder");
+            builder = builderClass.getMethod("name", String.class, long.class).invoke(builder, THREAD_NAME_PREFIX, 0L);
+            return (ThreadFactory) builderClass.getMethod("factory").invoke(builder);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            // JDK 19、20 上虚拟线程是预览特性，没有开启时同样不可用
+            return null;
+        }
+    }
+}
@@ -0,0 +1,89 @@
+/**
+ * @projectName JianGateWay
+ * @package tech.songjian.core.request
+ * @className tech.songjian.core.request.ByteBufBodyGenerator
+ */
+package tech.songjian.core.request;
+
+import io.netty.buffer.ByteBuf;
+import org.asynchttpclient.request.body.RandomAccessBody;
+import org.asynchttpclient.request.body.generator.BodyGenerator;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * ByteBufBodyGenerator
+ * @description 直接以客户端请求的 ByteBuf 作为转发给后端的请求体，不做任何拷贝
+ *              非 TLS 连接上 AsyncHttpClient 以 FileRegion 的方式发送，请求体的各个分段直接写入 socket；
+ *              TLS 连接上退化为分块读取
+ *              ByteBuf 的引用计数不在这里管理，由 GatewayContext.releaseRequest 在最后一次转发完成后统一释放，
+ *              重试时可以重复创建请求体
+ * @author SongJian
+ * @version
+ */
+public class ByteBufBodyGenerator implements BodyGenerator {
+
+    private final ByteBuf content;
+
+    public ByteBufBodyGenerator(ByteBuf content) {
+        this.content = content;
+    }
+
+    /**
+     * 请求体内容，引用计数不变
+     * @return
+     */
+    public ByteBuf getContent() {
+        return content;
+    }
+
+    @Override
+    public RandomAccessBody createBody() {
+        // duplicate 共享内存，只是读索引独立
+        return new ByteBufBody(content.duplicate());
+    }
+
+    private static final class ByteBufBody implements RandomAccessBody {
+
+        private final ByteBuf buf;
+
+        private final long contentLength;
+
+        private ByteBufBody(ByteBuf buf) {
+            this.buf = buf;
+            this.contentLength = buf.readableBytes();
+        }
+
+        @Override
+        public long getContentLength() {
+            return contentLength;
+        }
+
+        @Override
+        public BodyState transferTo(ByteBuf target) {
+            int length = Math.min(target.writableBytes(), buf.readableBytes());
+            target.writeBytes(buf, length);
+            return buf.isReadable() ? BodyState.CONTINUE : BodyState.STOP;
+        }
+
+        @Override
+        public long transferTo(WritableByteChannel target) throws IOException {
+            long written = 0;
+            for (ByteBuffer nioBuffer : buf.nioBuffers()) {
+                written += target.write(nioBuffer);
+                if (nioBuffer.hasRemaining()) {
+                    // socket 写满了，剩下的等下次可写时再发
+                    break;
+                }
+            }
+            buf.skipBytes((int) written);
+            return written;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
@@ -20,7 +20,6 @@ import org.asynchttpclient.RequestBuilder;
 import tech.songjian.common.constants.BasicConst;
 import tech.songjian.common.utils.TimeUtil;
 
-import java.nio.ByteBuffer;
 import java.nio.charset.Charset;
 import java.util.*;
 
@@ -127,6 +126,12 @@ public class GatewayRequest implements IGatewayRequest{
      */
     private Map<String, List<String>> postParameters;
 
+    /**
+     * 流式转发的请求体，非流式请求为 null
+     */
+    @Getter
+    private StreamingBodyGenerator streamingBody;
+
 
     /************************************** 可修改的请求变量 ***************************************/
 
@@ -179,9 +184,9 @@ public class GatewayRequest implements IGatewayRequest{
 
         // 从完成的 HTTP 请求体中获取内容
         ByteBuf contentBuffer = fullHttpRequest.content();
-        if(Objects.nonNull(contentBuffer)){
-            // 传递给下游服务
-            this.requestBuilder.setBody(contentBuffer.nioBuffer());
+        if(Objects.nonNull(contentBuffer) && contentBuffer.isReadable()){
+            // 传递给下游服务，直接使用聚合好的 ByteBuf，不再合并成一整块 ByteBuffer
+            this.requestBuilder.setBody(new ByteBufBodyGenerator(contentBuffer));
         }
     }
 
@@ -270,6 +275,15 @@ public class GatewayRequest implements IGatewayRequest{
 
 
 
+    /**
+     * 流式转发：请求体不再取自聚合好的 FullHttpRequest，而是边收边发给后端服务
+     * @param streamingBody
+     */
+    public void setStreamingBody(StreamingBodyGenerator streamingBody) {
+        this.streamingBody = streamingBody;
+        this.requestBuilder.setBody(streamingBody);
+    }
+
     @Override
     public void setModifyHost(String host) {
         this.modifyHost = host;
@@ -20,5 +20,17 @@ import lombok.Data;
 public class HttpRequestWrapper {
     private FullHttpRequest request;
     private ChannelHandlerContext ctx;
+    /**
+     * 流式转发时的请求体，此时 request 只有请求行与请求头
+     */
+    private StreamingBodyGenerator streamingBody;
+    /**
+     * 请求在 HTTP/1.1 连接上的编号，响应按编号顺序写出，-1 表示不需要排序
+     */
+    private int sequence = -1;
+    /**
+     * 收到请求头时匹配出的规则，只有流式转发的请求有
+     */
+    private RouteMatch routeMatch;
 }
 
@@ -0,0 +1,36 @@
+/**
+ * @projectName JianGateWay
+ * @package tech.songjian.core.request
+ * @className tech.songjian.core.request.RouteMatch
+ */
+package tech.songjian.core.request;
+
+import tech.songjian.common.config.ConfigSnapshot;
+import tech.songjian.common.config.Rule;
+
+/**
+ * RouteMatch
+ * @description 收到请求头时匹配出的规则，连同匹配时使用的配置快照一起带到构建上下文时使用，
+ *              中途快照切换也不会把流式转发的请求当成普通请求处理
+ * @author SongJian
+ * @version
+ */
+public final class RouteMatch {
+
+    private final ConfigSnapshot snapshot;
+
+    private final Rule rule;
+
+    public RouteMatch(ConfigSnapshot snapshot, Rule rule) {
+        this.snapshot = snapshot;
+        this.rule = rule;
+    }
+
+    public ConfigSnapshot getSnapshot() {
+        return snapshot;
+    }
+
+    public Rule getRule() {
+        return rule;
+    }
+}
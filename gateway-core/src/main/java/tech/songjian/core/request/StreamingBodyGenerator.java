@@ -0,0 +1,211 @@
+/**
+ * @projectName JianGateWay
+ * @package tech.songjian.core.request
+ * @className tech.songjian.core.request.StreamingBodyGenerator
+ */
+package tech.songjian.core.request;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.Channel;
+import tech.songjian.core.netty.ChannelReadSuspender;
+import org.asynchttpclient.request.body.Body;
+import org.asynchttpclient.request.body.generator.FeedListener;
+import org.asynchttpclient.request.body.generator.FeedableBodyGenerator;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * StreamingBodyGenerator
+ * @description 流式转发的请求体：客户端连接上收到的 HttpContent 投递进来，转发到后端服务的连接上时取走
+ *              尚未取走的字节数超过高水位时暂停读取客户端连接，回落到低水位以下再恢复，
+ *              网关为单个请求缓存的请求体不会超过高水位
+ *              投递在客户端连接的 EventLoop 上执行，取走在后端连接的 EventLoop 上执行
+ * @author SongJian
+ * @version
+ */
+public class StreamingBodyGenerator implements FeedableBodyGenerator {
+
+    /**
+     * 客户端连接
+     */
+    private final Channel inbound;
+
+    /**
+     * 请求体长度，chunked 请求为 -1
+     */
+    private final long contentLength;
+
+    private final int highWaterMark;
+
+    private final int lowWaterMark;
+
+    private final Queue<ByteBuf> queue = new ConcurrentLinkedQueue<>();
+
+    /**
+     * 已投递、尚未发给后端的字节数
+     */
+    private final AtomicLong pendingBytes = new AtomicLong();
+
+    /**
+     * 最后一块请求体是否已经投递
+     */
+    private volatile boolean last;
+
+    private volatile boolean closed;
+
+    private volatile FeedListener listener;
+
+    /**
+     * 是否因为本请求体暂停了客户端连接的读取
+     */
+    private final AtomicBoolean inboundSuspended = new AtomicBoolean();
+
+    public StreamingBodyGenerator(Channel inbound, long contentLength, int highWaterMark, int lowWaterMark) {
+        this.inbound = inbound;
+        this.contentLength = contentLength;
+        this.highWaterMark = highWaterMark;
+        this.lowWaterMark = lowWaterMark;
+    }
+
+    /**
+     * 投递一块请求体，content 的引用计数由本对象负责释放
+     * @param content
+     * @param isLast
+     */
+    public void feed(ByteBuf content, boolean isLast) {
+        if (closed) {
+            content.release();
+            return;
+        }
+        int readable = content.readableBytes();
+        if (readable > 0) {
+            queue.offer(content);
+            if (pendingBytes.addAndGet(readable) > highWaterMark && inboundSuspended.compareAndSet(false, true)) {
+                ChannelReadSuspender.suspend(inbound, ChannelReadSuspender.Reason.STREAMING_BODY);
+            }
+        } else {
+            content.release();
+        }
+        if (isLast) {
+            last = true;
+        }
+        if (closed) {
+            // 投递过程中被关闭，丢弃刚放进去的数据
+            drain();
+        }
+        FeedListener feedListener = listener;
+        if (feedListener != null) {
+            feedListener.onContentAdded();
+        }
+    }
+
+    @Override
+    public boolean feed(ByteBuffer buffer, boolean isLast) {
+        feed(Unpooled.wrappedBuffer(buffer), isLast);
+        return true;
+    }
+
+    @Override
+    public void setListener(FeedListener listener) {
+        this.listener = listener;
+    }
+
+    @Override
+    public Body createBody() {
+        return new StreamingBody();
+    }
+
+    /**
+     * 放弃剩余的请求体：释放已缓存的数据，之后投递进来的数据直接丢弃，并恢复读取客户端
+     * 可以重复调用
+     */
+    public void close() {
+        closed = true;
+        drain();
+        resumeInbound();
+        // 唤醒可能挂起的发送方，让它发现请求体已被放弃
+        FeedListener feedListener = listener;
+        if (feedListener != null) {
+            feedListener.onContentAdded();
+        }
+    }
+
+    private void drain() {
+        ByteBuf buf;
+        while ((buf = queue.poll()) != null) {
+            pendingBytes.addAndGet(-buf.readableBytes());
+            buf.release();
+        }
+    }
+
+    private void resumeInbound() {
+        if (inboundSuspended.compareAndSet(true, false)) {
+            ChannelReadSuspender.resume(inbound, ChannelReadSuspender.Reason.STREAMING_BODY);
+        }
+    }
+
+    /**
+     * 后端连接上的 ChunkedWriteHandler 通过它分块读取请求体
+     */
+    private final class StreamingBody implements Body {
+
+        /**
+         * 正在发送、还没有发完的一块，只在后端连接的 EventLoop 上访问
+         */
+        private ByteBuf current;
+
+        @Override
+        public long getContentLength() {
+            return contentLength;
+        }
+
+        @Override
+        public BodyState transferTo(ByteBuf target) throws IOException {
+            if (closed) {
+                // 请求体已被放弃，让后端连接上的这次写失败，不能发出不完整的请求体
+                throw new IOException("streaming request body aborted");
+            }
+            // 先读 last，再读队列：读到 last 时最后一块一定已经在队列里
+            boolean done = last;
+            int written = 0;
+            while (target.isWritable()) {
+                if (current == null) {
+                    current = queue.poll();
+                    if (current == null) {
+                        break;
+                    }
+                }
+                int length = Math.min(target.writableBytes(), current.readableBytes());
+                target.writeBytes(current, length);
+                written += length;
+                if (!current.isReadable()) {
+                    current.release();
+                    current = null;
+                }
+            }
+            if (written > 0 && pendingBytes.addAndGet(-written) < lowWaterMark) {
+                resumeInbound();
+            }
+            if (done && current == null && queue.isEmpty()) {
+                return BodyState.STOP;
+            }
+            // 返回 SUSPEND 时 target 会被丢弃，只有一个字节都没写时才能挂起，等下一次投递再唤醒
+            return written > 0 ? BodyState.CONTINUE : BodyState.SUSPEND;
+        }
+
+        @Override
+        public void close() {
+            if (current != null) {
+                current.release();
+                current = null;
+            }
+            StreamingBodyGenerator.this.close();
+        }
+    }
+}
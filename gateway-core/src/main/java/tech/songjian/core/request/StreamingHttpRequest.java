@@ -0,0 +1,31 @@
+/**
+ * @projectName JianGateWay
+ * @package tech.songjian.core.request
+ * @className tech.songjian.core.request.StreamingHttpRequest
+ */
+package tech.songjian.core.request;
+
+import io.netty.handler.codec.http.DefaultHttpRequest;
+import io.netty.handler.codec.http.HttpRequest;
+
+/**
+ * StreamingHttpRequest
+ * @description 流式转发请求的请求头，由 GatewayHttpObjectAggregator 生成，携带收到请求头时匹配出的规则
+ *              与原请求共用请求头
+ * @author SongJian
+ * @version
+ */
+public class StreamingHttpRequest extends DefaultHttpRequest {
+
+    private final RouteMatch routeMatch;
+
+    public StreamingHttpRequest(HttpRequest head, RouteMatch routeMatch) {
+        super(head.protocolVersion(), head.method(), head.uri(), head.headers());
+        setDecoderResult(head.decoderResult());
+        this.routeMatch = routeMatch;
+    }
+
+    public RouteMatch getRouteMatch() {
+        return routeMatch;
+    }
+}
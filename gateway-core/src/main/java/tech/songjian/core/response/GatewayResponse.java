@@ -6,10 +6,10 @@
 package tech.songjian.core.response;
 
 import com.fasterxml.jackson.databind.node.ObjectNode;
+import io.netty.buffer.ByteBuf;
 import io.netty.handler.codec.http.*;
 import lombok.Data;
 
-import org.asynchttpclient.Response;
 import tech.songjian.common.enums.ResponseCode;
 import tech.songjian.common.utils.JSONUtil;
 
@@ -38,9 +38,9 @@ public class GatewayResponse {
     private String content;
 
     /**
-     * 异步返回对象
+     * 后端服务的响应体，直接引用接收时的池化 ByteBuf，写回客户端后由 netty 释放
      */
-    private Response futureResponse;
+    private ByteBuf body;
 
     /**
      * 响应返回码
@@ -61,18 +61,6 @@ public class GatewayResponse {
         responseHeaders.add(key, val);
     }
 
-    /**
-     * 构建异步响应对象
-     * @param futureResponse
-     * @return
-     */
-    public static GatewayResponse buildGatewayResponse(Response futureResponse){
-        GatewayResponse response = new GatewayResponse();
-        response.setFutureResponse(futureResponse);
-        response.setHttpResponseStatus(HttpResponseStatus.valueOf(futureResponse.getStatusCode()));
-        return response;
-    }
-
     /**
      * 处理返回json对象，失败时调用
      * @param code
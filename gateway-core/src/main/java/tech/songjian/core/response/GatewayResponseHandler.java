@@ -0,0 +1,91 @@
+/**
+ * @projectName JianGateWay
+ * @package tech.songjian.core.response
+ * @className tech.songjian.core.response.GatewayResponseHandler
+ */
+package tech.songjian.core.response;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.CompositeByteBuf;
+import io.netty.buffer.PooledByteBufAllocator;
+import io.netty.buffer.Unpooled;
+import org.asynchttpclient.AsyncHandler;
+import org.asynchttpclient.HttpResponseBodyPart;
+import org.asynchttpclient.HttpResponseHeaders;
+import org.asynchttpclient.HttpResponseStatus;
+import org.asynchttpclient.netty.LazyResponseBodyPart;
+
+/**
+ * GatewayResponseHandler
+ * @description 聚合后端服务的响应：响应体分段直接引用连接上收到的池化 ByteBuf，组合成一个 CompositeByteBuf，
+ *              不拷贝成 byte[]，最终原样写回客户端，由 netty 在写出后释放
+ *              失败时释放已经收到的分段
+ * @author SongJian
+ * @version
+ */
+public class GatewayResponseHandler implements AsyncHandler<GatewayResponse> {
+
+    private final GatewayResponse response = new GatewayResponse();
+
+    private CompositeByteBuf body;
+
+    /**
+     * 超时由 AsyncHttpClient 的定时器线程回调 onThrowable，可能与连接上的回调并发，用锁保证 body 只被释放一次
+     */
+    private boolean done;
+
+    @Override
+    public State onStatusReceived(HttpResponseStatus responseStatus) {
+        response.setHttpResponseStatus(io.netty.handler.codec.http.HttpResponseStatus.valueOf(responseStatus.getStatusCode()));
+        return State.CONTINUE;
+    }
+
+    @Override
+    public State onHeadersReceived(HttpResponseHeaders headers) {
+        if (!headers.isTrailling()) {
+            response.getResponseHeaders().add(headers.getHeaders());
+        }
+        return State.CONTINUE;
+    }
+
+    @Override
+    public synchronized State onBodyPartReceived(HttpResponseBodyPart bodyPart) {
+        if (done) {
+            return State.ABORT;
+        }
+        if (body == null) {
+            body = PooledByteBufAllocator.DEFAULT.compositeBuffer(Integer.MAX_VALUE);
+        }
+        body.addComponent(true, retainedContent(bodyPart));
+        return State.CONTINUE;
+    }
+
+    @Override
+    public synchronized void onThrowable(Throwable t) {
+        done = true;
+        if (body != null) {
+            body.release();
+            body = null;
+        }
+    }
+
+    @Override
+    public synchronized GatewayResponse onCompleted() {
+        done = true;
+        response.setBody(body == null ? Unpooled.EMPTY_BUFFER : body);
+        body = null;
+        return response;
+    }
+
+    /**
+     * 取出响应体分段的内容并增加引用计数：AsyncHttpClient 在回调返回后就会释放分段的 ByteBuf
+     * @param bodyPart
+     * @return
+     */
+    public static ByteBuf retainedContent(HttpResponseBodyPart bodyPart) {
+        if (bodyPart instanceof LazyResponseBodyPart) {
+            return ((LazyResponseBodyPart) bodyPart).getBuf().retain();
+        }
+        return Unpooled.wrappedBuffer(bodyPart.getBodyByteBuffer());
+    }
+}
@@ -0,0 +1,227 @@
+/**
+ * @projectName JianGateWay
+ * @package tech.songjian.core
+ * @className tech.songjian.core.ProcessorBenchmark
+ */
+package tech.songjian.core;
+
+import io.netty.bootstrap.Bootstrap;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.*;
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.socket.nio.NioSocketChannel;
+import io.netty.handler.codec.http.*;
+import io.netty.util.ReferenceCountUtil;
+import tech.songjian.core.netty.HttpPipeliningHandler;
+import tech.songjian.core.netty.NettyHttpServer;
+import tech.songjian.core.netty.processor.DisruptorNettyCoreProcessor;
+import tech.songjian.core.netty.processor.NettyCoreProcessor;
+import tech.songjian.core.netty.processor.NettyProcessor;
+import tech.songjian.core.request.HttpRequestWrapper;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static tech.songjian.common.constants.GatewayConst.BUFFER_TYPE_EVENT_LOOP;
+import static tech.songjian.common.constants.GatewayConst.BUFFER_TYPE_PARALLEL;
+import static tech.songjian.common.constants.GatewayConst.BUFFER_TYPE_SHARDED;
+
+/**
+ * ProcessorBenchmark
+ * @description 请求分发方式的压测：parallel（disruptor 工作线程池）、sharded（每个 worker 一个单生产者 disruptor）
+ *              与 eventloop（在连接所在的 EventLoop 上处理）
+ *              处理器不走过滤器链，只模拟少量 CPU 计算后直接写回响应，测的是分发本身的开销
+ *              每个连接上同一时间只有一个请求，收到响应后马上发下一个，统计吞吐量与延迟分位数
+ *              不是单元测试，手动运行：
+ *              mvn -pl gateway-core test-compile exec:java -Dexec.classpathScope=test
+ *                  -Dexec.mainClass=tech.songjian.core.ProcessorBenchmark -Dexec.args="64 10 2000"
+ *              参数依次为连接数、每种方式的压测秒数、每个请求的模拟计算量
+ * @author SongJian
+ * @version
+ */
+public class ProcessorBenchmark {
+
+    private static final int PORT = 18990;
+
+    private static final byte[] BODY = "pong".getBytes(StandardCharsets.UTF_8);
+
+    public static void main(String[] args) throws Exception {
+        int connections = args.length > 0 ? Integer.parseInt(args[0]) : 64;
+        int seconds = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+        int work = args.length > 2 ? Integer.parseInt(args[2]) : 2000;
+        for (String bufferType : new String[] {BUFFER_TYPE_PARALLEL, BUFFER_TYPE_SHARDED, BUFFER_TYPE_EVENT_LOOP}) {
+            run(bufferType, connections, seconds, work);
+        }
+        System.exit(0);
+    }
+
+    private static void run(String bufferType, int connections, int seconds, int work) throws Exception {
+        // 过滤器初始化时会读取全局配置
+        Config config = ConfigLoader.getInstance().load(new String[0]);
+        config.setPort(PORT);
+        config.setBufferType(bufferType);
+        NettyCoreProcessor echo = new EchoProcessor(work);
+        NettyProcessor processor = BUFFER_TYPE_EVENT_LOOP.equals(bufferType)
+                ? echo : new DisruptorNettyCoreProcessor(config, echo);
+        processor.start();
+        NettyHttpServer server = new NettyHttpServer(config, processor);
+        server.start();
+
+        NioEventLoopGroup clientGroup = new NioEventLoopGroup(Math.max(1, config.getEventLoopGroupWorkerNum() / 2));
+        Recorder recorder = new Recorder(connections);
+        Bootstrap bootstrap = new Bootstrap().group(clientGroup).channel(NioSocketChannel.class)
+                .option(ChannelOption.TCP_NODELAY, true);
+        Channel[] channels = new Channel[connections];
+        for (int i = 0; i < connections; i++) {
+            final int index = i;
+            channels[i] = bootstrap.handler(new ChannelInitializer<Channel>() {
+                @Override
+                protected void initChannel(Channel channel) {
+                    channel.pipeline().addLast(new HttpClientCodec(), new HttpObjectAggregator(1024),
+                            new LoadHandler(recorder, index));
+                }
+            }).connect("127.0.0.1", PORT).sync().channel();
+        }
+        for (Channel channel : channels) {
+            channel.pipeline().get(LoadHandler.class).send(channel);
+        }
+        // 预热
+        TimeUnit.SECONDS.sleep(Math.min(3, seconds));
+        recorder.start();
+        TimeUnit.SECONDS.sleep(seconds);
+        recorder.stop();
+        recorder.print(bufferType, seconds);
+
+        for (Channel channel : channels) {
+            channel.close().sync();
+        }
+        clientGroup.shutdownGracefully().sync();
+        server.shutdown();
+        processor.shutdown();
+        TimeUnit.SECONDS.sleep(1);
+    }
+
+    /**
+     * 模拟过滤器链的少量计算，然后直接写回响应
+     */
+    private static final class EchoProcessor extends NettyCoreProcessor {
+
+        private final int work;
+
+        private volatile long sink;
+
+        private EchoProcessor(int work) {
+            this.work = work;
+        }
+
+        @Override
+        public void process(HttpRequestWrapper httpRequestWrapper) {
+            FullHttpRequest request = httpRequestWrapper.getRequest();
+            long hash = request.uri().hashCode();
+            for (int i = 0; i < work; i++) {
+                hash = hash * 31 + i;
+            }
+            sink = hash;
+            ReferenceCountUtil.release(request);
+            FullHttpResponse response = new DefaultFullHttpResponse(HttpVersion.HTTP_1_1, HttpResponseStatus.OK,
+                    Unpooled.wrappedBuffer(BODY));
+            response.headers().setInt(HttpHeaderNames.CONTENT_LENGTH, BODY.length);
+            httpRequestWrapper.getCtx().writeAndFlush(
+                    HttpPipeliningHandler.sequenced(httpRequestWrapper.getSequence(), response));
+        }
+    }
+
+    /**
+     * 每个连接一个，收到响应就记录延迟并发下一个请求
+     */
+    private static final class LoadHandler extends SimpleChannelInboundHandler<FullHttpResponse> {
+
+        private final Recorder recorder;
+
+        private final int index;
+
+        private long sentNanos;
+
+        private LoadHandler(Recorder recorder, int index) {
+            this.recorder = recorder;
+            this.index = index;
+        }
+
+        private void send(Channel channel) {
+            channel.eventLoop().execute(() -> {
+                sentNanos = System.nanoTime();
+                FullHttpRequest request = new DefaultFullHttpRequest(HttpVersion.HTTP_1_1, HttpMethod.GET, "/ping");
+                request.headers().set(HttpHeaderNames.HOST, "127.0.0.1");
+                channel.writeAndFlush(request);
+            });
+        }
+
+        @Override
+        protected void channelRead0(ChannelHandlerContext ctx, FullHttpResponse msg) {
+            recorder.record(index, System.nanoTime() - sentNanos);
+            send(ctx.channel());
+        }
+    }
+
+    /**
+     * 每个连接单独记录延迟，避免压测端自己产生竞争
+     */
+    private static final class Recorder {
+
+        private final long[][] samples;
+
+        private final int[] counts;
+
+        private final AtomicBoolean recording = new AtomicBoolean();
+
+        private Recorder(int connections) {
+            this.samples = new long[connections][1 << 16];
+            this.counts = new int[connections];
+        }
+
+        private void start() {
+            recording.set(true);
+        }
+
+        private void stop() {
+            recording.set(false);
+        }
+
+        private void record(int index, long nanos) {
+            if (!recording.get()) {
+                return;
+            }
+            int count = counts[index];
+            if (count == samples[index].length) {
+                samples[index] = Arrays.copyOf(samples[index], count * 2);
+            }
+            samples[index][count] = nanos;
+            counts[index] = count + 1;
+        }
+
+        private void print(String bufferType, int seconds) {
+            int total = 0;
+            for (int count : counts) {
+                total += count;
+            }
+            long[] all = new long[total];
+            int offset = 0;
+            for (int i = 0; i < samples.length; i++) {
+                System.arraycopy(samples[i], 0, all, offset, counts[i]);
+                offset += counts[i];
+            }
+            Arrays.sort(all);
+            System.out.printf("%-10s qps=%-9d p50=%-8s p99=%-8s p999=%s%n", bufferType, total / seconds,
+                    micros(all, 0.5), micros(all, 0.99), micros(all, 0.999));
+        }
+
+        private static String micros(long[] sorted, double quantile) {
+            if (sorted.length == 0) {
+                return "-";
+            }
+            return (sorted[(int) Math.min(sorted.length - 1, sorted.length * quantile)] / 1000) + "us";
+        }
+    }
+}
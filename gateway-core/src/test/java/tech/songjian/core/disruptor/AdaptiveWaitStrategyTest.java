@@ -0,0 +1,51 @@
+package tech.songjian.core.disruptor;
+
+import com.lmax.disruptor.BatchEventProcessor;
+import com.lmax.disruptor.RingBuffer;
+import com.lmax.disruptor.Sequence;
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Created by IntelliJ IDEA.
+ * tech.songjian.core.disruptor
+ *
+ * @Describe: 自适应等待策略在单生产者队列上的唤醒测试：每发布一个事件都等消费者处理完，
+ *            消费者每次都会进入阻塞，漏掉一次唤醒就会等待超时
+ */
+public class AdaptiveWaitStrategyTest {
+
+    private static final int EVENTS = 20000;
+
+    @Test
+    public void singleProducerNeverLosesWakeup() throws Exception {
+        // 不自旋、不 yield，每次等待都走阻塞
+        RingBuffer<long[]> ringBuffer = RingBuffer.createSingleProducer(() -> new long[1], 1024,
+                new AdaptiveWaitStrategy(0, 0));
+        BatchEventProcessor<long[]> processor = new BatchEventProcessor<>(ringBuffer, ringBuffer.newBarrier(),
+                (event, sequence, endOfBatch) -> { });
+        ringBuffer.addGatingSequences(processor.getSequence());
+        Thread consumer = new Thread(processor, "adaptive-wait-consumer");
+        consumer.start();
+        try {
+            Sequence consumed = processor.getSequence();
+            for (int i = 0; i < EVENTS; i++) {
+                long sequence = ringBuffer.next();
+                ringBuffer.get(sequence)[0] = i;
+                ringBuffer.publish(sequence);
+                long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+                while (consumed.get() < sequence) {
+                    assertTrue("lost wakeup at event " + i, System.nanoTime() < deadline);
+                    LockSupport.parkNanos(1000);
+                }
+            }
+        } finally {
+            processor.halt();
+            consumer.join(TimeUnit.SECONDS.toMillis(5));
+        }
+    }
+}
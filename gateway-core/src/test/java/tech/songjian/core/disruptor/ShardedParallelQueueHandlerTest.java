@@ -0,0 +1,97 @@
+package tech.songjian.core.disruptor;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Created by IntelliJ IDEA.
+ * tech.songjian.core.disruptor
+ *
+ * @Describe: 分片队列测试：每个生产者线程投递的事件按投递顺序、在同一个消费者线程上处理；
+ *            生产者线程数超过分片数时，多出来的生产者投递的事件按异常处理
+ */
+public class ShardedParallelQueueHandlerTest {
+
+    private static final int PRODUCERS = 4;
+
+    private static final int EVENTS_PER_PRODUCER = 20000;
+
+    @Test
+    public void keepsPerProducerOrder() throws Exception {
+        // 每个生产者上一次处理的序号，以及处理它的消费者线程
+        long[] lastSequence = new long[PRODUCERS];
+        Arrays.fill(lastSequence, -1);
+        Map<Integer, String> consumerThreads = new ConcurrentHashMap<>();
+        AtomicInteger outOfOrder = new AtomicInteger();
+        AtomicInteger wrongThread = new AtomicInteger();
+        AtomicInteger rejected = new AtomicInteger();
+        CountDownLatch consumed = new CountDownLatch(PRODUCERS * EVENTS_PER_PRODUCER);
+
+        ShardedParallelQueueHandler<long[]> queue = new ShardedParallelQueueHandler.Builder<long[]>()
+                .setShards(PRODUCERS)
+                .setBufferSize(1024)
+                .setNamePrefix("sharded-test-")
+                .setListener(new EventListener<long[]>() {
+                    @Override
+                    public void onEvent(long[] event) {
+                        int producer = (int) event[0];
+                        // 同一个生产者的事件只在一个消费者线程上处理，lastSequence[producer] 不会被并发访问
+                        String thread = consumerThreads.computeIfAbsent(producer, p -> Thread.currentThread().getName());
+                        if (!thread.equals(Thread.currentThread().getName())) {
+                            wrongThread.incrementAndGet();
+                        }
+                        if (event[1] != lastSequence[producer] + 1) {
+                            outOfOrder.incrementAndGet();
+                        }
+                        lastSequence[producer] = event[1];
+                        consumed.countDown();
+                    }
+
+                    @Override
+                    public void onException(Throwable ex, long sequence, long[] event) {
+                        rejected.incrementAndGet();
+                    }
+                })
+                .build();
+        queue.start();
+        try {
+            Thread[] producers = new Thread[PRODUCERS];
+            for (int p = 0; p < PRODUCERS; p++) {
+                int producer = p;
+                producers[p] = new Thread(() -> {
+                    for (int i = 0; i < EVENTS_PER_PRODUCER; i++) {
+                        queue.add(new long[] {producer, i});
+                    }
+                }, "sharded-test-producer-" + p);
+                producers[p].start();
+            }
+            for (Thread producer : producers) {
+                producer.join();
+            }
+            assertTrue("events not consumed in time", consumed.await(10, TimeUnit.SECONDS));
+            assertEquals(0, outOfOrder.get());
+            for (long last : lastSequence) {
+                assertEquals(EVENTS_PER_PRODUCER - 1, last);
+            }
+            assertEquals(0, wrongThread.get());
+            assertEquals(PRODUCERS, consumerThreads.values().stream().distinct().count());
+
+            // 分片已经被认领完，新的生产者线程没有分片可用
+            Thread extra = new Thread(() -> queue.add(new long[] {PRODUCERS, 0}), "sharded-test-producer-extra");
+            extra.start();
+            extra.join();
+            assertEquals(1, rejected.get());
+        } finally {
+            queue.shutDown();
+        }
+    }
+}
@@ -0,0 +1,149 @@
+package tech.songjian.core.filter;
+
+import io.netty.channel.ChannelDuplexHandler;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelPromise;
+import io.netty.channel.DefaultEventLoop;
+import io.netty.channel.EventLoop;
+import io.netty.channel.local.LocalChannel;
+import io.netty.handler.codec.http.DefaultFullHttpRequest;
+import io.netty.handler.codec.http.DefaultHttpHeaders;
+import io.netty.handler.codec.http.FullHttpResponse;
+import io.netty.handler.codec.http.HttpMethod;
+import io.netty.handler.codec.http.HttpVersion;
+import io.netty.util.ReferenceCountUtil;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import tech.songjian.common.config.Rule;
+import tech.songjian.common.enums.ResponseCode;
+import tech.songjian.common.exception.ResponseException;
+import tech.songjian.core.context.GatewayContext;
+import tech.songjian.core.request.GatewayRequest;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Created by IntelliJ IDEA.
+ * tech.songjian.core.filter
+ *
+ * @Describe: 异步过滤器挂起后回到连接所在的 EventLoop 继续执行、异步失败时写回错误响应测试
+ */
+public class GatewayFilterChainTest {
+
+    private EventLoop eventLoop;
+
+    private LocalChannel channel;
+
+    /**
+     * 代替网络写出，记录写回的响应
+     */
+    private final BlockingQueue<Object> written = new LinkedBlockingQueue<>();
+
+    @Before
+    public void setUp() throws Exception {
+        eventLoop = new DefaultEventLoop();
+        channel = new LocalChannel();
+        channel.pipeline().addLast(new ChannelDuplexHandler() {
+            @Override
+            public void write(ChannelHandlerContext ctx, Object msg, ChannelPromise promise) {
+                written.add(msg);
+                promise.setSuccess();
+            }
+        });
+        channel.pipeline().addLast(new ChannelDuplexHandler());
+        eventLoop.register(channel).sync();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        Object msg;
+        while ((msg = written.poll()) != null) {
+            ReferenceCountUtil.release(msg);
+        }
+        eventLoop.shutdownGracefully(0, 1, TimeUnit.SECONDS).sync();
+    }
+
+    private GatewayContext context() {
+        Rule rule = new Rule("ping", "ping", "http", 1, "backend-http-server", null,
+                Arrays.asList("/ping"), new HashSet<>());
+        GatewayRequest request = new GatewayRequest("ping", StandardCharsets.UTF_8, "127.0.0.1", "localhost",
+                "/ping", HttpMethod.GET, null, new DefaultHttpHeaders(),
+                new DefaultFullHttpRequest(HttpVersion.HTTP_1_1, HttpMethod.GET, "/ping"));
+        return new GatewayContext.Builder()
+                .setProtocol("http")
+                .setNettyCtx(channel.pipeline().lastContext())
+                .setRequest(request)
+                .setRule(rule)
+                .setKeepAlive(true)
+                .build();
+    }
+
+    /**
+     * 在 EventLoop 上执行过滤器链，与 NettyCoreProcessor 相同
+     */
+    private void doFilter(GatewayFilterChain chain, GatewayContext ctx) throws Exception {
+        eventLoop.submit(() -> chain.doFilter(ctx)).sync();
+    }
+
+    private static AsyncFilter deferred(CompletableFuture<Void> future) {
+        return new AsyncFilter() {
+            @Override
+            public CompletionStage<Void> doFilterAsync(GatewayContext ctx) {
+                return future;
+            }
+        };
+    }
+
+    @Test
+    public void resumesOnEventLoop() throws Exception {
+        CompletableFuture<Void> future = new CompletableFuture<>();
+        CountDownLatch resumed = new CountDownLatch(1);
+        boolean[] inEventLoop = new boolean[1];
+        Filter next = ctx -> {
+            inEventLoop[0] = eventLoop.inEventLoop();
+            resumed.countDown();
+        };
+        doFilter(new GatewayFilterChain(Arrays.asList(deferred(future), next)), context());
+        // 异步结果未完成，后续过滤器挂起
+        assertEquals(1, resumed.getCount());
+
+        // 在其他线程上完成，后续过滤器回到 EventLoop 执行
+        future.complete(null);
+        assertTrue(resumed.await(1, TimeUnit.SECONDS));
+        assertTrue(inEventLoop[0]);
+    }
+
+    @Test
+    public void failureWritesErrorResponse() throws Exception {
+        CompletableFuture<Void> future = new CompletableFuture<>();
+        boolean[] invoked = new boolean[1];
+        Filter next = ctx -> invoked[0] = true;
+        GatewayContext ctx = context();
+        doFilter(new GatewayFilterChain(Arrays.asList(deferred(future), next)), ctx);
+
+        future.completeExceptionally(new ResponseException(ResponseCode.SERVICE_UNAVAILABLE));
+        Object msg = written.poll(1, TimeUnit.SECONDS);
+        assertNotNull(msg);
+        // 与 RouterFilter 的错误响应相同，错误码写在响应体中
+        String body = ((FullHttpResponse) msg).content().toString(StandardCharsets.UTF_8);
+        ReferenceCountUtil.release(msg);
+        assertTrue(body.contains(ResponseCode.SERVICE_UNAVAILABLE.name()));
+        assertSame(ResponseException.class, ctx.getThrowable().getClass());
+        assertFalse(invoked[0]);
+    }
+}
@@ -0,0 +1,74 @@
+package tech.songjian.core.filter.loadbalance;
+
+import org.junit.Test;
+import tech.songjian.common.config.ConfigSnapshot;
+import tech.songjian.common.config.DynamicConfigManager;
+import tech.songjian.common.config.ServiceInstance;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Created by IntelliJ IDEA.
+ * tech.songjian.core.filter.loadbalance
+ *
+ * @Describe: 一致性哈希测试：N 个实例下线一个，只有约 1/N 的键迁移，且只迁移落在该实例上的键
+ */
+public class ConsistentHashLoadBalanceRuleTest {
+
+    private static final String SERVICE_ID = "consistent-hash-test-service";
+
+    private static final int INSTANCES = 10;
+
+    private static final int KEYS = 20000;
+
+    @Test
+    public void removingOneInstanceRemapsItsShare() {
+        DynamicConfigManager manager = DynamicConfigManager.getInstance();
+        Set<ServiceInstance> instances = new HashSet<>();
+        for (int i = 0; i < INSTANCES; i++) {
+            ServiceInstance instance = new ServiceInstance();
+            instance.setServiceInstanceId("10.0.0." + i + ":8080");
+            instance.setIp("10.0.0." + i);
+            instance.setPort(8080);
+            instances.add(instance);
+        }
+        manager.addServiceInstance(SERVICE_ID, instances);
+        try {
+            ConsistentHashLoadBalanceRule rule = new ConsistentHashLoadBalanceRule(SERVICE_ID);
+            ConfigSnapshot before = manager.getSnapshot();
+            ServiceInstance[] owners = new ServiceInstance[KEYS];
+            for (int k = 0; k < KEYS; k++) {
+                owners[k] = rule.choose(before, SERVICE_ID, false, "user-" + k);
+                // 同一个键总是落到同一个实例
+                assertSame(owners[k], rule.choose(before, SERVICE_ID, false, "user-" + k));
+            }
+
+            ServiceInstance removed = owners[0];
+            manager.removeServiceInstance(SERVICE_ID, removed.getServiceInstanceId());
+            ConfigSnapshot after = manager.getSnapshot();
+            int onRemoved = 0;
+            int moved = 0;
+            for (int k = 0; k < KEYS; k++) {
+                ServiceInstance owner = rule.choose(after, SERVICE_ID, false, "user-" + k);
+                assertNotSame(removed, owner);
+                if (owners[k] == removed) {
+                    onRemoved++;
+                } else if (owner != owners[k]) {
+                    moved++;
+                }
+            }
+            // 只有原来落在下线实例上的键迁移
+            assertEquals(0, moved);
+            double share = (double) onRemoved / KEYS;
+            assertTrue("remapped share " + share, share > 0.5 / INSTANCES && share < 1.5 / INSTANCES);
+        } finally {
+            manager.removeServiceInstancesByUniqueId(SERVICE_ID);
+        }
+    }
+}
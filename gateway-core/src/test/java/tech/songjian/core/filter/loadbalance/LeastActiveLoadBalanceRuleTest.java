@@ -0,0 +1,101 @@
+package tech.songjian.core.filter.loadbalance;
+
+import org.junit.Test;
+import tech.songjian.common.config.DynamicConfigManager;
+import tech.songjian.common.config.ServiceInstance;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+/**
+ * Created by IntelliJ IDEA.
+ * tech.songjian.core.filter.loadbalance
+ *
+ * @Describe: 最少活跃请求测试：避开有进行中请求的实例、请求数相同时选权重大的、完全相同时随机选择
+ */
+public class LeastActiveLoadBalanceRuleTest {
+
+    private static final String SERVICE_ID = "least-active-test-service";
+
+    private static ServiceInstance instance(String id, int weight) {
+        ServiceInstance instance = new ServiceInstance();
+        instance.setServiceInstanceId(id);
+        instance.setIp("127.0.0.1");
+        instance.setPort(8080);
+        instance.setWeight(weight);
+        return instance;
+    }
+
+    @Test
+    public void activeInstanceAvoided() {
+        ServiceInstance a = instance("least-active-busy-a", 100);
+        ServiceInstance b = instance("least-active-busy-b", 100);
+        DynamicConfigManager.getInstance().addServiceInstance(SERVICE_ID, new HashSet<>(Arrays.asList(a, b)));
+        InstanceStats statsA = InstanceStats.of(a);
+        InstanceStats statsB = InstanceStats.of(b);
+        try {
+            LeastActiveLoadBalanceRule rule = new LeastActiveLoadBalanceRule(SERVICE_ID);
+            long beginA = statsA.begin();
+            for (int i = 0; i < 100; i++) {
+                assertSame(b, rule.choose(SERVICE_ID, false));
+            }
+
+            // a 的请求结束、b 上有进行中的请求后改选 a
+            statsA.end(beginA);
+            long beginB = statsB.begin();
+            for (int i = 0; i < 100; i++) {
+                assertSame(a, rule.choose(SERVICE_ID, false));
+            }
+            statsB.end(beginB);
+        } finally {
+            DynamicConfigManager.getInstance().removeServiceInstancesByUniqueId(SERVICE_ID);
+        }
+    }
+
+    @Test
+    public void tieBrokenByWeight() {
+        ServiceInstance heavy = instance("least-active-weight-heavy", 10);
+        ServiceInstance light = instance("least-active-weight-light", 1);
+        DynamicConfigManager.getInstance().addServiceInstance(SERVICE_ID, new HashSet<>(Arrays.asList(heavy, light)));
+        try {
+            LeastActiveLoadBalanceRule rule = new LeastActiveLoadBalanceRule(SERVICE_ID);
+            for (int i = 0; i < 100; i++) {
+                assertSame(heavy, rule.choose(SERVICE_ID, false));
+            }
+        } finally {
+            DynamicConfigManager.getInstance().removeServiceInstancesByUniqueId(SERVICE_ID);
+        }
+    }
+
+    @Test
+    public void equalCandidatesChosenRandomly() {
+        ServiceInstance a = instance("least-active-equal-a", 100);
+        ServiceInstance b = instance("least-active-equal-b", 100);
+        ServiceInstance c = instance("least-active-equal-c", 100);
+        DynamicConfigManager.getInstance().addServiceInstance(SERVICE_ID, new HashSet<>(Arrays.asList(a, b, c)));
+        InstanceStats statsA = InstanceStats.of(a);
+        try {
+            LeastActiveLoadBalanceRule rule = new LeastActiveLoadBalanceRule(SERVICE_ID);
+            Set<ServiceInstance> chosen = new HashSet<>();
+            for (int i = 0; i < 300; i++) {
+                chosen.add(rule.choose(SERVICE_ID, false));
+            }
+            assertEquals(new HashSet<>(Arrays.asList(a, b, c)), chosen);
+
+            // a 上有进行中的请求，只在 b、c 之间随机
+            long beginA = statsA.begin();
+            chosen.clear();
+            for (int i = 0; i < 300; i++) {
+                chosen.add(rule.choose(SERVICE_ID, false));
+            }
+            assertEquals(new HashSet<>(Arrays.asList(b, c)), chosen);
+            statsA.end(beginA);
+        } finally {
+            DynamicConfigManager.getInstance().removeServiceInstancesByUniqueId(SERVICE_ID);
+        }
+    }
+}
@@ -0,0 +1,72 @@
+package tech.songjian.core.filter.loadbalance;
+
+import org.junit.Test;
+import tech.songjian.common.config.DynamicConfigManager;
+import tech.songjian.common.config.ServiceInstance;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+/**
+ * Created by IntelliJ IDEA.
+ * tech.songjian.core.filter.loadbalance
+ *
+ * @Describe: P2C + peak EWMA 测试：慢响应之后不再分到请求的实例，代价随时间回落，重新被选中
+ */
+public class PeakEwmaLoadBalanceRuleTest {
+
+    private static final String SERVICE_ID = "peak-ewma-test-service";
+
+    private static final long SPIKE_NANOS = TimeUnit.SECONDS.toNanos(3);
+
+    private static final long NORMAL_NANOS = TimeUnit.MILLISECONDS.toNanos(50);
+
+    private static ServiceInstance instance(String id) {
+        ServiceInstance instance = new ServiceInstance();
+        instance.setServiceInstanceId(id);
+        instance.setIp("127.0.0.1");
+        instance.setPort(8080);
+        return instance;
+    }
+
+    @Test
+    public void costDecaysWithoutObservations() {
+        InstanceStats stats = InstanceStats.of(instance("peak-ewma-decay"));
+        long now = System.nanoTime();
+        stats.observe(SPIKE_NANOS, now);
+        assertEquals(SPIKE_NANOS, stats.cost(now), 1D);
+        // 一个时间常数后衰减为 1/e
+        assertEquals(SPIKE_NANOS / Math.E, stats.cost(now + TimeUnit.SECONDS.toNanos(10)), 1e3);
+    }
+
+    @Test
+    public void spikedInstanceRecovers() {
+        ServiceInstance spiked = instance("peak-ewma-spiked");
+        ServiceInstance healthy = instance("peak-ewma-healthy");
+        DynamicConfigManager.getInstance().addServiceInstance(SERVICE_ID, new HashSet<>(Arrays.asList(spiked, healthy)));
+        try {
+            PeakEwmaLoadBalanceRule rule = new PeakEwmaLoadBalanceRule(SERVICE_ID);
+            long now = System.nanoTime();
+
+            // 刚出现慢响应：两个实例都参与比较，总是选正常的实例
+            InstanceStats.of(spiked).observe(SPIKE_NANOS, now);
+            InstanceStats.of(healthy).observe(NORMAL_NANOS, now);
+            for (int i = 0; i < 1000; i++) {
+                assertSame(healthy, rule.choose(SERVICE_ID, false));
+            }
+
+            // 慢响应发生在一分钟前，之后再没有分到请求；正常实例一直有请求，耗时保持不变
+            InstanceStats.of(spiked).observe(SPIKE_NANOS, now - TimeUnit.SECONDS.toNanos(60));
+            InstanceStats.of(healthy).observe(NORMAL_NANOS, now);
+            for (int i = 0; i < 1000; i++) {
+                assertSame(spiked, rule.choose(SERVICE_ID, false));
+            }
+        } finally {
+            DynamicConfigManager.getInstance().removeServiceInstancesByUniqueId(SERVICE_ID);
+        }
+    }
+}
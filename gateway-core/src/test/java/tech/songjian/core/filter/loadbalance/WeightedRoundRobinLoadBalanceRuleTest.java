@@ -0,0 +1,62 @@
+package tech.songjian.core.filter.loadbalance;
+
+import org.junit.Test;
+import tech.songjian.common.config.DynamicConfigManager;
+import tech.songjian.common.config.ServiceInstance;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+/**
+ * Created by IntelliJ IDEA.
+ * tech.songjian.core.filter.loadbalance
+ *
+ * @Describe: 平滑加权轮询测试：权重 5、1、1 得到与 nginx 相同的 a a b a c a a 序列
+ */
+public class WeightedRoundRobinLoadBalanceRuleTest {
+
+    private static final String SERVICE_ID = "wrr-test-service";
+
+    private static ServiceInstance instance(String id, int weight) {
+        ServiceInstance instance = new ServiceInstance();
+        instance.setServiceInstanceId(id);
+        instance.setIp("127.0.0.1");
+        instance.setPort(8080);
+        instance.setWeight(weight);
+        return instance;
+    }
+
+    @Test
+    public void smoothSequence() {
+        ServiceInstance a = instance("a", 5);
+        ServiceInstance b = instance("b", 1);
+        ServiceInstance c = instance("c", 1);
+        DynamicConfigManager.getInstance().addServiceInstance(SERVICE_ID, new HashSet<>(Arrays.asList(a, b, c)));
+        try {
+            WeightedRoundRobinLoadBalanceRule rule = new WeightedRoundRobinLoadBalanceRule(SERVICE_ID);
+            List<ServiceInstance> sequence = new ArrayList<>();
+            for (int i = 0; i < 14; i++) {
+                sequence.add(rule.choose(SERVICE_ID, false));
+            }
+
+            // 两个权重为 1 的实例当前权重相同时按数组顺序选择，先出现的记为 b
+            ServiceInstance first = sequence.get(2);
+            ServiceInstance second = sequence.get(4);
+            assertNotSame(a, first);
+            assertNotSame(a, second);
+            assertNotSame(first, second);
+            List<ServiceInstance> expected = Arrays.asList(a, a, first, a, second, a, a);
+            for (int i = 0; i < sequence.size(); i++) {
+                // 每 7 次一个周期
+                assertSame("position " + i, expected.get(i % 7), sequence.get(i));
+            }
+        } finally {
+            DynamicConfigManager.getInstance().removeServiceInstancesByUniqueId(SERVICE_ID);
+        }
+    }
+}
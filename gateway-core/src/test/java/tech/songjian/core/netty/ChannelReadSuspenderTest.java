@@ -0,0 +1,34 @@
+package tech.songjian.core.netty;
+
+import io.netty.channel.embedded.EmbeddedChannel;
+import org.junit.Test;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Created by IntelliJ IDEA.
+ * tech.songjian.core.netty
+ *
+ * @Describe: 暂停读取的原因测试：所有原因解除后才恢复读取
+ */
+public class ChannelReadSuspenderTest {
+
+    @Test
+    public void resumeOnlyWhenNoReasonLeft() {
+        EmbeddedChannel channel = new EmbeddedChannel();
+        ChannelReadSuspender.suspend(channel, ChannelReadSuspender.Reason.PIPELINING);
+        ChannelReadSuspender.suspend(channel, ChannelReadSuspender.Reason.QUEUE_OVERLOAD);
+        assertFalse(channel.config().isAutoRead());
+
+        ChannelReadSuspender.resume(channel, ChannelReadSuspender.Reason.QUEUE_OVERLOAD);
+        assertFalse(channel.config().isAutoRead());
+        // 没有暂停过的原因不影响
+        ChannelReadSuspender.resume(channel, ChannelReadSuspender.Reason.STREAMING_BODY);
+        assertFalse(channel.config().isAutoRead());
+
+        ChannelReadSuspender.resume(channel, ChannelReadSuspender.Reason.PIPELINING);
+        assertTrue(channel.config().isAutoRead());
+        channel.finish();
+    }
+}
@@ -0,0 +1,179 @@
+package tech.songjian.core.netty;
+
+import io.netty.buffer.Unpooled;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.handler.codec.http.DefaultFullHttpRequest;
+import io.netty.handler.codec.http.DefaultFullHttpResponse;
+import io.netty.handler.codec.http.DefaultHttpRequest;
+import io.netty.handler.codec.http.DefaultHttpResponse;
+import io.netty.handler.codec.http.FullHttpRequest;
+import io.netty.handler.codec.http.FullHttpResponse;
+import io.netty.handler.codec.http.HttpHeaderNames;
+import io.netty.handler.codec.http.HttpHeaderValues;
+import io.netty.handler.codec.http.HttpMethod;
+import io.netty.handler.codec.http.HttpRequest;
+import io.netty.handler.codec.http.HttpResponseStatus;
+import io.netty.handler.codec.http.HttpVersion;
+import io.netty.handler.codec.http.LastHttpContent;
+import io.netty.util.ReferenceCountUtil;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Created by IntelliJ IDEA.
+ * tech.songjian.core.netty
+ *
+ * @Describe: 管道化响应排序测试：乱序完成、没有响应的请求超时
+ */
+public class HttpPipeliningHandlerTest {
+
+    private static FullHttpRequest request() {
+        return new DefaultFullHttpRequest(HttpVersion.HTTP_1_1, HttpMethod.GET, "/");
+    }
+
+    private static FullHttpResponse response(String body) {
+        FullHttpResponse response = new DefaultFullHttpResponse(HttpVersion.HTTP_1_1, HttpResponseStatus.OK,
+                Unpooled.copiedBuffer(body.getBytes()));
+        response.headers().set(HttpHeaderNames.CONTENT_LENGTH, response.content().readableBytes());
+        return response;
+    }
+
+    /**
+     * 模拟业务处理器：收到请求时编号
+     */
+    private static int receive(EmbeddedChannel channel, HttpPipeliningHandler handler) {
+        int sequence = handler.nextSequence();
+        channel.writeInbound(request());
+        ReferenceCountUtil.release(channel.readInbound());
+        return sequence;
+    }
+
+    private static String body(Object msg) {
+        FullHttpResponse response = (FullHttpResponse) msg;
+        try {
+            return response.content().toString(StandardCharsets.UTF_8);
+        } finally {
+            response.release();
+        }
+    }
+
+    @Test
+    public void outOfOrderCompletion() {
+        HttpPipeliningHandler handler = new HttpPipeliningHandler(64, 0);
+        EmbeddedChannel channel = new EmbeddedChannel(handler);
+        int first = receive(channel, handler);
+        int second = receive(channel, handler);
+        int third = receive(channel, handler);
+
+        channel.writeAndFlush(HttpPipeliningHandler.sequenced(third, response("c")));
+        channel.writeAndFlush(HttpPipeliningHandler.sequenced(second, response("b")));
+        assertNull(channel.readOutbound());
+
+        channel.writeAndFlush(HttpPipeliningHandler.sequenced(first, response("a")));
+        assertEquals("a", body(channel.readOutbound()));
+        assertEquals("b", body(channel.readOutbound()));
+        assertEquals("c", body(channel.readOutbound()));
+        assertNull(channel.readOutbound());
+        assertFalse(channel.finish());
+    }
+
+    @Test
+    public void unansweredRequestTimesOut() throws Exception {
+        HttpPipeliningHandler handler = new HttpPipeliningHandler(2, 20);
+        EmbeddedChannel channel = new EmbeddedChannel(handler);
+        int lost = receive(channel, handler);
+        int answered = receive(channel, handler);
+        // 两个请求都没有响应，暂停读取
+        assertFalse(channel.config().isAutoRead());
+
+        channel.writeAndFlush(HttpPipeliningHandler.sequenced(answered, response("b")));
+        assertNull(channel.readOutbound());
+
+        Thread.sleep(50);
+        channel.runScheduledPendingTasks();
+        FullHttpResponse timeout = channel.readOutbound();
+        assertEquals(HttpResponseStatus.GATEWAY_TIMEOUT, timeout.status());
+        timeout.release();
+        assertEquals("b", body(channel.readOutbound()));
+        assertTrue(channel.config().isAutoRead());
+
+        // 超时之后才到的响应丢弃
+        FullHttpResponse late = response("a");
+        assertFalse(channel.writeAndFlush(HttpPipeliningHandler.sequenced(lost, late)).isSuccess());
+        assertEquals(0, late.refCnt());
+        assertNull(channel.readOutbound());
+        assertFalse(channel.finish());
+    }
+
+    @Test
+    public void responseInProgressDoesNotTimeOut() throws Exception {
+        HttpPipeliningHandler handler = new HttpPipeliningHandler(64, 20);
+        EmbeddedChannel channel = new EmbeddedChannel(handler);
+        int sequence = receive(channel, handler);
+        channel.writeAndFlush(HttpPipeliningHandler.sequenced(sequence,
+                new DefaultHttpResponse(HttpVersion.HTTP_1_1, HttpResponseStatus.OK)));
+        ReferenceCountUtil.release(channel.readOutbound());
+
+        Thread.sleep(50);
+        channel.runScheduledPendingTasks();
+        assertNull(channel.readOutbound());
+        channel.writeAndFlush(HttpPipeliningHandler.sequenced(sequence, LastHttpContent.EMPTY_LAST_CONTENT));
+        assertEquals(LastHttpContent.EMPTY_LAST_CONTENT, channel.readOutbound());
+        assertFalse(channel.finish());
+    }
+
+    @Test
+    public void aggregatorContinueFollowsEarlierResponse() {
+        HttpPipeliningHandler handler = new HttpPipeliningHandler(64, 0);
+        EmbeddedChannel channel = new EmbeddedChannel(handler, new GatewayHttpObjectAggregator(1024));
+        channel.writeInbound(request());
+        FullHttpRequest first = channel.readInbound();
+        int firstSequence = handler.nextSequence();
+        first.release();
+
+        HttpRequest head = new DefaultHttpRequest(HttpVersion.HTTP_1_1, HttpMethod.POST, "/");
+        head.headers().set(HttpHeaderNames.EXPECT, HttpHeaderValues.CONTINUE);
+        head.headers().set(HttpHeaderNames.CONTENT_LENGTH, 1);
+        channel.writeInbound(head);
+        // 前一个请求的响应还没有写出，100-continue 排在它后面
+        assertNull(channel.readOutbound());
+
+        channel.writeAndFlush(HttpPipeliningHandler.sequenced(firstSequence, response("a")));
+        assertEquals("a", body(channel.readOutbound()));
+        FullHttpResponse continueResponse = channel.readOutbound();
+        assertEquals(HttpResponseStatus.CONTINUE, continueResponse.status());
+        continueResponse.release();
+        assertFalse(channel.finish());
+    }
+
+    @Test
+    public void rejectedContinueCountsAsCompletedRead() throws Exception {
+        HttpPipeliningHandler handler = new HttpPipeliningHandler(64, 20);
+        EmbeddedChannel channel = new EmbeddedChannel(handler, new GatewayHttpObjectAggregator(4));
+        HttpRequest head = new DefaultHttpRequest(HttpVersion.HTTP_1_1, HttpMethod.POST, "/");
+        head.headers().set(HttpHeaderNames.EXPECT, HttpHeaderValues.CONTINUE);
+        head.headers().set(HttpHeaderNames.CONTENT_LENGTH, 1024);
+        channel.writeInbound(head);
+        FullHttpResponse rejected = channel.readOutbound();
+        assertEquals(HttpResponseStatus.REQUEST_ENTITY_TOO_LARGE, rejected.status());
+        rejected.release();
+
+        // 被拒绝的请求已经计为收完，后面没有响应的请求照常超时
+        channel.writeInbound(request());
+        FullHttpRequest next = channel.readInbound();
+        handler.nextSequence();
+        next.release();
+        Thread.sleep(50);
+        channel.runScheduledPendingTasks();
+        FullHttpResponse timeout = channel.readOutbound();
+        assertEquals(HttpResponseStatus.GATEWAY_TIMEOUT, timeout.status());
+        timeout.release();
+        assertFalse(channel.finish());
+    }
+}
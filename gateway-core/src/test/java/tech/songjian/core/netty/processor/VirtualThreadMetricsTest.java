@@ -0,0 +1,26 @@
+package tech.songjian.core.netty.processor;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+/**
+ * Created by IntelliJ IDEA.
+ * tech.songjian.core.netty.processor
+ *
+ * @Describe: 从虚拟线程的描述中识别 carrier 线程名前缀
+ */
+public class VirtualThreadMetricsTest {
+
+    @Test
+    public void carrierNamePrefix() {
+        assertEquals("ForkJoinPool-1-worker-",
+                VirtualThreadMetrics.parseCarrierNamePrefix("VirtualThread[#21]/runnable@ForkJoinPool-1-worker-1"));
+        assertEquals("ForkJoinPool-3-worker-",
+                VirtualThreadMetrics.parseCarrierNamePrefix("VirtualThread[#35,gateway-virtual-0]/runnable@ForkJoinPool-3-worker-12"));
+        // 没有挂载在 carrier 上
+        assertNull(VirtualThreadMetrics.parseCarrierNamePrefix("VirtualThread[#21]/waiting"));
+        assertNull(VirtualThreadMetrics.parseCarrierNamePrefix(null));
+    }
+}